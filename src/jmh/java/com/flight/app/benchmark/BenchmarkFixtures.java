@@ -0,0 +1,201 @@
+package com.flight.app.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.flight.app.dto.BookingRequest;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.dto.PassengerDTO;
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.Passenger;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.repository.FlightCancellationRepository;
+import com.flight.app.repository.FlightRepository;
+import com.flight.app.repository.OutboxEventRepository;
+import com.flight.app.repository.WaitlistEntryRepository;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.PnrGenerator;
+import com.flight.app.service.impl.BookingGroupCommitter;
+import com.flight.app.service.impl.BookingIdempotency;
+import com.flight.app.service.impl.BookingServiceImpl;
+import com.flight.app.service.impl.FlightAdmissionControl;
+import com.flight.app.service.impl.FlightCancellationJob;
+import com.flight.app.service.impl.FlightLookupCoalescer;
+import com.flight.app.service.impl.FlightSearchCache;
+import com.flight.app.service.impl.FlightServiceImpl;
+import com.flight.app.service.impl.Outbox;
+import com.flight.app.service.impl.LowestFareIndex;
+import com.flight.app.service.impl.MongoSeatInventory;
+import com.flight.app.service.impl.RouteGraph;
+import com.flight.app.service.impl.SeatAvailabilityBroadcaster;
+import com.flight.app.service.impl.SnowflakePnrGenerator;
+import com.flight.app.service.impl.SoldOutRegistry;
+import com.flight.app.service.impl.Waitlist;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Test data and in-process stub repositories for the benchmarks. The stubs answer
+// immediately so the numbers show the cost of our own pipelines, not of Mongo.
+final class BenchmarkFixtures {
+
+    static final String FLIGHT_ID = "BENCHFLIGHT1";
+    static final String PNR = "CHUBBFLIGHTBENCH1";
+    static final LocalDate SCHEDULE_DATE = LocalDate.now().plusDays(30);
+
+    private BenchmarkFixtures() {
+    }
+
+    static Flight flight(String id) {
+        Flight flight = new Flight();
+        flight.setId(id);
+        flight.setAirlineName("Air India");
+        flight.setFromPlace("DEL");
+        flight.setToPlace("BOM");
+        flight.setScheduleDate(SCHEDULE_DATE);
+        flight.setDepartureTime(LocalTime.of(8, 0));
+        flight.setArrivalTime(LocalTime.of(10, 0));
+        flight.setPrice(5000.00);
+        flight.setTotalSeats(180);
+        flight.setAvailableSeats(180);
+        return flight;
+    }
+
+    static List<Flight> flights(int count) {
+        List<Flight> flights = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            flights.add(flight("BENCHFLIGHT" + i));
+        }
+        return flights;
+    }
+
+    static Passenger passenger(String name, String seatNumber) {
+        return new Passenger(null, name, "Female", 30, seatNumber);
+    }
+
+    static Booking booking() {
+        Booking booking = new Booking();
+        booking.setUserName("Bench User");
+        booking.setUserEmail("bench@example.com");
+        booking.setMobileNumber("9999999999");
+        booking.setMealOpted("Veg");
+        booking.setPassengers(List.of(passenger("AAA", "1A"), passenger("BBB", "1B")));
+        return booking;
+    }
+
+    static Booking storedBooking() {
+        Booking booking = booking();
+        booking.setPnr(PNR);
+        booking.setFlightId(FLIGHT_ID);
+        booking.setBookingDate(LocalDateTime.now());
+        booking.setNumberOfSeats(2);
+        booking.setTotalCost(10000.00);
+        booking.setJourneyDate(SCHEDULE_DATE);
+        return booking;
+    }
+
+    static BookingRequest bookingRequest() {
+        return new BookingRequest("Bench User", "bench@example.com", "9999999999", "Veg",
+                List.of(new PassengerDTO("AAA", "Female", 30, "1A"), new PassengerDTO("BBB", "Male", 31, "1B")));
+    }
+
+    static FlightServiceImpl flightService(FlightRepository flightRepository) {
+        return new FlightServiceImpl(flightRepository, new MongoSeatInventory(flightRepository),
+                new FlightSearchCache(1000, Duration.ofMinutes(10), new SimpleMeterRegistry()),
+                new FlightLookupCoalescer(Duration.ZERO, new SimpleMeterRegistry()),
+                new RouteGraph(flightRepository, new SimpleMeterRegistry()),
+                new LowestFareIndex(null, flightRepository, Duration.ofSeconds(1)),
+                new SeatAvailabilityBroadcaster(flightRepository, false, new SimpleMeterRegistry()),
+                event -> { },
+                Validation.buildDefaultValidatorFactory().getValidator(), 500);
+    }
+
+    // Flight repository that always has seats and returns the same route-day search results
+    static FlightRepository flightRepository(Flight flight, List<Flight> routeDayFlights) {
+        List<FlightSearchResult> searchResults = routeDayFlights.stream().map(FlightSearchResult::of).toList();
+        
+        return stub(FlightRepository.class, (method, args) -> switch(method) {
+            case "claimSeats", "releaseSeats", "findById" -> Mono.just(flight);
+            case "findSearchResults" -> Flux.fromIterable(searchResults);
+            default -> null;
+        });
+    }
+
+    // Flight repository for a sold-out flight: every claim fails, the lookup finds 0 seats
+    static FlightRepository soldOutFlightRepository(Flight flight) {
+        Flight soldOut = flight.toBuilder().availableSeats(0).build();
+        
+        return stub(FlightRepository.class, (method, args) -> switch(method) {
+            case "claimSeats" -> Mono.empty();
+            case "findById" -> Mono.just(soldOut);
+            default -> null;
+        });
+    }
+
+    static BookingServiceImpl bookingService(FlightService flightService, BookingRepository bookingRepository,
+            SoldOutRegistry soldOutRegistry) {
+        PnrGenerator pnrGenerator = new SnowflakePnrGenerator(0);
+        // on like in production, the outbox insert answers right away like the booking insert
+        Outbox outbox = new Outbox(stub(OutboxEventRepository.class, (method, args) -> 
+                "insert".equals(method) ? Flux.fromIterable((Iterable<?>) args[0]) : null), Optional.empty(), true);
+        // only cancellations promote, no benchmark cancels
+        Waitlist waitlist = new Waitlist(stub(WaitlistEntryRepository.class, (method, args) -> null), flightService,
+                bookingRepository, pnrGenerator, outbox, Duration.ofSeconds(60), Duration.ofSeconds(30),
+                new SimpleMeterRegistry());
+        return new BookingServiceImpl(flightService, bookingRepository, pnrGenerator,
+                new FlightAdmissionControl(true, 32, 256, Duration.ofSeconds(2), Duration.ofSeconds(1), 
+                        new SimpleMeterRegistry()),
+                new BookingGroupCommitter(flightService, bookingRepository, pnrGenerator, outbox, false, 
+                        Duration.ofMillis(2), 64, new SimpleMeterRegistry()),
+                new BookingIdempotency(null, false, Duration.ofHours(24), 1000, Duration.ofSeconds(1), 
+                        new SimpleMeterRegistry()),
+                soldOutRegistry,
+                waitlist,
+                outbox,
+                // no benchmark cancels a flight
+                new FlightCancellationJob(stub(FlightCancellationRepository.class, (method, args) -> null),
+                        flightService, bookingRepository, outbox, waitlist, 200, 4, Duration.ofSeconds(60), 
+                        Duration.ofSeconds(10), Duration.ofSeconds(30), new SimpleMeterRegistry()));
+    }
+
+    // Booking repository that accepts every write and finds a fresh copy of storedBooking()
+    static BookingRepository bookingRepository() {
+        return stub(BookingRepository.class, (method, args) -> switch(method) {
+            case "save", "insert" -> args[0] instanceof Iterable<?> bookings ? Flux.fromIterable(bookings) : Mono.just(args[0]);
+            case "findByPnr" -> Mono.fromSupplier(BenchmarkFixtures::storedBooking);
+            case "delete" -> Mono.empty();
+            default -> null;
+        });
+    }
+
+    interface StubAnswer {
+        Object answer(String method, Object[] args);
+    }
+
+    private static <T> T stub(Class<T> type, StubAnswer answer) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (self, method, args) -> {
+            if(method.getDeclaringClass() == Object.class) {
+                return switch(method.getName()) {
+                    case "hashCode" -> System.identityHashCode(self);
+                    case "equals" -> self == args[0];
+                    default -> type.getSimpleName() + " stub";
+                };
+            }
+            Object result = answer.answer(method.getName(), args);
+            if(result == null) {
+                throw new UnsupportedOperationException(method.getName() + " is not stubbed for benchmarks");
+            }
+            return result;
+        });
+        return type.cast(proxy);
+    }
+}
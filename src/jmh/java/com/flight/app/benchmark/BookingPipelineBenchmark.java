@@ -0,0 +1,48 @@
+package com.flight.app.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.impl.BookingServiceImpl;
+import com.flight.app.service.impl.SoldOutRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// bookTicket and cancelTicket end to end through the service layer on stub repositories.
+// Throughput gives ops/s, SampleTime gives the latency percentiles (p0.99), -prof gc the bytes per op.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookingPipelineBenchmark {
+
+    private BookingServiceImpl bookingService;
+
+    @Setup
+    public void setUp() {
+        Flight flight = BenchmarkFixtures.flight(BenchmarkFixtures.FLIGHT_ID);
+        FlightService flightService = BenchmarkFixtures.flightService(
+                BenchmarkFixtures.flightRepository(flight, BenchmarkFixtures.flights(1)));
+        bookingService = BenchmarkFixtures.bookingService(flightService, BenchmarkFixtures.bookingRepository(),
+                new SoldOutRegistry(Duration.ofSeconds(2), new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public String bookTicket() {
+        return bookingService.bookTicket(BenchmarkFixtures.FLIGHT_ID, BenchmarkFixtures.booking()).block();
+    }
+
+    @Benchmark
+    public Object cancelTicket() {
+        return bookingService.cancelTicket(BenchmarkFixtures.PNR).block();
+    }
+}
@@ -0,0 +1,69 @@
+package com.flight.app.benchmark;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.flight.app.dto.Itinerary;
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.service.impl.RouteGraph;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// 1 and 2 stop itinerary search on the in-memory route graph. Every pair of `places` has a
+// flight every two hours of the day, so a 2 stop search looks at a lot of combinations.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectionSearchBenchmark {
+
+    private static final List<String> PLACES = List.of("DEL", "BOM", "BLR", "MAA", "CCU", "HYD", "GOI", "PNQ", 
+            "AMD", "COK", "JAI", "LKO");
+
+    @Param({"6", "12"})
+    private int places;
+
+    private RouteGraph routeGraph;
+    private final LocalDate date = BenchmarkFixtures.SCHEDULE_DATE;
+    private final RouteGraph.Constraints constraints = new RouteGraph.Constraints(2, 2, 
+            Duration.ofMinutes(45), Duration.ofHours(6));
+
+    @Setup
+    public void setUp() {
+        routeGraph = new RouteGraph(null, new SimpleMeterRegistry());
+        int id = 0;
+        for(String from : PLACES.subList(0, places)) {
+            for(String to : PLACES.subList(0, places)) {
+                if(from.equals(to)) {
+                    continue;
+                }
+                for(int hour = 0; hour < 22; hour += 2) {
+                    Flight flight = BenchmarkFixtures.flight("ROUTEFLIGHT" + id++);
+                    flight.setFromPlace(from);
+                    flight.setToPlace(to);
+                    flight.setScheduleDate(date);
+                    flight.setDepartureTime(LocalTime.of(hour, 0));
+                    flight.setArrivalTime(LocalTime.of(hour + 2, 0));
+                    routeGraph.onInventoryChanged(new FlightInventoryChangedEvent(flight));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Itinerary> connections() {
+        return routeGraph.connections("DEL", "BOM", date, constraints);
+    }
+}
@@ -0,0 +1,53 @@
+package com.flight.app.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.entity.Flight;
+import com.flight.app.service.impl.FlightServiceImpl;
+
+// searchFlightResults, the lean projection behind the search cache, once served from a warm
+// route-day and once missing the cache on every call (a new journey date each time)
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlightSearchBenchmark {
+
+    // far more route-days than the cache holds
+    private static final int MISS_DAYS = 100_000;
+
+    @Param({"10", "100"})
+    private int flightsPerRouteDay;
+
+    private FlightServiceImpl flightService;
+    private final LocalDate date = BenchmarkFixtures.SCHEDULE_DATE;
+    private int missDay;
+
+    @Setup
+    public void setUp() {
+        List<Flight> flights = BenchmarkFixtures.flights(flightsPerRouteDay);
+        flightService = BenchmarkFixtures.flightService(BenchmarkFixtures.flightRepository(flights.get(0), flights));
+    }
+
+    @Benchmark
+    public List<FlightSearchResult> searchFlightResultsCached() {
+        return flightService.searchFlightResults("DEL", "BOM", date).collectList().block();
+    }
+
+    @Benchmark
+    public List<FlightSearchResult> searchFlightResultsMiss() {
+        missDay = (missDay + 1) % MISS_DAYS;
+        return flightService.searchFlightResults("DEL", "BOM", date.plusDays(missDay)).collectList().block();
+    }
+}
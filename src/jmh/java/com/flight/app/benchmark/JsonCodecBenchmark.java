@@ -0,0 +1,86 @@
+package com.flight.app.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.JacksonJsonDecoder;
+import org.springframework.http.codec.json.JacksonJsonEncoder;
+
+import com.flight.app.dto.BookingRequest;
+import com.flight.app.entity.Flight;
+
+// The JSON codecs WebFlux uses for the request and response bodies of the controllers
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonCodecBenchmark {
+
+    private static final ResolvableType BOOKING_REQUEST = ResolvableType.forClass(BookingRequest.class);
+    private static final ResolvableType FLIGHT = ResolvableType.forClass(Flight.class);
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private final JacksonJsonEncoder encoder = new JacksonJsonEncoder();
+    private final JacksonJsonDecoder decoder = new JacksonJsonDecoder();
+
+    private BookingRequest bookingRequest;
+    private Flight flight;
+    private byte[] bookingRequestJson;
+    private byte[] flightJson;
+
+    @Setup
+    public void setUp() {
+        bookingRequest = BenchmarkFixtures.bookingRequest();
+        flight = BenchmarkFixtures.flight(BenchmarkFixtures.FLIGHT_ID);
+        bookingRequestJson = toBytes(encode(bookingRequest, BOOKING_REQUEST));
+        flightJson = toBytes(encode(flight, FLIGHT));
+    }
+
+    @Benchmark
+    public int encodeBookingRequest() {
+        return release(encode(bookingRequest, BOOKING_REQUEST));
+    }
+
+    @Benchmark
+    public Object decodeBookingRequest() {
+        return decoder.decode(bufferFactory.wrap(bookingRequestJson), BOOKING_REQUEST, MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    @Benchmark
+    public int encodeFlight() {
+        return release(encode(flight, FLIGHT));
+    }
+
+    @Benchmark
+    public Object decodeFlight() {
+        return decoder.decode(bufferFactory.wrap(flightJson), FLIGHT, MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    private DataBuffer encode(Object value, ResolvableType type) {
+        return encoder.encodeValue(value, bufferFactory, type, MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    private static int release(DataBuffer buffer) {
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+
+    private static byte[] toBytes(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+}
@@ -0,0 +1,47 @@
+package com.flight.app.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.flight.app.service.impl.RandomPnrGenerator;
+import com.flight.app.service.impl.SnowflakePnrGenerator;
+
+// Old UUID based PNRs vs the striped Snowflake generator, alone and with 8 threads
+// hitting one shared generator (the UUID one then queues on SecureRandom)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PnrGeneratorBenchmark {
+
+    private final RandomPnrGenerator random = new RandomPnrGenerator();
+    private final SnowflakePnrGenerator snowflake = new SnowflakePnrGenerator(0);
+
+    @Benchmark
+    public String random() {
+        return random.next();
+    }
+
+    @Benchmark
+    public String snowflake() {
+        return snowflake.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String randomContended() {
+        return random.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String snowflakeContended() {
+        return snowflake.next();
+    }
+}
@@ -0,0 +1,93 @@
+package com.flight.app.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.JacksonJsonEncoder;
+
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.entity.Flight;
+
+// Per search result: Mongo document -> object -> JSON, for the full Flight entity and the
+// FlightSearchResult projection. Run with -prof gc to compare gc.alloc.rate.norm (bytes/op),
+// each call returns the JSON payload size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchEncodingBenchmark {
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private final JacksonJsonEncoder encoder = new JacksonJsonEncoder();
+
+    private MappingMongoConverter converter;
+    private Document fullDocument;
+    private Document projectedDocument;
+
+    @Setup
+    public void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        fullDocument = new Document();
+        converter.write(BenchmarkFixtures.flight("65f1c0ffee0000000000abcd"), fullDocument);
+        // what Mongo sends back for the search projection
+        projectedDocument = new Document("_id", fullDocument.get("_id"));
+        for(String field : FlightSearchResult.FIELDS) {
+            if(fullDocument.containsKey(field)) {
+                projectedDocument.put(field, fullDocument.get(field));
+            }
+        }
+    }
+
+    @Benchmark
+    public int entity() {
+        return release(encode(entityPath()));
+    }
+
+    @Benchmark
+    public int projection() {
+        return release(encode(projectionPath()));
+    }
+
+    private Flight entityPath() {
+        return converter.read(Flight.class, fullDocument);
+    }
+
+    private FlightSearchResult projectionPath() {
+        return converter.read(FlightSearchResult.class, projectedDocument);
+    }
+
+    private DataBuffer encode(Object value) {
+        return encoder.encodeValue(value, bufferFactory, ResolvableType.forInstance(value), 
+                MediaType.APPLICATION_JSON, Map.of());
+    }
+
+    private static int release(DataBuffer buffer) {
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+}
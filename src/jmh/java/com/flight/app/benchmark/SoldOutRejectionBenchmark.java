@@ -0,0 +1,62 @@
+package com.flight.app.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.impl.BookingServiceImpl;
+import com.flight.app.service.impl.SoldOutRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+// Booking attempts for a sold-out flight. throughMongo is the path every rejection took before
+// the registry: admission, failed seat claim, flight lookup, error. registry is the fast path.
+// Run with -t 8 or more to see the contention of a flash sale.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class SoldOutRejectionBenchmark {
+
+    private BookingServiceImpl throughMongo;
+    private BookingServiceImpl registry;
+
+    @Setup
+    public void setUp() {
+        Flight flight = BenchmarkFixtures.flight(BenchmarkFixtures.FLIGHT_ID);
+        FlightService flightService = BenchmarkFixtures.flightService(BenchmarkFixtures.soldOutFlightRepository(flight));
+        // entries expire right away, every attempt looks at the flight again
+        throughMongo = BenchmarkFixtures.bookingService(flightService, BenchmarkFixtures.bookingRepository(),
+                new SoldOutRegistry(Duration.ZERO, new SimpleMeterRegistry()));
+        
+        SoldOutRegistry soldOutRegistry = new SoldOutRegistry(Duration.ofDays(1), new SimpleMeterRegistry());
+        soldOutRegistry.markSoldOut(BenchmarkFixtures.FLIGHT_ID);
+        registry = BenchmarkFixtures.bookingService(flightService, BenchmarkFixtures.bookingRepository(), 
+                soldOutRegistry);
+    }
+
+    private static String rejection(Mono<String> booking) {
+        return booking.onErrorResume(e -> Mono.just(e.getMessage())).block();
+    }
+
+    @Benchmark
+    public String throughMongo() {
+        return rejection(throughMongo.bookTicket(BenchmarkFixtures.FLIGHT_ID, BenchmarkFixtures.booking()));
+    }
+
+    @Benchmark
+    public String registry() {
+        return rejection(registry.bookTicket(BenchmarkFixtures.FLIGHT_ID, BenchmarkFixtures.booking()));
+    }
+}
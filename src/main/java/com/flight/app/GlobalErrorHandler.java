@@ -3,6 +3,7 @@ package com.flight.app;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -10,7 +11,9 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.support.WebExchangeBindException;
 
+import com.flight.app.exception.BookingRejectedException;
 import com.flight.app.exception.CancellationNotPossibleException;
+import com.flight.app.exception.FlightSoldOutException;
 import com.flight.app.exception.FlightUnavailableException;
 import com.flight.app.exception.ResourceNotFoundException;
 
@@ -19,6 +22,10 @@ import reactor.core.publisher.Mono;
 @ControllerAdvice
 public class GlobalErrorHandler {
 
+    // same for every sold-out rejection, built once
+    private static final ResponseEntity<String> SOLD_OUT = 
+            new ResponseEntity<>(FlightSoldOutException.MESSAGE, HttpStatus.BAD_REQUEST);
+
     @ExceptionHandler(WebExchangeBindException.class)
     public ResponseEntity<Map<String, String>> handleValidationExceptions(WebExchangeBindException ex) {
         
@@ -56,8 +63,21 @@ public class GlobalErrorHandler {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
     
+    @ExceptionHandler(FlightSoldOutException.class)
+    public ResponseEntity<String> handleFlightSoldOutException(FlightSoldOutException ex) {
+        return SOLD_OUT;
+    }
+    
     @ExceptionHandler(CancellationNotPossibleException.class)
     public ResponseEntity<String> handleCancellationNotPossibleException(CancellationNotPossibleException ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
+    
+    @ExceptionHandler(BookingRejectedException.class)
+    public ResponseEntity<String> handleBookingRejectedException(BookingRejectedException ex) {
+        // 429 Too Many Requests, 503 Service Unavailable or 409 Conflict, the client may retry after the given seconds
+        return ResponseEntity.status(ex.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(ex.getMessage());
+    }
 }
@@ -0,0 +1,153 @@
+package com.flight.app.config;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.FlightCancellation;
+import com.flight.app.entity.IdempotencyRecord;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.entity.WaitlistEntry;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Creates the indexes declared on the entities once the app is up (Spring Boot leaves
+// auto-index-creation off), drops the ones they replaced and checks that the hot queries
+// actually use them.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.mongo.index-bootstrap.enabled", havingValue = "true", matchIfMissing = true)
+public class MongoIndexInitializer {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public MongoIndexInitializer(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initIndexes() {
+        // runs in the background so a slow or missing database never blocks startup
+        ensureIndexes(Flight.class)
+            .then(ensureIndexes(Booking.class))
+            // widened by _id for the keyset paged history, now email_bookingdate_pnr_idx
+            .then(dropSupersededIndex(Booking.class, "email_bookingdate_idx"))
+            .then(ensureIndexes(IdempotencyRecord.class))
+            .then(ensureIndexes(WaitlistEntry.class))
+            .then(ensureIndexes(OutboxEvent.class))
+            .then(ensureIndexes(FlightCancellation.class))
+            .then(checkSearchQueryPlan())
+            .then(checkHistoryQueryPlan())
+            .then(checkManifestQueryPlan())
+            .subscribe(null, e -> log.warn("Mongo index bootstrap failed: {}", e.getMessage()));
+    }
+
+    private Mono<Void> ensureIndexes(Class<?> entityType) {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        
+        return Flux.fromIterable(resolver.resolveIndexFor(entityType))
+            .concatMap(index -> mongoTemplate.indexOps(entityType).createIndex(index))
+            .doOnNext(indexName -> log.info("Ensured index {} on {}", indexName, 
+                    mongoTemplate.getCollectionName(entityType)))
+            .then();
+    }
+
+    // Only once its replacement exists, so the queries it served are never left without an index
+    private Mono<Void> dropSupersededIndex(Class<?> entityType, String indexName) {
+        ReactiveIndexOperations indexOps = mongoTemplate.indexOps(entityType);
+        
+        return indexOps.getIndexInfo()
+            .filter(index -> index.getName().equals(indexName))
+            .concatMap(index -> indexOps.dropIndex(indexName)
+                .doOnSuccess(dropped -> log.info("Dropped superseded index {} on {}", indexName, 
+                        mongoTemplate.getCollectionName(entityType))))
+            .then();
+    }
+
+    // Same shape as FlightRepository.findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan
+    private Mono<Void> checkSearchQueryPlan() {
+        Document filter = new Document("fromPlace", "")
+                .append("toPlace", "")
+                .append("scheduleDate", mongoTemplate.getConverter().convertToMongoType(LocalDate.now()))
+                .append("availableSeats", new Document("$gt", 0));
+        
+        return explain(Flight.class, filter, null)
+            .doOnNext(stages -> reportPlan("flight search", stages))
+            .then();
+    }
+
+    // Same shape as BookingRepository.findByUserEmailOrderByBookingDateDesc
+    private Mono<Void> checkHistoryQueryPlan() {
+        Document filter = new Document("userEmail", "");
+        Document sort = new Document("bookingDate", -1);
+        
+        return explain(Booking.class, filter, sort)
+            .doOnNext(stages -> reportPlan("booking history", stages))
+            .then();
+    }
+
+    // Same shape as BookingRepositoryCustomImpl.findManifest and findFlightPage
+    private Mono<Void> checkManifestQueryPlan() {
+        Document filter = new Document("flightId", "");
+        Document sort = new Document("_id", 1);
+        
+        return explain(Booking.class, filter, sort)
+            .doOnNext(stages -> reportPlan("passenger manifest", stages))
+            .then();
+    }
+
+    private Mono<List<String>> explain(Class<?> entityType, Document filter, Document sort) {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(entityType))
+            .flatMap(collection -> Mono.from(collection.find(filter).sort(sort).explain(Document.class)))
+            .map(explain -> {
+                List<String> stages = new ArrayList<>();
+                Object queryPlanner = explain.get("queryPlanner");
+                if(queryPlanner instanceof Map<?, ?> planner) {
+                    collectStages(planner.get("winningPlan"), stages);
+                }
+                return stages;
+            });
+    }
+
+    // winningPlan is a tree of stages (inputStage / inputStages / queryPlan), walk all of it
+    private void collectStages(Object node, List<String> stages) {
+        if(node instanceof Map<?, ?> map) {
+            Object stage = map.get("stage");
+            if(stage != null) {
+                stages.add(stage.toString());
+            }
+            map.values().forEach(value -> collectStages(value, stages));
+        } 
+        else if(node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
+    private void reportPlan(String queryName, List<String> stages) {
+        if(stages.contains("COLLSCAN")) {
+            log.warn("The {} query is not served by an index (collection scan), plan stages: {}", queryName, stages);
+        } 
+        else if(stages.contains("SORT")) {
+            log.warn("The {} query sorts in memory instead of using the index order, plan stages: {}", queryName, stages);
+        } 
+        else {
+            log.info("The {} query is served by an index, plan stages: {}", queryName, stages);
+        }
+    }
+}
@@ -3,19 +3,27 @@ package com.flight.app.controller;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 
+import com.flight.app.dto.BookingPage;
 import com.flight.app.dto.BookingRequest;
+import com.flight.app.dto.ManifestEntry;
 import com.flight.app.dto.PassengerDTO;
 import com.flight.app.entity.Booking;
+import com.flight.app.entity.FlightCancellation;
 import com.flight.app.entity.Passenger;
+import com.flight.app.entity.WaitlistEntry;
 import com.flight.app.service.BookingService;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,6 +31,8 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/v1.0/flight")
 public class BookingController {
 
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
     private final BookingService bookingService;
 
     @Autowired
@@ -30,18 +40,54 @@ public class BookingController {
         this.bookingService = bookingService;
     }
 
+    // Clients that retry on timeouts send an Idempotency-Key, a retry with the same key
+    // gets the PNR of the first attempt instead of a second booking
     @PostMapping("/booking/{flightId}")
     public Mono<ResponseEntity<String>> bookTicket(
             @PathVariable String flightId, 
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody BookingRequest request) {
 
         Booking bookingEntity = mapBookingRequestToEntity(request);
 
         // returns Mono<String> (PNR)
-        return bookingService.bookTicket(flightId, bookingEntity)
+        return bookingService.bookTicket(flightId, bookingEntity, idempotencyKey)
                 .map(pnr -> new ResponseEntity<>("Ticket booked successfully. PNR: " + pnr, HttpStatus.CREATED));
     }
     
+    // For a flight that cannot take the request, answers 202 with the queued entry. The entry is
+    // booked automatically when seats come back, WAITING turns into BOOKED with the PNR.
+    @PostMapping("/booking/{flightId}/waitlist")
+    public Mono<ResponseEntity<WaitlistEntry>> joinWaitlist(@PathVariable String flightId,
+            @Valid @RequestBody BookingRequest request) {
+        
+        return bookingService.joinWaitlist(flightId, mapBookingRequestToEntity(request))
+                .map(entry -> new ResponseEntity<>(entry, HttpStatus.ACCEPTED));
+    }
+    
+    @GetMapping("/booking/waitlist/{entryId}")
+    public Mono<WaitlistEntry> getWaitlistEntry(@PathVariable String entryId) {
+        
+        return bookingService.getWaitlistEntry(entryId);
+    }
+    
+    // The entry now, then once more when it is booked, after which the stream ends. An idle
+    // stream carries a comment every 15 seconds so proxies keep it open.
+    @GetMapping(value = "/booking/waitlist/{entryId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<WaitlistEntry>> streamWaitlistEntry(@PathVariable String entryId) {
+        ServerSentEvent<WaitlistEntry> heartbeat = ServerSentEvent.<WaitlistEntry>builder()
+                .comment("heartbeat")
+                .build();
+        
+        return bookingService.watchWaitlistEntry(entryId)
+                .map(entry -> ServerSentEvent.builder(entry).event("waitlist").build())
+                .publish(events -> Flux.merge(events, Flux.interval(HEARTBEAT_INTERVAL)
+                        .onBackpressureDrop()
+                        .map(tick -> heartbeat)
+                        // heartbeats end with the entry's stream
+                        .takeUntilOther(events.ignoreElements())));
+    }
+    
     private Booking mapBookingRequestToEntity(BookingRequest request) {
         Booking booking = new Booking();
         booking.setUserName(request.getUserName());
@@ -80,6 +126,57 @@ public class BookingController {
     	return bookingService.getBookingHistoryByEmail(emailId);
     }
     
+    // Keyset paged history, pass nextCursor of a page as cursor to get the next one.
+    // summary=true leaves out the passenger list.
+    @GetMapping("/booking/history/{emailId}/page")
+    public Mono<BookingPage<?>> getBookingHistoryPage(@PathVariable String emailId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean summary) {
+        
+        if(summary) {
+            return bookingService.getBookingHistorySummaryPage(emailId, cursor, size).map(page -> page);
+        }
+        return bookingService.getBookingHistoryPage(emailId, cursor, size).map(page -> page);
+    }
+    
+    // Passenger manifest for ground operations, one NDJSON line per passenger in pnr order.
+    // Written while the bookings are read, the client's demand paces the Mongo cursor.
+    @GetMapping(value = "/airline/{flightId}/manifest", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ManifestEntry> streamManifest(@PathVariable String flightId) {
+        
+        return bookingService.getPassengerManifest(flightId);
+    }
+    
+    // Same as CSV with a header line (Accept: text/csv)
+    @GetMapping(value = "/airline/{flightId}/manifest", produces = "text/csv")
+    public ResponseEntity<Flux<String>> streamManifestCsv(@PathVariable String flightId) {
+        Flux<String> lines = bookingService.getPassengerManifest(flightId)
+                .map(ManifestEntry::toCsvLine)
+                // the header waits for the first signal, an unknown flight is still a 404
+                .switchOnFirst((first, rows) -> first.isOnError() ? rows : rows.startWith(ManifestEntry.CSV_HEADER));
+        
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"manifest-" + flightId + ".csv\"")
+                .body(lines);
+    }
+    
+    // The airline cancelled the flight: it is off sale when this answers 202, its bookings are
+    // cancelled in the background with a refund/rebooking event each. Progress under GET.
+    @PostMapping("/airline/{flightId}/cancel")
+    public Mono<ResponseEntity<FlightCancellation>> cancelFlight(@PathVariable String flightId,
+            @RequestParam(required = false) String reason) {
+        
+        return bookingService.cancelFlight(flightId, reason)
+                .map(cancellation -> new ResponseEntity<>(cancellation, HttpStatus.ACCEPTED));
+    }
+    
+    @GetMapping("/airline/{flightId}/cancellation")
+    public Mono<FlightCancellation> getFlightCancellation(@PathVariable String flightId) {
+        
+        return bookingService.getFlightCancellation(flightId);
+    }
+    
     @DeleteMapping("/booking/cancel/{pnr}")
     public Mono<ResponseEntity<String>> cancelTicket(@PathVariable String pnr) {
                 return bookingService.cancelTicket(pnr)
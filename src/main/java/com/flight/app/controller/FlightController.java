@@ -1,18 +1,37 @@
 package com.flight.app.controller;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.server.ResponseStatusException;
 
+import com.flight.app.dto.ConnectionSearchRequest;
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FareCalendarRequest;
+import com.flight.app.dto.FlightIngestResult;
 import com.flight.app.dto.FlightSearchRequest;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.dto.Itinerary;
+import com.flight.app.dto.SeatAvailability;
+import com.flight.app.dto.SeatAvailabilityUpdate;
 import com.flight.app.entity.Flight;
+import com.flight.app.entity.LowestFare;
 import com.flight.app.exception.ResourceNotFoundException;
 import com.flight.app.service.FlightService;
 
@@ -24,6 +43,8 @@ import reactor.core.publisher.Mono;
 @RequestMapping("/api/v1.0/flight")
 public class FlightController {
 
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
     private final FlightService flightService;
 
     @Autowired
@@ -40,11 +61,21 @@ public class FlightController {
     
     }
     
+    // Accepts a JSON array or NDJSON stream of flights and answers with one NDJSON 
+    // result line per flight while the upload is still being read
+    @PostMapping(value = "/airline/inventory/bulk", 
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<FlightIngestResult> addFlightInventoryBulk(@RequestBody Flux<Flight> flights) {
+        
+        return flightService.addFlights(flights);
+    }
+    
     @PostMapping("/search")
-    public Mono<ResponseEntity<List<Flight>>> searchFlights(@Valid @RequestBody 
+    public Mono<ResponseEntity<List<FlightSearchResult>>> searchFlights(@Valid @RequestBody 
     		FlightSearchRequest request) {
         
-        Flux<Flight> matchingFlights = flightService.searchFlights(
+        Flux<FlightSearchResult> matchingFlights = flightService.searchFlightResults(
                 request.getFromPlace(),
                 request.getToPlace(),
                 request.getJourneyDate()
@@ -61,4 +92,128 @@ public class FlightController {
                     return Mono.just(new ResponseEntity<>(flights, HttpStatus.OK));
                 });
     }
+    
+    // Writes each flight as soon as Mongo yields it, demand from the client 
+    // flows straight back to the cursor instead of buffering the whole list
+    @PostMapping(value = "/search/stream", 
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<FlightSearchResult> streamFlights(@Valid @RequestBody FlightSearchRequest request) {
+        
+        // not through the search cache, it would collect the whole route-day first
+        return flightService.streamFlightResults(
+                request.getFromPlace(),
+                request.getToPlace(),
+                request.getJourneyDate()
+        )
+        // only the first signal is inspected, so an empty result still turns 
+        // into a 404 before anything has been written to the response
+        .switchOnFirst((first, flights) -> {
+            if(first.isOnComplete()) {
+                return Flux.error(new ResourceNotFoundException(
+                		"No flights found matching the criteria"
+                ));
+            }
+            return flights;
+        });
+    }
+    
+    // Cheapest fare per day around journeyDate from one aggregation, one small row per day
+    // written as soon as Mongo yields it
+    @PostMapping(value = "/search/fare-calendar", 
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<FareCalendarDay> getFareCalendar(@Valid @RequestBody FareCalendarRequest request) {
+        
+        return flightService.getFareCalendar(
+                request.getFromPlace(),
+                request.getToPlace(),
+                request.getJourneyDate(),
+                request.getFlexDays(),
+                request.getPassengers()
+        );
+    }
+    
+    // Deals page: cheapest bookable flight per month of a route, served from memory
+    @GetMapping("/fares/lowest/{fromPlace}/{toPlace}")
+    public Flux<LowestFare> getLowestFares(@PathVariable String fromPlace, @PathVariable String toPlace,
+            @RequestParam(defaultValue = "12") int months) {
+        if(months < 1 || months > 24) {
+            return Flux.error(new IllegalArgumentException("Months must be between 1 and 24."));
+        }
+        
+        return flightService.getLowestFares(fromPlace, toPlace, months);
+    }
+    
+    // month as yyyy-MM
+    @GetMapping("/fares/lowest/{fromPlace}/{toPlace}/{month}")
+    public Mono<LowestFare> getLowestFare(@PathVariable String fromPlace, @PathVariable String toPlace,
+            @PathVariable String month) {
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } 
+        catch(DateTimeParseException e) {
+            return Mono.error(new IllegalArgumentException("Month must look like 2026-01."));
+        }
+        
+        return flightService.getLowestFare(fromPlace, toPlace, yearMonth)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException(
+                        "No bookable flights from " + fromPlace + " to " + toPlace + " in " + month
+                )));
+    }
+    
+    // Itineraries with one or two changes for routes without a good direct flight,
+    // answered from the in-memory route graph
+    @PostMapping("/search/connections")
+    public Mono<ResponseEntity<List<Itinerary>>> searchConnections(@Valid @RequestBody 
+            ConnectionSearchRequest request) {
+        
+        return flightService.searchConnections(request)
+                .collectList()
+                .flatMap(itineraries -> {
+                    if(itineraries.isEmpty()) {
+                        return Mono.error(new ResourceNotFoundException(
+                                "No connecting flights found matching the criteria"
+                        ));
+                    }
+                    return Mono.just(new ResponseEntity<>(itineraries, HttpStatus.OK));
+                });
+    }
+    
+    // Live seats of one flight: the current count first, then every change. A slow client gets
+    // the latest count instead of a backlog, an idle stream carries a comment every 15 seconds
+    // so proxies keep it open.
+    @GetMapping(value = "/{flightId}/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<SeatAvailabilityUpdate>> streamFlightAvailability(@PathVariable String flightId) {
+        
+        return withHeartbeats(flightService.watchFlightAvailability(flightId));
+    }
+    
+    // Same for every flight of a route-day, e.g. to keep a search result page current
+    @GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<SeatAvailabilityUpdate>> streamRouteAvailability(@RequestParam String fromPlace,
+            @RequestParam String toPlace, @RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate journeyDate) {
+        
+        return withHeartbeats(flightService.watchRouteAvailability(fromPlace, toPlace, journeyDate));
+    }
+    
+    private static Flux<ServerSentEvent<SeatAvailabilityUpdate>> withHeartbeats(Flux<SeatAvailabilityUpdate> updates) {
+        ServerSentEvent<SeatAvailabilityUpdate> heartbeat = ServerSentEvent.<SeatAvailabilityUpdate>builder()
+                .comment("heartbeat")
+                .build();
+        
+        // every update restarts the idle timer
+        return updates
+                .map(update -> ServerSentEvent.builder(update).event("availability").build())
+                .switchMap(event -> Flux.interval(HEARTBEAT_INTERVAL)
+                        .onBackpressureDrop()
+                        .map(tick -> heartbeat)
+                        .startWith(event));
+    }
+    
+    // Free seat numbers straight from the flight's seat map
+    @GetMapping("/{flightId}/seats")
+    public Mono<SeatAvailability> getSeatAvailability(@PathVariable String flightId) {
+        
+        return flightService.getSeatAvailability(flightId);
+    }
 }
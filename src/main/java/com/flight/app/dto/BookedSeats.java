@@ -0,0 +1,7 @@
+package com.flight.app.dto;
+
+import java.util.List;
+
+// Seats held by the bookings of one flight and their seat numbers as booked
+public record BookedSeats(String flightId, int seats, List<String> seatNumbers) {
+}
@@ -0,0 +1,7 @@
+package com.flight.app.dto;
+
+import java.util.List;
+
+// One page of booking history, nextCursor is null on the last page
+public record BookingPage<T>(List<T> items, String nextCursor) {
+}
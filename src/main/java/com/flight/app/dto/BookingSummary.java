@@ -0,0 +1,16 @@
+package com.flight.app.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import com.flight.app.entity.Booking;
+
+// Booking history row without the passenger list
+public record BookingSummary(String pnr, String flightId, LocalDate journeyDate, Integer numberOfSeats,
+        Double totalCost, LocalDateTime bookingDate) {
+
+    public static BookingSummary of(Booking booking) {
+        return new BookingSummary(booking.getPnr(), booking.getFlightId(), booking.getJourneyDate(),
+                booking.getNumberOfSeats(), booking.getTotalCost(), booking.getBookingDate());
+    }
+}
@@ -0,0 +1,36 @@
+package com.flight.app.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import java.time.LocalDate;
+
+@Data
+public class ConnectionSearchRequest {
+    @NotBlank
+    private String fromPlace;
+    
+    @NotBlank
+    private String toPlace;
+    
+    @NotNull
+    private LocalDate journeyDate;
+    
+    // every leg needs this many free seats
+    @Min(1)
+    private int passengers = 1;
+    
+    @Min(1)
+    @Max(2)
+    private int maxStops = 2;
+    
+    // time between landing and the next departure
+    @Min(0)
+    private int minLayoverMinutes = 45;
+    
+    @Min(0)
+    @Max(1440)
+    private int maxLayoverMinutes = 360;
+}
@@ -0,0 +1,7 @@
+package com.flight.app.dto;
+
+import java.time.LocalDate;
+
+// Cheapest fare of one day on a route, over the flights that still have enough seats
+public record FareCalendarDay(LocalDate scheduleDate, Double lowestPrice, int flights, int availableSeats) {
+}
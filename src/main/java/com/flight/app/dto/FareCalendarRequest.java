@@ -0,0 +1,29 @@
+package com.flight.app.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import java.time.LocalDate;
+
+@Data
+public class FareCalendarRequest {
+    @NotBlank
+    private String fromPlace;
+    
+    @NotBlank
+    private String toPlace;
+    
+    @NotNull
+    private LocalDate journeyDate;
+    
+    // days shown before and after journeyDate
+    @Min(0)
+    @Max(30)
+    private int flexDays = 3;
+    
+    // only flights with this many free seats count
+    @Min(1)
+    private int passengers = 1;
+}
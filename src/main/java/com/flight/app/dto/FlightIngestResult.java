@@ -0,0 +1,13 @@
+package com.flight.app.dto;
+
+// Outcome of one flight of a bulk inventory upload, index is its position in the upload
+public record FlightIngestResult(long index, String flightId, boolean accepted, String error) {
+
+    public static FlightIngestResult accepted(long index, String flightId) {
+        return new FlightIngestResult(index, flightId, true, null);
+    }
+
+    public static FlightIngestResult rejected(long index, String error) {
+        return new FlightIngestResult(index, null, false, error);
+    }
+}
@@ -0,0 +1,18 @@
+package com.flight.app.dto;
+
+import java.time.LocalTime;
+
+import com.flight.app.entity.Flight;
+
+// What the search page shows per flight, route and date are already known from the request
+public record FlightSearchResult(String id, String airlineName, LocalTime departureTime, LocalTime arrivalTime,
+        Double price, Integer availableSeats) {
+
+    // fields fetched from Mongo for the search projection, keep in sync with the components above
+    public static final String[] FIELDS = {"id", "airlineName", "departureTime", "arrivalTime", "price", "availableSeats"};
+
+    public static FlightSearchResult of(Flight flight) {
+        return new FlightSearchResult(flight.getId(), flight.getAirlineName(), flight.getDepartureTime(),
+                flight.getArrivalTime(), flight.getPrice(), flight.getAvailableSeats());
+    }
+}
@@ -0,0 +1,7 @@
+package com.flight.app.dto;
+
+import java.util.List;
+
+// Legs in travel order, price is per passenger over all legs
+public record Itinerary(List<ItineraryLeg> legs, int stops, double totalPrice, long durationMinutes) {
+}
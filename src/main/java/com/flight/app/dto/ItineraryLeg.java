@@ -0,0 +1,17 @@
+package com.flight.app.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import com.flight.app.entity.Flight;
+
+// One flight of a connecting itinerary
+public record ItineraryLeg(String flightId, String airlineName, String fromPlace, String toPlace, 
+        LocalDate scheduleDate, LocalTime departureTime, LocalTime arrivalTime, Double price, Integer availableSeats) {
+
+    public static ItineraryLeg of(Flight flight) {
+        return new ItineraryLeg(flight.getId(), flight.getAirlineName(), flight.getFromPlace(), flight.getToPlace(),
+                flight.getScheduleDate(), flight.getDepartureTime(), flight.getArrivalTime(), flight.getPrice(),
+                flight.getAvailableSeats());
+    }
+}
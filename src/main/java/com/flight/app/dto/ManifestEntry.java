@@ -0,0 +1,46 @@
+package com.flight.app.dto;
+
+import java.util.List;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Passenger;
+
+// One passenger of the flight manifest, flattened from the booking that holds the seat
+public record ManifestEntry(String pnr, String seatNumber, String name, String gender, Integer age, String mealOpted) {
+
+    // booking fields fetched from Mongo for the manifest projection
+    public static final String[] BOOKING_FIELDS = {"pnr", "mealOpted", "passengers"};
+
+    public static final String CSV_HEADER = "pnr,seatNumber,name,gender,age,mealOpted\n";
+
+    public static List<ManifestEntry> of(Booking booking) {
+        if(booking.getPassengers() == null) {
+            return List.of();
+        }
+        return booking.getPassengers().stream()
+                .map(passenger -> of(booking, passenger))
+                .toList();
+    }
+
+    private static ManifestEntry of(Booking booking, Passenger passenger) {
+        return new ManifestEntry(booking.getPnr(), passenger.getSeatNumber(), passenger.getName(),
+                passenger.getGender(), passenger.getAge(), booking.getMealOpted());
+    }
+
+    // one CSV line including the line break, in CSV_HEADER order
+    public String toCsvLine() {
+        return String.join(",", csv(pnr), csv(seatNumber), csv(name), csv(gender),
+                age == null ? "" : age.toString(), csv(mealOpted)) + "\n";
+    }
+
+    // RFC 4180: quoted when it holds a separator, a quote or a line break, quotes doubled
+    private static String csv(String value) {
+        if(value == null) {
+            return "";
+        }
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,7 @@
+package com.flight.app.dto;
+
+import java.util.List;
+
+// Answered from the flight's seat map, no booking is read
+public record SeatAvailability(String flightId, int seatsPerRow, int availableSeats, List<String> freeSeats) {
+}
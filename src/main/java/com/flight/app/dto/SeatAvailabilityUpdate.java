@@ -0,0 +1,15 @@
+package com.flight.app.dto;
+
+import java.time.LocalDate;
+
+import com.flight.app.entity.Flight;
+
+// Pushed to availability streams whenever the seats of a flight change
+public record SeatAvailabilityUpdate(String flightId, String fromPlace, String toPlace, LocalDate scheduleDate, 
+        Integer availableSeats) {
+
+    public static SeatAvailabilityUpdate of(Flight flight) {
+        return new SeatAvailabilityUpdate(flight.getId(), flight.getFromPlace(), flight.getToPlace(),
+                flight.getScheduleDate(), flight.getAvailableSeats());
+    }
+}
@@ -5,6 +5,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import jakarta.validation.constraints.Email;
@@ -17,6 +19,13 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Document(collection = "bookings") 
+@CompoundIndexes({
+    // Backs BookingRepository.findByUserEmailOrderByBookingDateDesc and the keyset paged history,
+    // _id (pnr) breaks ties between bookings made in the same millisecond
+    @CompoundIndex(name = "email_bookingdate_pnr_idx", def = "{'userEmail': 1, 'bookingDate': -1, '_id': -1}"),
+    // Bookings of one flight in pnr order: the passenger manifest and the booked seat totals
+    @CompoundIndex(name = "flightid_pnr_idx", def = "{'flightId': 1, '_id': 1}")
+})
 @Data 
 @AllArgsConstructor 
 @NoArgsConstructor 
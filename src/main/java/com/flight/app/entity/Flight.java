@@ -1,19 +1,27 @@
 package com.flight.app.entity;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.List;
 
 @Document(collection = "flights") 
+// Backs FlightRepository.findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan
+@CompoundIndex(name = "route_date_seats_idx", 
+        def = "{'fromPlace': 1, 'toPlace': 1, 'scheduleDate': 1, 'availableSeats': 1}")
 @Data 
+@Builder(toBuilder = true)
 @AllArgsConstructor 
 @NoArgsConstructor 
 public class Flight {
@@ -42,9 +50,25 @@ public class Flight {
     @Min(value = 0, message = "Price cannot be negative.")
     private Double price;
 
+    @NotNull(message = "Total seats is required.")
     @Min(value = 1, message = "Total seats must be at least 1.")
+    // 999 rows of 10, the most seat numbers can address
+    @Max(value = 9990, message = "Total seats cannot be more than 9990.")
     private Integer totalSeats;
 
     @Min(value = 0, message = "Available seats cannot be negative.")
     private Integer availableSeats;
+    
+    // seat letters per row start at A, 6 when not given
+    @Min(value = 1, message = "Seats per row must be at least 1.")
+    @Max(value = 10, message = "Seats per row cannot be more than 10.")
+    private Integer seatsPerRow;
+    
+    // One bit per seat (see SeatMap), set = taken. Maintained by the seat inventory, 
+    // claimed and released together with availableSeats in one atomic update.
+    private List<Long> seatMap;
+    
+    // set when the airline cancelled the flight, it has no seats left from then on 
+    // and its bookings are taken care of by FlightCancellationJob
+    private Boolean cancelled;
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.flight.app.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// An airline cancellation of a flight and how far FlightCancellationJob got with its bookings.
+// One per flight, the flight id is the id, so asking twice finds the running one.
+@Document(collection = "flight_cancellations")
+// Backs FlightCancellationRepository.findByStatusAndLeaseUntilLessThanEqual, the jobs to resume
+@CompoundIndex(name = "status_lease_idx", def = "{'status': 1, 'leaseUntil': 1}")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FlightCancellation {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+
+    @Id
+    private String flightId;
+
+    private String reason;
+
+    private Status status;
+
+    // bookings on the flight when the cancellation was asked for
+    private long bookingsTotal;
+
+    private long bookingsCancelled;
+
+    private long passengersAffected;
+
+    // every booking up to this pnr is cancelled, the next run starts after it
+    private String lastPnr;
+
+    private Instant requestedAt;
+
+    private Instant updatedAt;
+
+    // a job worked on by one instance is left alone by the others until then, null once COMPLETED
+    private Instant leaseUntil;
+}
@@ -0,0 +1,32 @@
+package com.flight.app.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of a booking made with an Idempotency-Key, shared by all instances.
+// pnr stays null while the first request is still running.
+@Document(collection = "idempotency_keys")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    private String key;
+
+    // SHA-256 of the flight and request the key was first used for
+    private String fingerprint;
+
+    private String pnr;
+
+    // Mongo drops the record once this time has passed
+    @Indexed(name = "expiresAt_ttl_idx", expireAfter = "0s")
+    private Instant expiresAt;
+}
@@ -0,0 +1,36 @@
+package com.flight.app.entity;
+
+import java.time.LocalDate;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Cheapest flight with free seats on a route in one month, maintained by LowestFareIndex.
+// Persisted so the deals pages have an answer right after a restart.
+@Document(collection = "lowest_fares")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LowestFare {
+
+    // fromPlace|toPlace|yyyy-MM
+    @Id
+    private String id;
+
+    private String fromPlace;
+
+    private String toPlace;
+
+    // yyyy-MM
+    private String month;
+
+    private Double price;
+
+    private String flightId;
+
+    private LocalDate scheduleDate;
+}
@@ -0,0 +1,60 @@
+package com.flight.app.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A side effect of a booking change (confirmation mail, loyalty, DCS sync) waiting for OutboxRelay.
+// Written together with the change by Outbox, deleted once every sink took it.
+@Document(collection = "outbox")
+// Backs OutboxEventRepository.findDue, the due events are the start of one index range
+@CompoundIndex(name = "status_next_attempt_idx", def = "{'status': 1, 'nextAttemptAt': 1}")
+// Backs OutboxEventRepository.findByPnrInAndStatus, the earlier events of a booking the relay waits for
+@CompoundIndex(name = "pnr_status_idx", def = "{'pnr': 1, 'status': 1}")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEvent {
+
+    public enum Type {
+        BOOKING_CONFIRMED,
+        BOOKING_CANCELLED,
+        // the airline cancelled the booking's flight, the passengers are owed a refund or rebooking
+        FLIGHT_CANCELLED
+    }
+
+    public enum Status {
+        PENDING,
+        // gave up after app.outbox.relay.max-attempts, kept for a look and a manual retry
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private Type type;
+
+    private String pnr;
+
+    private String flightId;
+
+    // the booking as it was written (or deleted), so sinks never read it back
+    private Booking booking;
+
+    private Instant createdAt;
+
+    private Status status;
+
+    private int attempts;
+
+    // due from then on, a relay working on the event pushes it out by its lease
+    private Instant nextAttemptAt;
+
+    private String lastError;
+}
@@ -0,0 +1,61 @@
+package com.flight.app.entity;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A booking request for a sold-out flight, waiting for seats to come back.
+// Promoted in createdAt order by Waitlist when a booking of the flight is cancelled.
+@Document(collection = "waitlist")
+// Backs WaitlistEntryRepository.findByFlightIdAndStatusOrderByCreatedAtAscIdAsc,
+// the queue of a flight is one range of the index in FIFO order
+@CompoundIndex(name = "flight_status_created_idx", def = "{'flightId': 1, 'status': 1, 'createdAt': 1, '_id': 1}")
+// Backs WaitlistEntryRepository.findByStatusAndLeaseUntilLessThanEqual, the promotions to take back
+@CompoundIndex(name = "status_lease_idx", def = "{'status': 1, 'leaseUntil': 1}")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WaitlistEntry {
+
+    public enum Status {
+        WAITING,
+        // claimed by a promotion that is reserving the seats
+        PROMOTING,
+        BOOKED,
+        // the airline cancelled the flight, the entry will never be booked
+        CLOSED
+    }
+
+    @Id
+    private String id;
+
+    private String flightId;
+
+    private String userName;
+
+    private String userEmail;
+
+    private String mobileNumber;
+
+    private String mealOpted;
+
+    // seat numbers are the wish, a promotion takes other free seats when they are gone
+    private List<Passenger> passengers;
+
+    private Instant createdAt;
+
+    private Status status;
+
+    // set once the entry is BOOKED
+    private String pnr;
+
+    // while PROMOTING: the promotion is taken back to WAITING after this, its instance died
+    private Instant leaseUntil;
+}
@@ -0,0 +1,8 @@
+package com.flight.app.event;
+
+import com.flight.app.entity.Flight;
+
+// Published by FlightService after a flight is added or its seat inventory changes.
+// Carries the flight as it is stored after the change.
+public record FlightInventoryChangedEvent(Flight flight) {
+}
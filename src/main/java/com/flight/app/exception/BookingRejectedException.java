@@ -0,0 +1,28 @@
+package com.flight.app.exception;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpStatus;
+
+// Booking turned away before it reached the pipeline (429 or 503 from admission control, 409 for
+// a duplicate Idempotency-Key still in progress), always with Retry-After.
+// Thrown by the thousand during a flash sale, so no stack trace is captured.
+public class BookingRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final Duration retryAfter;
+
+    public BookingRejectedException(String message, HttpStatus status, Duration retryAfter) {
+        super(message, null, false, false);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
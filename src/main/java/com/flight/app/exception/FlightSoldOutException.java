@@ -0,0 +1,15 @@
+package com.flight.app.exception;
+
+// Booking for a flight with no seats left, turned away by SoldOutRegistry before any database call.
+// Thrown by the thousand during a sell-out, so it is one shared instance without a stack trace
+// and GlobalErrorHandler answers it with a prebuilt response.
+public final class FlightSoldOutException extends FlightUnavailableException {
+
+    public static final String MESSAGE = "Insufficient seats. Only 0 seats Available";
+
+    public static final FlightSoldOutException INSTANCE = new FlightSoldOutException();
+
+    private FlightSoldOutException() {
+        super(MESSAGE, false);
+    }
+}
@@ -5,4 +5,8 @@ public class FlightUnavailableException extends RuntimeException {
 	public FlightUnavailableException(String message) {
 	    super(message);
 	}
+	
+	protected FlightUnavailableException(String message, boolean writableStackTrace) {
+	    super(message, null, false, writableStackTrace);
+	}
 }
@@ -9,9 +9,11 @@ import reactor.core.publisher.Mono;
 import reactor.core.publisher.Flux;
 
 @Repository
-public interface BookingRepository extends ReactiveMongoRepository<Booking, String> { 
+public interface BookingRepository extends ReactiveMongoRepository<Booking, String>, BookingRepositoryCustom { 
     
     Mono<Booking> findByPnr(String pnr);
     
     Flux<Booking> findByUserEmailOrderByBookingDateDesc(String userEmail);
+    
+    Mono<Long> countByFlightId(String flightId);
 }
@@ -0,0 +1,29 @@
+package com.flight.app.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import com.flight.app.dto.BookedSeats;
+import com.flight.app.entity.Booking;
+
+import reactor.core.publisher.Flux;
+
+public interface BookingRepositoryCustom {
+
+    // Seats held by all bookings per flight with their seat numbers, flights without bookings are left out
+    Flux<BookedSeats> sumBookedSeatsByFlightId(Collection<String> flightIds);
+    
+    // Keyset page of a user's bookings, newest first, ordered by (bookingDate, pnr) descending.
+    // Starts after the given key when afterBookingDate is set. With summaryOnly the passenger
+    // list is not fetched from Mongo at all.
+    Flux<Booking> findHistoryPage(String userEmail, LocalDateTime afterBookingDate, String afterPnr, 
+            int limit, boolean summaryOnly);
+    
+    // Bookings of a flight in pnr order with only pnr, mealOpted and passengers fetched,
+    // read from the cursor in batches as the subscriber asks for more
+    Flux<Booking> findManifest(String flightId);
+    
+    // Keyset page of a flight's bookings in pnr order, the full documents after afterPnr
+    // (from the first when null). One range of flightid_pnr_idx.
+    Flux<Booking> findFlightPage(String flightId, String afterPnr, int limit);
+}
@@ -0,0 +1,92 @@
+package com.flight.app.repository;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.unwind;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.flight.app.dto.BookedSeats;
+import com.flight.app.dto.ManifestEntry;
+import com.flight.app.entity.Booking;
+
+import reactor.core.publisher.Flux;
+
+public class BookingRepositoryCustomImpl implements BookingRepositoryCustom {
+
+    // bookings per getMore of the manifest cursor, a few hundred passengers in memory at most
+    private static final int MANIFEST_BATCH_SIZE = 100;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public BookingRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<BookedSeats> sumBookedSeatsByFlightId(Collection<String> flightIds) {
+        TypedAggregation<Booking> aggregation = newAggregation(Booking.class,
+                match(Criteria.where("flightId").in(flightIds)),
+                // every passenger holds one seat (bookTicket sets numberOfSeats from the list)
+                unwind("passengers"),
+                group("flightId").count().as("seats").push("passengers.seatNumber").as("seatNumbers"),
+                project("seats", "seatNumbers").and("flightId").previousOperation());
+        
+        return mongoTemplate.aggregate(aggregation, BookedSeats.class);
+    }
+
+    @Override
+    public Flux<Booking> findHistoryPage(String userEmail, LocalDateTime afterBookingDate, String afterPnr,
+            int limit, boolean summaryOnly) {
+        Criteria criteria = Criteria.where("userEmail").is(userEmail);
+        if(afterBookingDate != null) {
+            // everything strictly after the last key of the previous page in (bookingDate, pnr) desc order
+            criteria = criteria.orOperator(
+                    Criteria.where("bookingDate").lt(afterBookingDate),
+                    Criteria.where("bookingDate").is(afterBookingDate).and("pnr").lt(afterPnr));
+        }
+        
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "bookingDate", "pnr"))
+                .limit(limit);
+        if(summaryOnly) {
+            query.fields().include("pnr", "flightId", "journeyDate", "numberOfSeats", "totalCost", "bookingDate");
+        }
+        
+        return mongoTemplate.find(query, Booking.class);
+    }
+
+    @Override
+    public Flux<Booking> findManifest(String flightId) {
+        Query query = Query.query(Criteria.where("flightId").is(flightId))
+                .with(Sort.by("pnr"))
+                .cursorBatchSize(MANIFEST_BATCH_SIZE);
+        query.fields().include(ManifestEntry.BOOKING_FIELDS);
+        
+        return mongoTemplate.find(query, Booking.class);
+    }
+
+    @Override
+    public Flux<Booking> findFlightPage(String flightId, String afterPnr, int limit) {
+        Criteria criteria = Criteria.where("flightId").is(flightId);
+        if(afterPnr != null) {
+            criteria = criteria.and("pnr").gt(afterPnr);
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by("pnr"))
+                .limit(limit);
+        
+        return mongoTemplate.find(query, Booking.class);
+    }
+}
@@ -0,0 +1,18 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.FlightCancellation;
+
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface FlightCancellationRepository extends ReactiveMongoRepository<FlightCancellation, String>,
+        FlightCancellationRepositoryCustom {
+
+    // RUNNING jobs nobody holds a lease on, left behind by an instance that stopped
+    Flux<FlightCancellation> findByStatusAndLeaseUntilLessThanEqual(FlightCancellation.Status status, Instant now);
+}
@@ -0,0 +1,20 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import com.flight.app.entity.FlightCancellation;
+
+import reactor.core.publisher.Mono;
+
+public interface FlightCancellationRepositoryCustom {
+
+    // Atomically takes a RUNNING job whose lease ended by moving leaseUntil, so no other
+    // instance works on it meanwhile. Empty when it is gone, COMPLETED or held by another instance.
+    Mono<FlightCancellation> claim(String flightId, Instant now, Instant leaseUntil);
+
+    // Moves the checkpoint to lastPnr, adds the counts of the batch and extends the lease
+    Mono<FlightCancellation> recordProgress(String flightId, String lastPnr, long bookings, long passengers,
+            Instant now, Instant leaseUntil);
+
+    Mono<FlightCancellation> complete(String flightId, Instant now);
+}
@@ -0,0 +1,61 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.flight.app.entity.FlightCancellation;
+
+import reactor.core.publisher.Mono;
+
+public class FlightCancellationRepositoryCustomImpl implements FlightCancellationRepositoryCustom {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public FlightCancellationRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<FlightCancellation> claim(String flightId, Instant now, Instant leaseUntil) {
+        Query query = Query.query(Criteria.where("_id").is(flightId)
+                .and("status").is(FlightCancellation.Status.RUNNING)
+                .and("leaseUntil").lte(now));
+
+        return mongoTemplate.findAndModify(query, new Update().set("leaseUntil", leaseUntil), RETURN_NEW,
+                FlightCancellation.class);
+    }
+
+    @Override
+    public Mono<FlightCancellation> recordProgress(String flightId, String lastPnr, long bookings, long passengers,
+            Instant now, Instant leaseUntil) {
+        Update update = new Update()
+                .set("lastPnr", lastPnr)
+                .inc("bookingsCancelled", bookings)
+                .inc("passengersAffected", passengers)
+                .set("updatedAt", now)
+                .set("leaseUntil", leaseUntil);
+
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(flightId)), update, RETURN_NEW,
+                FlightCancellation.class);
+    }
+
+    @Override
+    public Mono<FlightCancellation> complete(String flightId, Instant now) {
+        Update update = new Update()
+                .set("status", FlightCancellation.Status.COMPLETED)
+                .set("updatedAt", now)
+                .unset("leaseUntil");
+
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(flightId)), update, RETURN_NEW,
+                FlightCancellation.class);
+    }
+}
@@ -9,7 +9,7 @@ import reactor.core.publisher.Flux;
 import java.time.LocalDate;
 
 @Repository
-public interface FlightRepository extends ReactiveMongoRepository<Flight, String> { 
+public interface FlightRepository extends ReactiveMongoRepository<Flight, String>, FlightRepositoryCustom { 
 
     Flux<Flight> findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan(
             String fromPlace,
@@ -17,4 +17,9 @@ public interface FlightRepository extends ReactiveMongoRepository<Flight, String
             LocalDate scheduleDate,
             int availableSeats
     );
+    
+    Flux<Flight> findByScheduleDateGreaterThanEqual(LocalDate scheduleDate);
+    
+    // flights stored before seat maps existed
+    Flux<Flight> findBySeatMapIsNull();
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.flight.app.repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.entity.Flight;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Atomic inventory operations that cannot be expressed as derived queries
+public interface FlightRepositoryCustom {
+
+    // Same filter as findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan,
+    // but Mongo only returns the fields of FlightSearchResult
+    Flux<FlightSearchResult> findSearchResults(String fromPlace, String toPlace, LocalDate scheduleDate, 
+            int availableSeats);
+
+    // Lowest price, flight count and free seats per scheduleDate in [fromDate, toDate] over the
+    // flights with at least minSeats free, one aggregation ordered by date
+    Flux<FareCalendarDay> findFareCalendar(String fromPlace, String toPlace, LocalDate fromDate, LocalDate toDate,
+            int minSeats);
+
+    // Decrements availableSeats and sets the seat bits of seatBlocks (one long per seatMap entry),
+    // only if at least `seats` are left and none of the bits is set yet. Returns the updated 
+    // flight, or empty when the flight is missing, cancelled, sold out or one of the seats is taken.
+    Mono<Flight> claimSeats(String flightId, int seats, long[] seatBlocks);
+
+    // Gives `seats` back and clears the seat bits of seatBlocks, returns the updated flight.
+    // Empty for a cancelled flight, it keeps no seats to give back.
+    Mono<Flight> releaseSeats(String flightId, int seats, long[] seatBlocks);
+    
+    // Gives `seats` back to the flight and returns the updated flight, empty when it is cancelled
+    Mono<Flight> incrementAvailableSeats(String flightId, int seats);
+    
+    // Sets cancelled and takes every seat left, so no booking can claim one anymore.
+    // Returns the updated flight, or empty when the flight is missing.
+    Mono<Flight> markCancelled(String flightId);
+    
+    // Only the fields needed to answer seat availability
+    Mono<Flight> findSeatMap(String flightId);
+    
+    // Stores a seat map for a flight that has none yet, false when it already had one
+    Mono<Boolean> initSeatMap(String flightId, int seatsPerRow, List<Long> seatMap);
+    
+    // Overwrites availableSeats and seatMap of many flights in one unordered bulk write
+    Mono<Void> setSeatInventory(Collection<Flight> flights);
+    
+    // Flights as stored after every insert, update or replace, from a change stream.
+    // Needs a replica set, fails right away on a standalone server.
+    Flux<Flight> watchChanges();
+}
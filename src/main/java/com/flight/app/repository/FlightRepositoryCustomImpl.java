@@ -0,0 +1,193 @@
+package com.flight.app.repository;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.entity.Flight;
+import com.mongodb.client.model.changestream.FullDocument;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class FlightRepositoryCustomImpl implements FlightRepositoryCustom {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public FlightRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<FlightSearchResult> findSearchResults(String fromPlace, String toPlace, LocalDate scheduleDate,
+            int availableSeats) {
+        Query query = Query.query(Criteria.where("fromPlace").is(fromPlace)
+                .and("toPlace").is(toPlace)
+                .and("scheduleDate").is(scheduleDate)
+                .and("availableSeats").gt(availableSeats));
+        // only the projected fields come back and are read straight into the record, no Flight in between
+        query.fields().include(FlightSearchResult.FIELDS);
+        
+        return mongoTemplate.query(Flight.class).as(FlightSearchResult.class).matching(query).all();
+    }
+
+    @Override
+    public Flux<FareCalendarDay> findFareCalendar(String fromPlace, String toPlace, LocalDate fromDate, 
+            LocalDate toDate, int minSeats) {
+        // the $match has the shape of route_date_seats_idx, only the matching index range is read
+        TypedAggregation<Flight> aggregation = newAggregation(Flight.class,
+                match(Criteria.where("fromPlace").is(fromPlace)
+                        .and("toPlace").is(toPlace)
+                        .and("scheduleDate").gte(fromDate).lte(toDate)
+                        .and("availableSeats").gte(minSeats)),
+                group("scheduleDate").min("price").as("lowestPrice").count().as("flights")
+                        .sum("availableSeats").as("availableSeats"),
+                project("lowestPrice", "flights", "availableSeats").and("scheduleDate").previousOperation(),
+                sort(Sort.Direction.ASC, "scheduleDate"));
+        
+        return mongoTemplate.aggregate(aggregation, FareCalendarDay.class);
+    }
+
+    @Override
+    public Mono<Flight> claimSeats(String flightId, int seats, long[] seatBlocks) {
+        // the seat check, the $inc and the seat bits happen in a single findAndModify, 
+        // so concurrent bookings can never oversell the flight or share a seat
+        Criteria criteria = Criteria.where("id").is(flightId)
+                .and("cancelled").ne(true)
+                .and("availableSeats").gte(seats);
+        Update update = new Update().inc("availableSeats", -seats);
+        for(int i = 0; i < seatBlocks.length; i++) {
+            if(seatBlocks[i] != 0) {
+                criteria = criteria.and("seatMap." + i).bits().allClear(bitPositions(seatBlocks[i]));
+                update = update.bitwise("seatMap." + i).or(seatBlocks[i]);
+            }
+        }
+
+        return mongoTemplate.findAndModify(Query.query(criteria), update, RETURN_NEW, Flight.class);
+    }
+
+    @Override
+    public Mono<Flight> releaseSeats(String flightId, int seats, long[] seatBlocks) {
+        int lastBlock = lastNonZero(seatBlocks);
+        if(lastBlock < 0) {
+            return incrementAvailableSeats(flightId, seats);
+        }
+        
+        // $bit on a missing array entry would create it, so the bits are only cleared when the 
+        // seat map reaches that far. Otherwise (no seat map yet) only the count goes back.
+        Query query = Query.query(Criteria.where("id").is(flightId)
+                .and("cancelled").ne(true)
+                .and("seatMap." + lastBlock).exists(true));
+        Update update = new Update().inc("availableSeats", seats);
+        for(int i = 0; i <= lastBlock; i++) {
+            if(seatBlocks[i] != 0) {
+                update = update.bitwise("seatMap." + i).and(~seatBlocks[i]);
+            }
+        }
+
+        return mongoTemplate.findAndModify(query, update, RETURN_NEW, Flight.class)
+            .switchIfEmpty(Mono.defer(() -> incrementAvailableSeats(flightId, seats)));
+    }
+    
+    // $bitsAllClear takes an int mask or a list of positions, the blocks are 64 bits wide
+    private static List<Integer> bitPositions(long block) {
+        return BitSet.valueOf(new long[] {block}).stream().boxed().toList();
+    }
+    
+    private static int lastNonZero(long[] blocks) {
+        for(int i = blocks.length - 1; i >= 0; i--) {
+            if(blocks[i] != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Mono<Flight> incrementAvailableSeats(String flightId, int seats) {
+        // a cancelled flight stays at 0, the rollback of a booking racing the cancellation included
+        Query query = Query.query(Criteria.where("id").is(flightId).and("cancelled").ne(true));
+        Update update = new Update().inc("availableSeats", seats);
+
+        return mongoTemplate.findAndModify(query, update, RETURN_NEW, Flight.class);
+    }
+
+    @Override
+    public Mono<Flight> markCancelled(String flightId) {
+        Query query = Query.query(Criteria.where("id").is(flightId));
+        Update update = new Update().set("cancelled", true).set("availableSeats", 0);
+
+        return mongoTemplate.findAndModify(query, update, RETURN_NEW, Flight.class);
+    }
+
+    @Override
+    public Mono<Flight> findSeatMap(String flightId) {
+        Query query = Query.query(Criteria.where("id").is(flightId));
+        query.fields().include("totalSeats", "availableSeats", "seatsPerRow", "seatMap");
+        
+        return mongoTemplate.findOne(query, Flight.class);
+    }
+
+    @Override
+    public Mono<Boolean> initSeatMap(String flightId, int seatsPerRow, List<Long> seatMap) {
+        Query query = Query.query(Criteria.where("id").is(flightId).and("seatMap").exists(false));
+        Update update = new Update().set("seatsPerRow", seatsPerRow).set("seatMap", seatMap);
+        
+        return mongoTemplate.updateFirst(query, update, Flight.class)
+            .map(result -> result.getModifiedCount() > 0);
+    }
+
+    @Override
+    public Mono<Void> setSeatInventory(Collection<Flight> flights) {
+        if(flights.isEmpty()) {
+            return Mono.empty();
+        }
+        
+        ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkMode.UNORDERED, Flight.class);
+        flights.forEach(flight -> {
+            Update update = new Update().set("availableSeats", flight.getAvailableSeats());
+            if(flight.getSeatMap() != null) {
+                update.set("seatMap", flight.getSeatMap());
+            }
+            bulkOps.updateOne(Query.query(Criteria.where("id").is(flight.getId())), update);
+        });
+        
+        return bulkOps.execute().then();
+    }
+
+    @Override
+    public Flux<Flight> watchChanges() {
+        ChangeStreamOptions options = ChangeStreamOptions.builder()
+                .filter(newAggregation(match(Criteria.where("operationType").in("insert", "update", "replace"))))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .build();
+        
+        return mongoTemplate.changeStream(mongoTemplate.getCollectionName(Flight.class), options, Flight.class)
+            .mapNotNull(ChangeStreamEvent::getBody);
+    }
+}
@@ -0,0 +1,10 @@
+package com.flight.app.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.LowestFare;
+
+@Repository
+public interface LowestFareRepository extends ReactiveMongoRepository<LowestFare, String> {
+}
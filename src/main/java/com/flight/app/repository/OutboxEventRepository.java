@@ -0,0 +1,17 @@
+package com.flight.app.repository;
+
+import java.util.Collection;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.OutboxEvent;
+
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface OutboxEventRepository extends ReactiveMongoRepository<OutboxEvent, String>, OutboxEventRepositoryCustom {
+
+    // Backed by pnr_status_idx
+    Flux<OutboxEvent> findByPnrInAndStatus(Collection<String> pnrs, OutboxEvent.Status status);
+}
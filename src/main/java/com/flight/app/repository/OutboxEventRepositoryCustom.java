@@ -0,0 +1,25 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import com.flight.app.entity.OutboxEvent;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface OutboxEventRepositoryCustom {
+
+    // PENDING events with nextAttemptAt not after now, the longest due first
+    Flux<OutboxEvent> findDue(Instant now, int limit);
+    
+    // Atomically takes a due event by moving nextAttemptAt to leaseUntil, so no other relay
+    // picks it up meanwhile. Empty when it is gone, not due anymore or taken by another relay.
+    Mono<OutboxEvent> claim(String id, Instant now, Instant leaseUntil);
+    
+    // Moves the next attempt of an event this relay holds, it stays PENDING
+    Mono<OutboxEvent> postpone(String id, Instant nextAttemptAt);
+    
+    // Records a failed delivery: the next attempt, or FAILED
+    Mono<OutboxEvent> recordFailure(String id, OutboxEvent.Status status, int attempts, Instant nextAttemptAt, 
+            String lastError);
+}
@@ -0,0 +1,67 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.flight.app.entity.OutboxEvent;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class OutboxEventRepositoryCustomImpl implements OutboxEventRepositoryCustom {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public OutboxEventRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<OutboxEvent> findDue(Instant now, int limit) {
+        Query query = Query.query(Criteria.where("status").is(OutboxEvent.Status.PENDING)
+                .and("nextAttemptAt").lte(now))
+            .with(Sort.by("nextAttemptAt"))
+            .limit(limit);
+        
+        return mongoTemplate.find(query, OutboxEvent.class);
+    }
+
+    @Override
+    public Mono<OutboxEvent> claim(String id, Instant now, Instant leaseUntil) {
+        Query query = Query.query(Criteria.where("_id").is(id)
+                .and("status").is(OutboxEvent.Status.PENDING)
+                .and("nextAttemptAt").lte(now));
+        
+        return mongoTemplate.findAndModify(query, new Update().set("nextAttemptAt", leaseUntil), RETURN_NEW, 
+                OutboxEvent.class);
+    }
+
+    @Override
+    public Mono<OutboxEvent> postpone(String id, Instant nextAttemptAt) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)), 
+                new Update().set("nextAttemptAt", nextAttemptAt), RETURN_NEW, OutboxEvent.class);
+    }
+
+    @Override
+    public Mono<OutboxEvent> recordFailure(String id, OutboxEvent.Status status, int attempts, Instant nextAttemptAt,
+            String lastError) {
+        Update update = new Update()
+                .set("status", status)
+                .set("attempts", attempts)
+                .set("nextAttemptAt", nextAttemptAt)
+                .set("lastError", lastError);
+        
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)), update, RETURN_NEW, 
+                OutboxEvent.class);
+    }
+}
@@ -0,0 +1,21 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.WaitlistEntry;
+
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface WaitlistEntryRepository extends ReactiveMongoRepository<WaitlistEntry, String>, 
+        WaitlistEntryRepositoryCustom {
+
+    // _id breaks ties between entries created in the same millisecond
+    Flux<WaitlistEntry> findByFlightIdAndStatusOrderByCreatedAtAscIdAsc(String flightId, WaitlistEntry.Status status);
+
+    // Backed by status_lease_idx
+    Flux<WaitlistEntry> findByStatusAndLeaseUntilLessThanEqual(WaitlistEntry.Status status, Instant now);
+}
@@ -0,0 +1,21 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import com.flight.app.entity.WaitlistEntry;
+
+import reactor.core.publisher.Mono;
+
+public interface WaitlistEntryRepositoryCustom {
+
+    // Atomically moves the entry from expected to next status, sets the pnr and drops a promotion lease.
+    // Empty when the entry is missing or not in the expected status (someone else moved it).
+    Mono<WaitlistEntry> updateStatus(String id, WaitlistEntry.Status expected, WaitlistEntry.Status next, String pnr);
+
+    // Atomically moves a WAITING entry to PROMOTING until leaseUntil. Empty when it is not WAITING anymore.
+    Mono<WaitlistEntry> claimPromotion(String id, Instant leaseUntil);
+
+    // Atomically puts a PROMOTING entry whose lease ended back to WAITING.
+    // Empty when its promotion finished or was taken back meanwhile.
+    Mono<WaitlistEntry> releaseExpiredPromotion(String id, Instant now);
+}
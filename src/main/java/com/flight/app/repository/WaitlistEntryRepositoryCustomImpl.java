@@ -0,0 +1,53 @@
+package com.flight.app.repository;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.flight.app.entity.WaitlistEntry;
+
+import reactor.core.publisher.Mono;
+
+public class WaitlistEntryRepositoryCustomImpl implements WaitlistEntryRepositoryCustom {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public WaitlistEntryRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<WaitlistEntry> updateStatus(String id, WaitlistEntry.Status expected, WaitlistEntry.Status next, 
+            String pnr) {
+        Query query = Query.query(Criteria.where("_id").is(id).and("status").is(expected));
+        Update update = new Update().set("status", next).set("pnr", pnr).unset("leaseUntil");
+        
+        return mongoTemplate.findAndModify(query, update, RETURN_NEW, WaitlistEntry.class);
+    }
+
+    @Override
+    public Mono<WaitlistEntry> claimPromotion(String id, Instant leaseUntil) {
+        Query query = Query.query(Criteria.where("_id").is(id).and("status").is(WaitlistEntry.Status.WAITING));
+        Update update = new Update().set("status", WaitlistEntry.Status.PROMOTING).set("leaseUntil", leaseUntil);
+        
+        return mongoTemplate.findAndModify(query, update, RETURN_NEW, WaitlistEntry.class);
+    }
+
+    @Override
+    public Mono<WaitlistEntry> releaseExpiredPromotion(String id, Instant now) {
+        Query query = Query.query(Criteria.where("_id").is(id)
+                .and("status").is(WaitlistEntry.Status.PROMOTING)
+                .and("leaseUntil").lte(now));
+        Update update = new Update().set("status", WaitlistEntry.Status.WAITING).unset("leaseUntil");
+        
+        return mongoTemplate.findAndModify(query, update, RETURN_NEW, WaitlistEntry.class);
+    }
+}
@@ -0,0 +1,203 @@
+package com.flight.app.repository.inmemory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.dto.BookedSeats;
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Passenger;
+import com.flight.app.repository.BookingRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// BookingRepository without a database for the "inmemory" profile.
+// The pnr is the id, so findByPnr is the primary map. Indexes: per user (bookingDate, pnr)
+// newest first like email_bookingdate_pnr_idx, so a history page is a range of one set,
+// and the pnrs per flight for the booked seat totals, the manifest and the flight pages.
+@Repository
+@Profile("inmemory")
+public class InMemoryBookingRepository extends InMemoryRepository<Booking> implements BookingRepository {
+
+    private record HistoryKey(LocalDateTime bookingDate, String pnr) {
+    }
+
+    private static final Comparator<HistoryKey> NEWEST_FIRST = Comparator
+            .comparing(HistoryKey::bookingDate)
+            .thenComparing(HistoryKey::pnr)
+            .reversed();
+
+    private final Map<String, NavigableSet<HistoryKey>> byUserEmail = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byFlightId = new ConcurrentHashMap<>();
+
+    public InMemoryBookingRepository() {
+        super("bookings");
+    }
+
+    @Override
+    protected String idOf(Booking booking) {
+        return booking.getPnr();
+    }
+
+    @Override
+    protected void assignId(Booking booking, String id) {
+        booking.setPnr(id);
+    }
+
+    @Override
+    protected Booking copy(Booking booking) {
+        List<Passenger> passengers = booking.getPassengers() == null ? null : booking.getPassengers().stream()
+                .map(p -> new Passenger(p.getId(), p.getName(), p.getGender(), p.getAge(), p.getSeatNumber()))
+                .collect(Collectors.toCollection(ArrayList::new));
+        return new Booking(booking.getPnr(), booking.getUserName(), booking.getUserEmail(), booking.getMobileNumber(),
+                booking.getBookingDate(), booking.getNumberOfSeats(), booking.getMealOpted(), booking.getTotalCost(),
+                booking.getFlightId(), booking.getJourneyDate(), passengers);
+    }
+
+    @Override
+    protected void reindex(Booking old, Booking stored) {
+        if(old != null) {
+            NavigableSet<HistoryKey> history = inHistory(old) ? byUserEmail.get(old.getUserEmail()) : null;
+            if(history != null) {
+                history.remove(new HistoryKey(old.getBookingDate(), old.getPnr()));
+            }
+            Set<String> ofFlight = old.getFlightId() == null ? null : byFlightId.get(old.getFlightId());
+            if(ofFlight != null) {
+                ofFlight.remove(old.getPnr());
+            }
+        }
+        if(stored != null) {
+            if(inHistory(stored)) {
+                byUserEmail.computeIfAbsent(stored.getUserEmail(), email -> new ConcurrentSkipListSet<>(NEWEST_FIRST))
+                    .add(new HistoryKey(stored.getBookingDate(), stored.getPnr()));
+            }
+            if(stored.getFlightId() != null) {
+                byFlightId.computeIfAbsent(stored.getFlightId(), flightId -> ConcurrentHashMap.newKeySet())
+                    .add(stored.getPnr());
+            }
+        }
+    }
+
+    private static boolean inHistory(Booking booking) {
+        return booking.getUserEmail() != null && booking.getBookingDate() != null;
+    }
+
+    @Override
+    public Mono<Booking> findByPnr(String pnr) {
+        return findById(pnr);
+    }
+
+    @Override
+    public Flux<Booking> findByUserEmailOrderByBookingDateDesc(String userEmail) {
+        return history(userEmail, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Flux<Booking> findHistoryPage(String userEmail, LocalDateTime afterBookingDate, String afterPnr,
+            int limit, boolean summaryOnly) {
+        Flux<Booking> page = history(userEmail, afterBookingDate == null ? null
+                // a missing pnr matches nothing of that date, like pnr < null in Mongo
+                : new HistoryKey(afterBookingDate, afterPnr == null ? "" : afterPnr), limit);
+        return summaryOnly ? page.map(InMemoryBookingRepository::summary) : page;
+    }
+
+    private Flux<Booking> history(String userEmail, HistoryKey after, int limit) {
+        NavigableSet<HistoryKey> history = byUserEmail.get(userEmail);
+        if(history == null) {
+            return Flux.empty();
+        }
+        List<String> pnrs = (after == null ? history : history.tailSet(after, false)).stream()
+                .limit(limit)
+                .map(HistoryKey::pnr)
+                .toList();
+
+        return lookup(pnrs, booking -> userEmail.equals(booking.getUserEmail()));
+    }
+
+    // the fields the summary projection of BookingRepositoryCustomImpl fetches
+    private static Booking summary(Booking booking) {
+        Booking summary = new Booking();
+        summary.setPnr(booking.getPnr());
+        summary.setFlightId(booking.getFlightId());
+        summary.setJourneyDate(booking.getJourneyDate());
+        summary.setNumberOfSeats(booking.getNumberOfSeats());
+        summary.setTotalCost(booking.getTotalCost());
+        summary.setBookingDate(booking.getBookingDate());
+        return summary;
+    }
+
+    @Override
+    public Flux<Booking> findManifest(String flightId) {
+        return Flux.defer(() -> {
+            Set<String> pnrs = byFlightId.get(flightId);
+            if(pnrs == null) {
+                return Flux.empty();
+            }
+            return lookup(pnrs.stream().sorted().toList(), booking -> flightId.equals(booking.getFlightId()))
+                .map(InMemoryBookingRepository::manifest);
+        });
+    }
+
+    // the fields of ManifestEntry.BOOKING_FIELDS
+    private static Booking manifest(Booking booking) {
+        Booking manifest = new Booking();
+        manifest.setPnr(booking.getPnr());
+        manifest.setMealOpted(booking.getMealOpted());
+        manifest.setPassengers(booking.getPassengers());
+        return manifest;
+    }
+
+    @Override
+    public Flux<Booking> findFlightPage(String flightId, String afterPnr, int limit) {
+        return Flux.defer(() -> {
+            Set<String> pnrs = byFlightId.get(flightId);
+            if(pnrs == null) {
+                return Flux.empty();
+            }
+            List<String> page = pnrs.stream()
+                    .filter(pnr -> afterPnr == null || pnr.compareTo(afterPnr) > 0)
+                    .sorted()
+                    .limit(limit)
+                    .toList();
+            return lookup(page, booking -> flightId.equals(booking.getFlightId()));
+        });
+    }
+
+    @Override
+    public Mono<Long> countByFlightId(String flightId) {
+        return Mono.fromSupplier(() -> {
+            Set<String> pnrs = byFlightId.get(flightId);
+            return pnrs == null ? 0L : pnrs.size();
+        });
+    }
+
+    @Override
+    public Flux<BookedSeats> sumBookedSeatsByFlightId(Collection<String> flightIds) {
+        return Flux.fromIterable(flightIds)
+            .concatMap(flightId -> {
+                Set<String> pnrs = byFlightId.get(flightId);
+                if(pnrs == null) {
+                    return Mono.empty();
+                }
+                return lookup(List.copyOf(pnrs), booking -> flightId.equals(booking.getFlightId()))
+                    // every passenger holds one seat
+                    .flatMapIterable(booking -> booking.getPassengers() == null ? List.of() : booking.getPassengers())
+                    .map(Passenger::getSeatNumber)
+                    .collect(ArrayList<String>::new, List::add)
+                    .filter(seatNumbers -> !seatNumbers.isEmpty())
+                    .map(seatNumbers -> new BookedSeats(flightId, seatNumbers.size(), seatNumbers));
+            });
+    }
+}
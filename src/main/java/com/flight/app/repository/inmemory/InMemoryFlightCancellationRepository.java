@@ -0,0 +1,86 @@
+package com.flight.app.repository.inmemory;
+
+import java.time.Instant;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.FlightCancellation;
+import com.flight.app.repository.FlightCancellationRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// FlightCancellationRepository without a database for the "inmemory" profile.
+// No index, there is one document per cancelled flight and the jobs to resume are a scan.
+@Repository
+@Profile("inmemory")
+public class InMemoryFlightCancellationRepository extends InMemoryRepository<FlightCancellation>
+        implements FlightCancellationRepository {
+
+    public InMemoryFlightCancellationRepository() {
+        super("flight_cancellations");
+    }
+
+    @Override
+    protected String idOf(FlightCancellation cancellation) {
+        return cancellation.getFlightId();
+    }
+
+    @Override
+    protected void assignId(FlightCancellation cancellation, String id) {
+        cancellation.setFlightId(id);
+    }
+
+    @Override
+    protected FlightCancellation copy(FlightCancellation cancellation) {
+        return new FlightCancellation(cancellation.getFlightId(), cancellation.getReason(), cancellation.getStatus(),
+                cancellation.getBookingsTotal(), cancellation.getBookingsCancelled(),
+                cancellation.getPassengersAffected(), cancellation.getLastPnr(), cancellation.getRequestedAt(),
+                cancellation.getUpdatedAt(), cancellation.getLeaseUntil());
+    }
+
+    private static boolean leaseEnded(FlightCancellation cancellation, Instant now) {
+        return cancellation.getLeaseUntil() != null && !cancellation.getLeaseUntil().isAfter(now);
+    }
+
+    @Override
+    public Flux<FlightCancellation> findByStatusAndLeaseUntilLessThanEqual(FlightCancellation.Status status,
+            Instant now) {
+        return scan(cancellation -> cancellation.getStatus() == status && leaseEnded(cancellation, now));
+    }
+
+    @Override
+    public Mono<FlightCancellation> claim(String flightId, Instant now, Instant leaseUntil) {
+        return modify(flightId, cancellation -> {
+            if(cancellation.getStatus() != FlightCancellation.Status.RUNNING || !leaseEnded(cancellation, now)) {
+                return null;
+            }
+            cancellation.setLeaseUntil(leaseUntil);
+            return cancellation;
+        });
+    }
+
+    @Override
+    public Mono<FlightCancellation> recordProgress(String flightId, String lastPnr, long bookings, long passengers,
+            Instant now, Instant leaseUntil) {
+        return modify(flightId, cancellation -> {
+            cancellation.setLastPnr(lastPnr);
+            cancellation.setBookingsCancelled(cancellation.getBookingsCancelled() + bookings);
+            cancellation.setPassengersAffected(cancellation.getPassengersAffected() + passengers);
+            cancellation.setUpdatedAt(now);
+            cancellation.setLeaseUntil(leaseUntil);
+            return cancellation;
+        });
+    }
+
+    @Override
+    public Mono<FlightCancellation> complete(String flightId, Instant now) {
+        return modify(flightId, cancellation -> {
+            cancellation.setStatus(FlightCancellation.Status.COMPLETED);
+            cancellation.setUpdatedAt(now);
+            cancellation.setLeaseUntil(null);
+            return cancellation;
+        });
+    }
+}
@@ -0,0 +1,292 @@
+package com.flight.app.repository.inmemory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.entity.Flight;
+import com.flight.app.repository.FlightRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+// FlightRepository without a database for the "inmemory" profile.
+// Indexes: route-day ordered by availableSeats (the shape of route_date_seats_idx, so
+// "more than n seats" is the tail of one set) and scheduleDate ordered for the upcoming flights.
+// Seat claims and releases are atomic per flight like the findAndModify they stand in for.
+@Repository
+@Profile("inmemory")
+public class InMemoryFlightRepository extends InMemoryRepository<Flight> implements FlightRepository {
+
+    private record RouteDayKey(String fromPlace, String toPlace, LocalDate scheduleDate) {
+
+        static RouteDayKey of(Flight flight) {
+            return new RouteDayKey(flight.getFromPlace(), flight.getToPlace(), flight.getScheduleDate());
+        }
+    }
+
+    private record SeatsSlot(int availableSeats, String id) implements Comparable<SeatsSlot> {
+
+        @Override
+        public int compareTo(SeatsSlot other) {
+            int bySeats = Integer.compare(availableSeats, other.availableSeats);
+            return bySeats != 0 ? bySeats : id.compareTo(other.id);
+        }
+    }
+
+    private final Map<RouteDayKey, NavigableSet<SeatsSlot>> byRouteDaySeats = new ConcurrentHashMap<>();
+    private final NavigableMap<LocalDate, Set<String>> byScheduleDate = new ConcurrentSkipListMap<>();
+    private final Sinks.Many<Flight> changes = Sinks.many().multicast().directBestEffort();
+
+    public InMemoryFlightRepository() {
+        super("flights");
+    }
+
+    @Override
+    protected String idOf(Flight flight) {
+        return flight.getId();
+    }
+
+    @Override
+    protected void assignId(Flight flight, String id) {
+        flight.setId(id);
+    }
+
+    @Override
+    protected Flight copy(Flight flight) {
+        return flight.toBuilder()
+                .seatMap(flight.getSeatMap() == null ? null : new ArrayList<>(flight.getSeatMap()))
+                .build();
+    }
+
+    @Override
+    protected void reindex(Flight old, Flight stored) {
+        if(old != null) {
+            NavigableSet<SeatsSlot> slots = indexed(old) ? byRouteDaySeats.get(RouteDayKey.of(old)) : null;
+            if(slots != null) {
+                slots.remove(new SeatsSlot(old.getAvailableSeats(), old.getId()));
+            }
+            Set<String> ofDay = old.getScheduleDate() == null ? null : byScheduleDate.get(old.getScheduleDate());
+            if(ofDay != null) {
+                ofDay.remove(old.getId());
+            }
+        }
+        if(stored != null) {
+            if(indexed(stored)) {
+                byRouteDaySeats.computeIfAbsent(RouteDayKey.of(stored), key -> new ConcurrentSkipListSet<>())
+                    .add(new SeatsSlot(stored.getAvailableSeats(), stored.getId()));
+            }
+            if(stored.getScheduleDate() != null) {
+                byScheduleDate.computeIfAbsent(stored.getScheduleDate(), date -> ConcurrentHashMap.newKeySet())
+                    .add(stored.getId());
+            }
+        }
+    }
+
+    // a flight missing one of the fields can never match the route-day search
+    private static boolean indexed(Flight flight) {
+        return flight.getFromPlace() != null && flight.getToPlace() != null && flight.getScheduleDate() != null
+                && flight.getAvailableSeats() != null;
+    }
+
+    @Override
+    protected void written(Flight stored) {
+        if(changes.currentSubscriberCount() > 0) {
+            Flight change = copy(stored);
+            synchronized(changes) {
+                changes.tryEmitNext(change);
+            }
+        }
+    }
+
+    private Flux<Flight> routeDay(String fromPlace, String toPlace, LocalDate scheduleDate, int minSeats) {
+        NavigableSet<SeatsSlot> slots = byRouteDaySeats.get(new RouteDayKey(fromPlace, toPlace, scheduleDate));
+        if(slots == null) {
+            return Flux.empty();
+        }
+        List<String> ids = slots.tailSet(new SeatsSlot(minSeats, ""), true).stream().map(SeatsSlot::id).toList();
+
+        return lookup(ids, flight -> fromPlace.equals(flight.getFromPlace()) && toPlace.equals(flight.getToPlace())
+                && scheduleDate.equals(flight.getScheduleDate()) && flight.getAvailableSeats() != null
+                && flight.getAvailableSeats() >= minSeats);
+    }
+
+    @Override
+    public Flux<Flight> findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan(String fromPlace,
+            String toPlace, LocalDate scheduleDate, int availableSeats) {
+        return routeDay(fromPlace, toPlace, scheduleDate, availableSeats + 1);
+    }
+
+    @Override
+    public Flux<Flight> findByScheduleDateGreaterThanEqual(LocalDate scheduleDate) {
+        return Flux.defer(() -> Flux.fromIterable(byScheduleDate.tailMap(scheduleDate, true).values()))
+            .concatMap(ids -> lookup(List.copyOf(ids),
+                    flight -> flight.getScheduleDate() != null && !flight.getScheduleDate().isBefore(scheduleDate)));
+    }
+
+    // only the one-off seat map backfill asks, a scan is fine
+    @Override
+    public Flux<Flight> findBySeatMapIsNull() {
+        return scan(flight -> flight.getSeatMap() == null);
+    }
+
+    @Override
+    public Flux<FlightSearchResult> findSearchResults(String fromPlace, String toPlace, LocalDate scheduleDate,
+            int availableSeats) {
+        return findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan(fromPlace, toPlace,
+                scheduleDate, availableSeats)
+            .map(FlightSearchResult::of);
+    }
+
+    @Override
+    public Flux<FareCalendarDay> findFareCalendar(String fromPlace, String toPlace, LocalDate fromDate,
+            LocalDate toDate, int minSeats) {
+        return Flux.fromStream(() -> fromDate.datesUntil(toDate.plusDays(1)))
+            .concatMap(day -> routeDay(fromPlace, toPlace, day, minSeats)
+                .collectList()
+                .filter(flights -> !flights.isEmpty())
+                .map(flights -> {
+                    // $min skips a missing price
+                    Double lowestPrice = flights.stream()
+                            .map(Flight::getPrice)
+                            .filter(price -> price != null)
+                            .min(Double::compare)
+                            .orElse(null);
+                    int seats = flights.stream().mapToInt(Flight::getAvailableSeats).sum();
+                    return new FareCalendarDay(day, lowestPrice, flights.size(), seats);
+                }));
+    }
+
+    @Override
+    public Mono<Flight> claimSeats(String flightId, int seats, long[] seatBlocks) {
+        return modify(flightId, flight -> {
+            if(cancelled(flight) || flight.getAvailableSeats() == null || flight.getAvailableSeats() < seats) {
+                return null;
+            }
+            List<Long> seatMap = flight.getSeatMap();
+            for(int i = 0; i < seatBlocks.length; i++) {
+                if(seatBlocks[i] != 0 && (seatMap == null || i >= seatMap.size()
+                        || (seatMap.get(i) & seatBlocks[i]) != 0)) {
+                    return null;
+                }
+            }
+            for(int i = 0; i < seatBlocks.length; i++) {
+                if(seatBlocks[i] != 0) {
+                    seatMap.set(i, seatMap.get(i) | seatBlocks[i]);
+                }
+            }
+            flight.setAvailableSeats(flight.getAvailableSeats() - seats);
+            return flight;
+        });
+    }
+
+    @Override
+    public Mono<Flight> releaseSeats(String flightId, int seats, long[] seatBlocks) {
+        return modify(flightId, flight -> {
+            if(cancelled(flight)) {
+                return null;
+            }
+            List<Long> seatMap = flight.getSeatMap();
+            // bits are only cleared when the seat map reaches that far, otherwise only the count goes back
+            if(seatMap != null && lastNonZero(seatBlocks) < seatMap.size()) {
+                for(int i = 0; i < seatBlocks.length; i++) {
+                    if(seatBlocks[i] != 0) {
+                        seatMap.set(i, seatMap.get(i) & ~seatBlocks[i]);
+                    }
+                }
+            }
+            flight.setAvailableSeats(seatsOrZero(flight) + seats);
+            return flight;
+        });
+    }
+
+    private static int lastNonZero(long[] blocks) {
+        for(int i = blocks.length - 1; i >= 0; i--) {
+            if(blocks[i] != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // like cancelled: {$ne: true} in the Mongo seat writes, a cancelled flight keeps 0 seats
+    private static boolean cancelled(Flight flight) {
+        return Boolean.TRUE.equals(flight.getCancelled());
+    }
+
+    private static int seatsOrZero(Flight flight) {
+        return flight.getAvailableSeats() == null ? 0 : flight.getAvailableSeats();
+    }
+
+    @Override
+    public Mono<Flight> incrementAvailableSeats(String flightId, int seats) {
+        return modify(flightId, flight -> {
+            if(cancelled(flight)) {
+                return null;
+            }
+            flight.setAvailableSeats(seatsOrZero(flight) + seats);
+            return flight;
+        });
+    }
+
+    @Override
+    public Mono<Flight> markCancelled(String flightId) {
+        return modify(flightId, flight -> {
+            flight.setCancelled(true);
+            flight.setAvailableSeats(0);
+            return flight;
+        });
+    }
+
+    @Override
+    public Mono<Flight> findSeatMap(String flightId) {
+        return findById(flightId);
+    }
+
+    @Override
+    public Mono<Boolean> initSeatMap(String flightId, int seatsPerRow, List<Long> seatMap) {
+        return modify(flightId, flight -> {
+            if(flight.getSeatMap() != null) {
+                return null;
+            }
+            flight.setSeatsPerRow(seatsPerRow);
+            flight.setSeatMap(new ArrayList<>(seatMap));
+            return flight;
+        })
+        .map(flight -> true)
+        .defaultIfEmpty(false);
+    }
+
+    @Override
+    public Mono<Void> setSeatInventory(Collection<Flight> flights) {
+        return Flux.fromIterable(flights)
+            .concatMap(changed -> modify(changed.getId(), flight -> {
+                flight.setAvailableSeats(changed.getAvailableSeats());
+                if(changed.getSeatMap() != null) {
+                    flight.setSeatMap(new ArrayList<>(changed.getSeatMap()));
+                }
+                return flight;
+            }))
+            .then();
+    }
+
+    // every write of this instance, there is no other instance to hear from
+    @Override
+    public Flux<Flight> watchChanges() {
+        return changes.asFlux();
+    }
+}
@@ -0,0 +1,34 @@
+package com.flight.app.repository.inmemory;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.IdempotencyRecord;
+import com.flight.app.repository.IdempotencyRecordRepository;
+
+// Records are not expired here. With this profile there is a single instance and
+// app.idempotency.mongo.enabled stays off, the in-process store of BookingIdempotency expires keys.
+@Repository
+@Profile("inmemory")
+public class InMemoryIdempotencyRecordRepository extends InMemoryRepository<IdempotencyRecord> 
+        implements IdempotencyRecordRepository {
+
+    public InMemoryIdempotencyRecordRepository() {
+        super("idempotency_keys");
+    }
+
+    @Override
+    protected String idOf(IdempotencyRecord record) {
+        return record.getKey();
+    }
+
+    @Override
+    protected void assignId(IdempotencyRecord record, String id) {
+        record.setKey(id);
+    }
+
+    @Override
+    protected IdempotencyRecord copy(IdempotencyRecord record) {
+        return new IdempotencyRecord(record.getKey(), record.getFingerprint(), record.getPnr(), record.getExpiresAt());
+    }
+}
@@ -0,0 +1,32 @@
+package com.flight.app.repository.inmemory;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.LowestFare;
+import com.flight.app.repository.LowestFareRepository;
+
+@Repository
+@Profile("inmemory")
+public class InMemoryLowestFareRepository extends InMemoryRepository<LowestFare> implements LowestFareRepository {
+
+    public InMemoryLowestFareRepository() {
+        super("lowest_fares");
+    }
+
+    @Override
+    protected String idOf(LowestFare fare) {
+        return fare.getId();
+    }
+
+    @Override
+    protected void assignId(LowestFare fare, String id) {
+        fare.setId(id);
+    }
+
+    @Override
+    protected LowestFare copy(LowestFare fare) {
+        return new LowestFare(fare.getId(), fare.getFromPlace(), fare.getToPlace(), fare.getMonth(), fare.getPrice(),
+                fare.getFlightId(), fare.getScheduleDate());
+    }
+}
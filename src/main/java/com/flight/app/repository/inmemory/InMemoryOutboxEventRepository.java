@@ -0,0 +1,143 @@
+package com.flight.app.repository.inmemory;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.repository.OutboxEventRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// OutboxEventRepository without a database for the "inmemory" profile.
+// Index: the PENDING events in (nextAttemptAt, id) order like status_next_attempt_idx,
+// so the due events are the head of one set, and the event ids per pnr like pnr_status_idx.
+@Repository
+@Profile("inmemory")
+public class InMemoryOutboxEventRepository extends InMemoryRepository<OutboxEvent> implements OutboxEventRepository {
+
+    private record DueSlot(Instant nextAttemptAt, String id) {
+    }
+
+    private static final Comparator<DueSlot> OLDEST_DUE_FIRST = Comparator
+            .comparing(DueSlot::nextAttemptAt)
+            .thenComparing(DueSlot::id);
+
+    private final NavigableSet<DueSlot> pending = new ConcurrentSkipListSet<>(OLDEST_DUE_FIRST);
+    private final Map<String, Set<String>> byPnr = new ConcurrentHashMap<>();
+
+    public InMemoryOutboxEventRepository() {
+        super("outbox");
+    }
+
+    @Override
+    protected String idOf(OutboxEvent event) {
+        return event.getId();
+    }
+
+    @Override
+    protected void assignId(OutboxEvent event, String id) {
+        event.setId(id);
+    }
+
+    // the booking snapshot is never changed once the event is written, it is shared
+    @Override
+    protected OutboxEvent copy(OutboxEvent event) {
+        return new OutboxEvent(event.getId(), event.getType(), event.getPnr(), event.getFlightId(), event.getBooking(),
+                event.getCreatedAt(), event.getStatus(), event.getAttempts(), event.getNextAttemptAt(),
+                event.getLastError());
+    }
+
+    @Override
+    protected void reindex(OutboxEvent old, OutboxEvent stored) {
+        if(old != null && due(old)) {
+            pending.remove(new DueSlot(old.getNextAttemptAt(), old.getId()));
+        }
+        if(stored != null && due(stored)) {
+            pending.add(new DueSlot(stored.getNextAttemptAt(), stored.getId()));
+        }
+        if(old != null && old.getPnr() != null && (stored == null || !old.getPnr().equals(stored.getPnr()))) {
+            byPnr.computeIfPresent(old.getPnr(), (pnr, ids) -> {
+                ids.remove(old.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if(stored != null && stored.getPnr() != null) {
+            // compute, not computeIfAbsent: an add must not land in a set that is being dropped
+            byPnr.compute(stored.getPnr(), (pnr, ids) -> {
+                Set<String> pnrIds = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                pnrIds.add(stored.getId());
+                return pnrIds;
+            });
+        }
+    }
+
+    private static boolean due(OutboxEvent event) {
+        return event.getStatus() == OutboxEvent.Status.PENDING && event.getNextAttemptAt() != null;
+    }
+
+    @Override
+    public Flux<OutboxEvent> findDue(Instant now, int limit) {
+        return Flux.defer(() -> {
+            List<String> ids = pending.stream()
+                    .takeWhile(slot -> !slot.nextAttemptAt().isAfter(now))
+                    .limit(limit)
+                    .map(DueSlot::id)
+                    .toList();
+            
+            return lookup(ids, event -> due(event) && !event.getNextAttemptAt().isAfter(now));
+        });
+    }
+
+    @Override
+    public Flux<OutboxEvent> findByPnrInAndStatus(Collection<String> pnrs, OutboxEvent.Status status) {
+        return Flux.defer(() -> {
+            List<String> ids = pnrs.stream()
+                    .flatMap(pnr -> byPnr.getOrDefault(pnr, Set.of()).stream())
+                    .toList();
+            
+            return lookup(ids, event -> pnrs.contains(event.getPnr()) && event.getStatus() == status);
+        });
+    }
+
+    @Override
+    public Mono<OutboxEvent> claim(String id, Instant now, Instant leaseUntil) {
+        return modify(id, event -> {
+            if(!due(event) || event.getNextAttemptAt().isAfter(now)) {
+                return null;
+            }
+            event.setNextAttemptAt(leaseUntil);
+            return event;
+        });
+    }
+
+    @Override
+    public Mono<OutboxEvent> postpone(String id, Instant nextAttemptAt) {
+        return modify(id, event -> {
+            event.setNextAttemptAt(nextAttemptAt);
+            return event;
+        });
+    }
+
+    @Override
+    public Mono<OutboxEvent> recordFailure(String id, OutboxEvent.Status status, int attempts, Instant nextAttemptAt,
+            String lastError) {
+        return modify(id, event -> {
+            event.setStatus(status);
+            event.setAttempts(attempts);
+            event.setNextAttemptAt(nextAttemptAt);
+            event.setLastError(lastError);
+            return event;
+        });
+    }
+}
@@ -0,0 +1,263 @@
+package com.flight.app.repository.inmemory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.repository.query.FluentQuery.ReactiveFluentQuery;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Document store behind the in-memory repositories of the "inmemory" profile.
+// Documents live in one map by id and are copied on the way in and out, so like with Mongo a
+// caller never shares an instance with the store. Every write of an id is atomic (one
+// compute on the map) and updates the secondary indexes of the subclass in the same step,
+// readers going through an index re-check the document they find.
+// Query by example and sorted findAll are not supported, nothing in the app uses them.
+abstract class InMemoryRepository<T> implements ReactiveMongoRepository<T, String> {
+
+    private final String collection;
+    private final Map<String, T> documents = new ConcurrentHashMap<>();
+
+    protected InMemoryRepository(String collection) {
+        this.collection = collection;
+    }
+
+    protected abstract String idOf(T document);
+
+    protected abstract void assignId(T document, String id);
+
+    protected abstract T copy(T document);
+
+    // Called inside the write of one id: old is null for a new document, stored is null for a delete
+    protected void reindex(T old, T stored) {
+    }
+
+    // Called after a document was written
+    protected void written(T stored) {
+    }
+
+    private <S extends T> S store(S entity, boolean insert) {
+        if(idOf(entity) == null) {
+            // what Mongo does for a missing _id
+            assignId(entity, new ObjectId().toHexString());
+        }
+        T stored = copy(entity);
+        documents.compute(idOf(entity), (id, old) -> {
+            if(old != null && insert) {
+                throw new DuplicateKeyException("Duplicate key " + id + " in " + collection);
+            }
+            reindex(old, stored);
+            return stored;
+        });
+        written(stored);
+        return entity;
+    }
+
+    // Atomic read-modify-write of one document like findAndModify. change gets a copy of the
+    // stored document and returns it changed, or null to leave it as it is. Empty when the
+    // document is missing or unchanged, otherwise the new state.
+    protected Mono<T> modify(String id, UnaryOperator<T> change) {
+        return Mono.fromSupplier(() -> {
+            AtomicReference<T> result = new AtomicReference<>();
+            documents.computeIfPresent(id, (key, old) -> {
+                T next = change.apply(copy(old));
+                if(next == null) {
+                    return old;
+                }
+                reindex(old, next);
+                result.set(next);
+                return next;
+            });
+            T stored = result.get();
+            if(stored == null) {
+                return null;
+            }
+            written(stored);
+            return copy(stored);
+        });
+    }
+
+    // Documents of the ids an index points at that still match, in index order
+    protected Flux<T> lookup(Collection<String> ids, Predicate<T> filter) {
+        return Flux.defer(() -> Flux.fromIterable(ids)
+            .mapNotNull(documents::get)
+            .filter(filter)
+            .map(this::copy));
+    }
+
+    protected Flux<T> scan(Predicate<T> filter) {
+        return Flux.defer(() -> Flux.fromIterable(documents.values())
+            .filter(filter)
+            .map(this::copy));
+    }
+
+    protected T get(String id) {
+        T document = documents.get(id);
+        return document == null ? null : copy(document);
+    }
+
+    private void remove(String id) {
+        documents.computeIfPresent(id, (key, old) -> {
+            reindex(old, null);
+            return null;
+        });
+    }
+
+    @Override
+    public <S extends T> Mono<S> save(S entity) {
+        return Mono.fromSupplier(() -> store(entity, false));
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Iterable<S> entities) {
+        return Flux.fromIterable(entities).map(entity -> store(entity, false));
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Publisher<S> entityStream) {
+        return Flux.from(entityStream).map(entity -> store(entity, false));
+    }
+
+    @Override
+    public <S extends T> Mono<S> insert(S entity) {
+        return Mono.fromSupplier(() -> store(entity, true));
+    }
+
+    // Like an ordered insertMany, the documents before a duplicate stay inserted
+    @Override
+    public <S extends T> Flux<S> insert(Iterable<S> entities) {
+        return Flux.fromIterable(entities).map(entity -> store(entity, true));
+    }
+
+    @Override
+    public <S extends T> Flux<S> insert(Publisher<S> entities) {
+        return Flux.from(entities).map(entity -> store(entity, true));
+    }
+
+    @Override
+    public Mono<T> findById(String id) {
+        return Mono.fromSupplier(() -> get(id));
+    }
+
+    @Override
+    public Mono<T> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return Mono.fromSupplier(() -> documents.containsKey(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<T> findAll() {
+        return scan(document -> true);
+    }
+
+    @Override
+    public Flux<T> findAllById(Iterable<String> ids) {
+        return Flux.fromIterable(ids).mapNotNull(this::get);
+    }
+
+    @Override
+    public Flux<T> findAllById(Publisher<String> idStream) {
+        return Flux.from(idStream).mapNotNull(this::get);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) documents.size());
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return Mono.fromRunnable(() -> remove(id));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(T entity) {
+        return deleteById(idOf(entity));
+    }
+
+    @Override
+    public Mono<Void> deleteAllById(Iterable<? extends String> ids) {
+        return Mono.fromRunnable(() -> ids.forEach(this::remove));
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends T> entities) {
+        return Mono.fromRunnable(() -> entities.forEach(entity -> remove(idOf(entity))));
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends T> entityStream) {
+        return Flux.from(entityStream).doOnNext(entity -> remove(idOf(entity))).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Mono.fromRunnable(() -> documents.keySet().forEach(this::remove));
+    }
+
+    @Override
+    public Flux<T> findAll(Sort sort) {
+        return Flux.error(unsupported("sorted findAll"));
+    }
+
+    @Override
+    public <S extends T> Mono<S> findOne(Example<S> example) {
+        return Mono.error(unsupported("query by example"));
+    }
+
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example) {
+        return Flux.error(unsupported("query by example"));
+    }
+
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example, Sort sort) {
+        return Flux.error(unsupported("query by example"));
+    }
+
+    @Override
+    public <S extends T> Mono<Long> count(Example<S> example) {
+        return Mono.error(unsupported("query by example"));
+    }
+
+    @Override
+    public <S extends T> Mono<Boolean> exists(Example<S> example) {
+        return Mono.error(unsupported("query by example"));
+    }
+
+    @Override
+    public <S extends T, R, P extends Publisher<R>> P findBy(Example<S> example,
+            Function<ReactiveFluentQuery<S>, P> queryFunction) {
+        throw unsupported("query by example");
+    }
+
+    private UnsupportedOperationException unsupported(String what) {
+        return new UnsupportedOperationException("The in-memory " + collection + " repository has no " + what);
+    }
+}
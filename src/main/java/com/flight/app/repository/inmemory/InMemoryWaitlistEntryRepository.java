@@ -0,0 +1,149 @@
+package com.flight.app.repository.inmemory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.flight.app.entity.Passenger;
+import com.flight.app.entity.WaitlistEntry;
+import com.flight.app.repository.WaitlistEntryRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// WaitlistEntryRepository without a database for the "inmemory" profile.
+// Index: per (flightId, status) the entries in (createdAt, id) order like flight_status_created_idx,
+// so the queue of a flight is one set. No index for the promotion leases, the sweep for expired
+// ones is a scan.
+@Repository
+@Profile("inmemory")
+public class InMemoryWaitlistEntryRepository extends InMemoryRepository<WaitlistEntry> 
+        implements WaitlistEntryRepository {
+
+    private record QueueKey(String flightId, WaitlistEntry.Status status) {
+    }
+
+    private record QueueSlot(Instant createdAt, String id) {
+    }
+
+    private static final Comparator<QueueSlot> FIFO = Comparator
+            .comparing(QueueSlot::createdAt)
+            .thenComparing(QueueSlot::id);
+
+    private final Map<QueueKey, NavigableSet<QueueSlot>> byFlightStatus = new ConcurrentHashMap<>();
+
+    public InMemoryWaitlistEntryRepository() {
+        super("waitlist");
+    }
+
+    @Override
+    protected String idOf(WaitlistEntry entry) {
+        return entry.getId();
+    }
+
+    @Override
+    protected void assignId(WaitlistEntry entry, String id) {
+        entry.setId(id);
+    }
+
+    @Override
+    protected WaitlistEntry copy(WaitlistEntry entry) {
+        List<Passenger> passengers = entry.getPassengers() == null ? null : entry.getPassengers().stream()
+                .map(p -> new Passenger(p.getId(), p.getName(), p.getGender(), p.getAge(), p.getSeatNumber()))
+                .collect(Collectors.toCollection(ArrayList::new));
+        return new WaitlistEntry(entry.getId(), entry.getFlightId(), entry.getUserName(), entry.getUserEmail(),
+                entry.getMobileNumber(), entry.getMealOpted(), passengers, entry.getCreatedAt(), entry.getStatus(),
+                entry.getPnr(), entry.getLeaseUntil());
+    }
+
+    @Override
+    protected void reindex(WaitlistEntry old, WaitlistEntry stored) {
+        if(old != null && queued(old)) {
+            NavigableSet<QueueSlot> queue = byFlightStatus.get(new QueueKey(old.getFlightId(), old.getStatus()));
+            if(queue != null) {
+                queue.remove(new QueueSlot(old.getCreatedAt(), old.getId()));
+            }
+        }
+        if(stored != null && queued(stored)) {
+            byFlightStatus.computeIfAbsent(new QueueKey(stored.getFlightId(), stored.getStatus()),
+                    key -> new ConcurrentSkipListSet<>(FIFO))
+                .add(new QueueSlot(stored.getCreatedAt(), stored.getId()));
+        }
+    }
+
+    // an entry missing one of the fields can never match the queue query
+    private static boolean queued(WaitlistEntry entry) {
+        return entry.getFlightId() != null && entry.getStatus() != null && entry.getCreatedAt() != null;
+    }
+
+    @Override
+    public Flux<WaitlistEntry> findByFlightIdAndStatusOrderByCreatedAtAscIdAsc(String flightId, 
+            WaitlistEntry.Status status) {
+        // read on subscribe, a promotion assembled before the seats are released must see later joins
+        return Flux.defer(() -> {
+            NavigableSet<QueueSlot> queue = byFlightStatus.get(new QueueKey(flightId, status));
+            if(queue == null) {
+                return Flux.empty();
+            }
+            List<String> ids = queue.stream().map(QueueSlot::id).toList();
+
+            return lookup(ids, entry -> flightId.equals(entry.getFlightId()) && status == entry.getStatus());
+        });
+    }
+
+    @Override
+    public Mono<WaitlistEntry> updateStatus(String id, WaitlistEntry.Status expected, WaitlistEntry.Status next, 
+            String pnr) {
+        return modify(id, entry -> {
+            if(entry.getStatus() != expected) {
+                return null;
+            }
+            entry.setStatus(next);
+            entry.setPnr(pnr);
+            entry.setLeaseUntil(null);
+            return entry;
+        });
+    }
+
+    private static boolean leaseEnded(WaitlistEntry entry, Instant now) {
+        return entry.getLeaseUntil() != null && !entry.getLeaseUntil().isAfter(now);
+    }
+
+    @Override
+    public Flux<WaitlistEntry> findByStatusAndLeaseUntilLessThanEqual(WaitlistEntry.Status status, Instant now) {
+        return scan(entry -> entry.getStatus() == status && leaseEnded(entry, now));
+    }
+
+    @Override
+    public Mono<WaitlistEntry> claimPromotion(String id, Instant leaseUntil) {
+        return modify(id, entry -> {
+            if(entry.getStatus() != WaitlistEntry.Status.WAITING) {
+                return null;
+            }
+            entry.setStatus(WaitlistEntry.Status.PROMOTING);
+            entry.setLeaseUntil(leaseUntil);
+            return entry;
+        });
+    }
+
+    @Override
+    public Mono<WaitlistEntry> releaseExpiredPromotion(String id, Instant now) {
+        return modify(id, entry -> {
+            if(entry.getStatus() != WaitlistEntry.Status.PROMOTING || !leaseEnded(entry, now)) {
+                return null;
+            }
+            entry.setStatus(WaitlistEntry.Status.WAITING);
+            entry.setLeaseUntil(null);
+            return entry;
+        });
+    }
+}
@@ -1,6 +1,11 @@
 package com.flight.app.service;
 
+import com.flight.app.dto.BookingPage;
+import com.flight.app.dto.BookingSummary;
+import com.flight.app.dto.ManifestEntry;
 import com.flight.app.entity.Booking;
+import com.flight.app.entity.FlightCancellation;
+import com.flight.app.entity.WaitlistEntry;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -9,9 +14,36 @@ public interface BookingService {
 
     Mono<String> bookTicket(String flightId, Booking booking); 
     
+    // retries with the same idempotencyKey get the PNR of the first booking
+    Mono<String> bookTicket(String flightId, Booking booking, String idempotencyKey);
+    
     Mono<Booking> getTicketByPnr(String pnr);
     
     Flux<Booking> getBookingHistoryByEmail(String emailId);
     
+    // Keyset pagination, cursor is the nextCursor of the previous page (null for the first page)
+    Mono<BookingPage<Booking>> getBookingHistoryPage(String emailId, String cursor, int size);
+    
+    Mono<BookingPage<BookingSummary>> getBookingHistorySummaryPage(String emailId, String cursor, int size);
+    
+    // Every passenger of the flight in pnr order, streamed from the bookings
+    Flux<ManifestEntry> getPassengerManifest(String flightId);
+    
+    // Also books waitlisted requests of the flight with the seats given back
     Mono<Void> cancelTicket(String pnr);
+    
+    // Airline side: the flight is taken off sale right away, its bookings are cancelled in the
+    // background with a refund/rebooking event each. Asking again returns the running job.
+    Mono<FlightCancellation> cancelFlight(String flightId, String reason);
+    
+    // How far the cancellation of the flight got
+    Mono<FlightCancellation> getFlightCancellation(String flightId);
+    
+    // Queues a request the sold-out flight cannot take, booked in turn when seats come back
+    Mono<WaitlistEntry> joinWaitlist(String flightId, Booking booking);
+    
+    Mono<WaitlistEntry> getWaitlistEntry(String entryId);
+    
+    // The entry now and once more when it is booked
+    Flux<WaitlistEntry> watchWaitlistEntry(String entryId);
 }
\ No newline at end of file
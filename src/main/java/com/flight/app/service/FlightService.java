@@ -1,17 +1,68 @@
 package com.flight.app.service;
 
+import com.flight.app.dto.ConnectionSearchRequest;
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FlightIngestResult;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.dto.Itinerary;
+import com.flight.app.dto.SeatAvailability;
+import com.flight.app.dto.SeatAvailabilityUpdate;
 import com.flight.app.entity.Flight;
+import com.flight.app.entity.LowestFare;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.BitSet;
 
 public interface FlightService {
     Mono<String> addFlight(Flight flight);
     
+    // Validates and inserts flights in batches, one result per flight in upload order
+    Flux<FlightIngestResult> addFlights(Flux<Flight> flights);
+    
     Flux<Flight> searchFlights(String fromPlace, String toPlace, LocalDate scheduleDate);
     
+    // Lean, cached variant of searchFlights used by the search endpoints
+    Flux<FlightSearchResult> searchFlightResults(String fromPlace, String toPlace, LocalDate scheduleDate);
+    
+    // Same results straight from the Mongo cursor, uncached, paced by the subscriber's demand
+    Flux<FlightSearchResult> streamFlightResults(String fromPlace, String toPlace, LocalDate scheduleDate);
+    
+    // Cheapest fare per day for journeyDate +- flexDays, days without a fitting flight are left out
+    Flux<FareCalendarDay> getFareCalendar(String fromPlace, String toPlace, LocalDate journeyDate, 
+            int flexDays, int passengers);
+    
+    // Cheapest bookable flight of a route in one month, empty when there is none
+    Mono<LowestFare> getLowestFare(String fromPlace, String toPlace, YearMonth month);
+    
+    // Cheapest bookable flight of a route for this month and the next `months - 1`
+    Flux<LowestFare> getLowestFares(String fromPlace, String toPlace, int months);
+    
+    // 1 and 2 stop itineraries from the in-memory route graph, see ConnectionSearchRequest
+    Flux<Itinerary> searchConnections(ConnectionSearchRequest request);
+    
     Mono<Flight> getFlightById(String flightId); 
     
     Mono<String> updateFlightInventory(Flight flight);
+    
+    // Atomically takes the seats (bit = seat map index) from the flight. Empty when the flight 
+    // is missing, has too few seats or one of the seats is already taken.
+    Mono<Flight> reserveSeats(String flightId, BitSet seats);
+    
+    // Atomically gives seats back to the flight and frees them in the seat map
+    Mono<Flight> releaseSeats(String flightId, int seats, BitSet seatIndexes);
+    
+    // Marks the flight cancelled by the airline and takes its remaining seats off sale.
+    // Empty when the flight is missing. The bookings are left to FlightCancellationJob.
+    Mono<Flight> cancelFlight(String flightId);
+    
+    Mono<SeatAvailability> getSeatAvailability(String flightId);
+    
+    // Current seats of the flight followed by every change, until the subscriber cancels
+    Flux<SeatAvailabilityUpdate> watchFlightAvailability(String flightId);
+    
+    // Current seats of every flight of a route-day followed by every change, until the subscriber cancels
+    Flux<SeatAvailabilityUpdate> watchRouteAvailability(String fromPlace, String toPlace, LocalDate scheduleDate);
 }
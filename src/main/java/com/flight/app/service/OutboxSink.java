@@ -0,0 +1,13 @@
+package com.flight.app.service;
+
+import com.flight.app.entity.OutboxEvent;
+
+import reactor.core.publisher.Mono;
+
+// Receiver of booking side effects, every bean of this type gets every event from OutboxRelay.
+// Delivery is at least once (a retry goes to all sinks again), the event id tells repeats apart.
+public interface OutboxSink {
+
+    // Completes once the event is taken, an error makes the relay try again later
+    Mono<Void> publish(OutboxEvent event);
+}
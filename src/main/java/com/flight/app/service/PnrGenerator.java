@@ -0,0 +1,8 @@
+package com.flight.app.service;
+
+// Source of booking PNRs, selected with app.pnr.generator.
+// The PNR is the booking _id, so a repeated value would overwrite an existing booking.
+public interface PnrGenerator {
+
+    String next();
+}
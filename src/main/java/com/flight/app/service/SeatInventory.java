@@ -0,0 +1,26 @@
+package com.flight.app.service;
+
+import java.util.BitSet;
+
+import com.flight.app.entity.Flight;
+
+import reactor.core.publisher.Mono;
+
+// Where seat counts and seat maps are taken from and given back to, selected with app.inventory.engine
+public interface SeatInventory {
+
+    // Takes one seat per bit of `seats` from the flight and marks them taken, all or nothing.
+    // Empty when the flight is missing, has too few seats or one of the seats is already taken.
+    Mono<Flight> reserve(String flightId, BitSet seats);
+
+    // Gives `seats` back to the flight and frees the seats in `seatIndexes`. The count can be 
+    // higher than the bits for old bookings whose seat numbers are not in the seat map format.
+    Mono<Flight> release(String flightId, int seats, BitSet seatIndexes);
+
+    // Current seat count and seat map of the flight
+    Mono<Flight> seatMap(String flightId);
+
+    // Called after a flight document was written outside reserve/release (add or full update)
+    default void track(Flight flight) {
+    }
+}
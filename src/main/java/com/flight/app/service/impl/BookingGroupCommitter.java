@@ -0,0 +1,230 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.PnrGenerator;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Group commit for bookings of the same flight (app.booking.group-commit.enabled).
+// Bookings arriving within `window` (or until max-batch-size is reached) are committed together:
+// one claim for all of their seats, one insertMany for all of their documents. While a commit
+// is running the next bookings of that flight collect behind it, so under load the batch grows
+// with the round trip time instead of every booking paying it on its own.
+// If the combined claim fails (some seat taken, not enough seats left) every booking of the
+// batch falls back to the single booking path, which gives each caller its own answer.
+// Metric: booking.group.commit.size
+@Slf4j
+@Component
+public class BookingGroupCommitter {
+
+    // one booking waiting in a batch, `single` is the normal one-booking pipeline
+    private record PendingBooking(Booking booking, BitSet seats, Supplier<Mono<String>> single,
+            Sinks.One<String> result) {
+    }
+
+    // pending bookings of one flight, at most one commit per flight runs at a time
+    private final class FlightBatch {
+        private final String flightId;
+        private List<PendingBooking> pending = new ArrayList<>();
+        private boolean scheduled;
+        private boolean committing;
+        private boolean retired;
+
+        FlightBatch(String flightId) {
+            this.flightId = flightId;
+        }
+
+        // false when the batch was already dropped from the map, look it up again
+        boolean add(PendingBooking booking) {
+            synchronized(this) {
+                if(retired) {
+                    return false;
+                }
+                pending.add(booking);
+                if(committing || (scheduled && pending.size() < maxBatchSize)) {
+                    return true;
+                }
+                if(pending.size() < maxBatchSize) {
+                    scheduled = true;
+                    scheduler.schedule(this::commitPending, window.toNanos(), TimeUnit.NANOSECONDS);
+                    return true;
+                }
+            }
+            commitPending();
+            return true;
+        }
+
+        void commitPending() {
+            List<PendingBooking> batch;
+            synchronized(this) {
+                scheduled = false;
+                if(committing || pending.isEmpty()) {
+                    return;
+                }
+                committing = true;
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+
+            commit(flightId, batch)
+                .doFinally(signal -> {
+                    synchronized(this) {
+                        committing = false;
+                        if(pending.isEmpty()) {
+                            if(!scheduled) {
+                                retired = true;
+                                batches.remove(flightId, this);
+                            }
+                            return;
+                        }
+                    }
+                    // these already waited for the previous commit
+                    commitPending();
+                })
+                .subscribe(null, e -> log.warn("Group commit for flight {} failed: {}", flightId, e.getMessage()));
+        }
+    }
+
+    private final FlightService flightService;
+    private final BookingRepository bookingRepository;
+    private final PnrGenerator pnrGenerator;
+    private final Outbox outbox;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final DistributionSummary batchSizes;
+    private final Scheduler scheduler = Schedulers.parallel();
+    private final Map<String, FlightBatch> batches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookingGroupCommitter(FlightService flightService, BookingRepository bookingRepository,
+            PnrGenerator pnrGenerator, Outbox outbox,
+            @Value("${app.booking.group-commit.enabled:false}") boolean enabled,
+            @Value("${app.booking.group-commit.window:2ms}") Duration window,
+            @Value("${app.booking.group-commit.max-batch-size:64}") int maxBatchSize,
+            MeterRegistry meterRegistry) {
+        this.flightService = flightService;
+        this.bookingRepository = bookingRepository;
+        this.pnrGenerator = pnrGenerator;
+        this.outbox = outbox;
+        this.enabled = enabled;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizes = DistributionSummary.builder("booking.group.commit.size")
+                .description("Bookings stored per group commit")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<String> submit(String flightId, Booking booking, BitSet seats, Supplier<Mono<String>> single) {
+        return Mono.defer(() -> {
+            PendingBooking pending = new PendingBooking(booking, seats, single, Sinks.one());
+            while(!batches.computeIfAbsent(flightId, FlightBatch::new).add(pending)) {
+                // retired between lookup and add
+            }
+            return pending.result().asMono();
+        });
+    }
+
+    private Mono<Void> commit(String flightId, List<PendingBooking> batch) {
+        // bookings asking for a seat someone earlier in the batch asked for go the single way,
+        // the seat goes to whoever comes first
+        BitSet combined = new BitSet();
+        List<PendingBooking> grouped = new ArrayList<>();
+        List<PendingBooking> overlapping = new ArrayList<>();
+        for(PendingBooking pending : batch) {
+            if(pending.seats().intersects(combined)) {
+                overlapping.add(pending);
+            }
+            else {
+                combined.or(pending.seats());
+                grouped.add(pending);
+            }
+        }
+
+        Mono<Void> groupCommit = grouped.size() == 1
+            ? runSingly(grouped)
+            : flightService.reserveSeats(flightId, combined)
+                .flatMap(flight -> storeAll(flightId, flight, grouped).thenReturn(true))
+                .switchIfEmpty(Mono.defer(() -> runSingly(grouped).thenReturn(false)))
+                .then();
+
+        return groupCommit
+            .then(runSingly(overlapping))
+            .onErrorResume(e -> {
+                batch.forEach(pending -> pending.result().tryEmitError(e));
+                return Mono.empty();
+            });
+    }
+
+    private Mono<Void> storeAll(String flightId, Flight flight, List<PendingBooking> grouped) {
+        List<Booking> bookings = new ArrayList<>(grouped.size());
+        grouped.forEach(pending -> {
+            BookingServiceImpl.completeBooking(pending.booking(), pnrGenerator.next(), flightId, flight);
+            bookings.add(pending.booking());
+        });
+        batchSizes.record(bookings.size());
+
+        return outbox.write(bookingRepository.insert(bookings).then(), 
+                () -> Outbox.events(OutboxEvent.Type.BOOKING_CONFIRMED, bookings),
+                () -> bookingRepository.deleteAll(bookings))
+            .then(Mono.fromRunnable(() -> grouped.forEach(pending ->
+                    pending.result().tryEmitValue(pending.booking().getPnr()))))
+            // a failed insertMany may have stored part of the batch, find out booking by booking
+            .onErrorResume(e -> Flux.fromIterable(grouped)
+                .concatMap(pending -> storeOne(flightId, pending))
+                .then())
+            .then();
+    }
+
+    private Mono<Void> storeOne(String flightId, PendingBooking pending) {
+        Booking booking = pending.booking();
+        // stored by the failed insertMany or not, its event was not written yet
+        Mono<Booking> storedBooking = bookingRepository.findByPnr(booking.getPnr())
+            .switchIfEmpty(Mono.defer(() -> bookingRepository.insert(booking)));
+        
+        return outbox.write(storedBooking, () -> List.of(Outbox.event(OutboxEvent.Type.BOOKING_CONFIRMED, booking)),
+                () -> bookingRepository.delete(booking))
+            .doOnNext(stored -> pending.result().tryEmitValue(stored.getPnr()))
+            .then()
+            // give this booking's seats back, the others keep theirs
+            .onErrorResume(e -> flightService.releaseSeats(flightId, booking.getNumberOfSeats(), pending.seats())
+                .then(Mono.fromRunnable(() -> pending.result().tryEmitError(e))));
+    }
+
+    private Mono<Void> runSingly(List<PendingBooking> bookings) {
+        return Flux.fromIterable(bookings)
+            .concatMap(pending -> pending.single().get()
+                .doOnNext(pnr -> pending.result().tryEmitValue(pnr))
+                .doOnError(e -> pending.result().tryEmitError(e))
+                .onErrorResume(e -> Mono.empty()))
+            .then();
+    }
+}
@@ -0,0 +1,182 @@
+package com.flight.app.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.IdempotencyRecord;
+import com.flight.app.exception.BookingRejectedException;
+import com.flight.app.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import tools.jackson.databind.MapperFeature;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+// Idempotency-Key support for bookTicket. The PNR of the first request with a key is kept for
+// `ttl` and handed to every retry with that key, which never reaches FlightService or the
+// booking collection. A duplicate arriving while the first one still runs waits for its result.
+// Failed bookings are not kept, a retry after a failure books again.
+// The in-memory store covers retries hitting the same instance. With app.idempotency.mongo.enabled
+// the outcome also goes to the idempotency_keys collection so any instance can answer the retry,
+// a duplicate racing on another instance gets 409 with Retry-After.
+// Metrics: booking.idempotency{result=new|replayed}
+@Component
+public class BookingIdempotency {
+
+    private static final int MAX_KEY_LENGTH = 255;
+    // a record still pending after this long belongs to an instance that died mid booking
+    private static final Duration PENDING_TTL = Duration.ofMinutes(1);
+    // sorted properties, so the same request always gives the same bytes
+    private static final JsonMapper CANONICAL_JSON = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private record Entry(String fingerprint, CompletableFuture<String> pnr) {
+    }
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final boolean mongoEnabled;
+    private final Duration ttl;
+    private final Duration retryAfter;
+    private final Cache<String, Entry> entries;
+    private final Counter fresh;
+    private final Counter replayed;
+
+    @Autowired
+    public BookingIdempotency(IdempotencyRecordRepository recordRepository,
+            @Value("${app.idempotency.mongo.enabled:false}") boolean mongoEnabled,
+            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+            @Value("${app.idempotency.max-entries:100000}") long maxEntries,
+            @Value("${app.idempotency.retry-after:1s}") Duration retryAfter,
+            MeterRegistry meterRegistry) {
+        this.recordRepository = recordRepository;
+        this.mongoEnabled = mongoEnabled;
+        this.ttl = ttl;
+        this.retryAfter = retryAfter;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .build();
+        this.fresh = idempotencyCounter(meterRegistry, "new");
+        this.replayed = idempotencyCounter(meterRegistry, "replayed");
+    }
+
+    private static Counter idempotencyCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("booking.idempotency").tag("result", result).register(meterRegistry);
+    }
+
+    public Mono<String> execute(String key, String flightId, Booking booking, Supplier<Mono<String>> bookTicket) {
+        if(key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new IllegalArgumentException(
+                    "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters."));
+        }
+        // taken before the pipeline fills in pnr, dates and cost
+        String fingerprint = fingerprint(flightId, booking);
+
+        return Mono.defer(() -> {
+            Entry entry = new Entry(fingerprint, new CompletableFuture<>());
+            Entry existing = entries.asMap().putIfAbsent(key, entry);
+            if(existing != null) {
+                if(!existing.fingerprint().equals(fingerprint)) {
+                    return Mono.error(keyReused(key));
+                }
+                replayed.increment();
+                // one retry giving up must not cancel the booking for the others
+                return Mono.fromFuture(existing.pnr(), true);
+            }
+
+            Mono<String> first;
+            if(mongoEnabled) {
+                first = viaMongo(key, fingerprint, bookTicket);
+            }
+            else {
+                fresh.increment();
+                first = bookTicket.get();
+            }
+            // runs to the end even if the client that sent it times out, the retry picks up the PNR
+            first.toFuture().whenComplete((pnr, e) -> {
+                if(e != null) {
+                    entries.asMap().remove(key, entry);
+                    entry.pnr().completeExceptionally(e);
+                    return;
+                }
+                entry.pnr().complete(pnr);
+            });
+            return Mono.fromFuture(entry.pnr(), true);
+        });
+    }
+
+    private Mono<String> viaMongo(String key, String fingerprint, Supplier<Mono<String>> bookTicket) {
+        return recordRepository.findById(key)
+            .flatMap(record -> {
+                if(!record.getFingerprint().equals(fingerprint)) {
+                    return Mono.<String>error(keyReused(key));
+                }
+                if(record.getPnr() == null) {
+                    return Mono.<String>error(inProgress(key));
+                }
+                replayed.increment();
+                return Mono.just(record.getPnr());
+            })
+            .switchIfEmpty(Mono.defer(() -> {
+                IdempotencyRecord record = new IdempotencyRecord(key, fingerprint, null, Instant.now().plus(PENDING_TTL));
+                // the insert is the claim on the key, the unique _id decides between instances
+                return recordRepository.insert(record)
+                    .onErrorMap(DuplicateKeyException.class, e -> inProgress(key))
+                    .flatMap(claimed -> {
+                        fresh.increment();
+                        return bookTicket.get()
+                            // free the key so a retry can book again
+                            .onErrorResume(e -> recordRepository.deleteById(key).then(Mono.error(e)))
+                            .flatMap(pnr -> {
+                                record.setPnr(pnr);
+                                record.setExpiresAt(Instant.now().plus(ttl));
+                                // the ticket is booked either way, at worst the pending record expires
+                                return recordRepository.save(record).thenReturn(pnr).onErrorReturn(pnr);
+                            });
+                    });
+            }));
+    }
+
+    // SHA-256 over the flight and the canonical JSON of the requested booking, hex encoded
+    static String fingerprint(String flightId, Booking booking) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(flightId.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) '\n');
+            sha256.update(CANONICAL_JSON.writeValueAsBytes(booking));
+            return HexFormat.of().formatHex(sha256.digest());
+        }
+        catch(NoSuchAlgorithmException e) {
+            // every Java platform has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static IllegalArgumentException keyReused(String key) {
+        return new IllegalArgumentException("Idempotency-Key " + key + " was already used for a different booking.");
+    }
+
+    private BookingRejectedException inProgress(String key) {
+        return new BookingRejectedException("A booking with Idempotency-Key " + key + " is still in progress.",
+                HttpStatus.CONFLICT, retryAfter);
+    }
+}
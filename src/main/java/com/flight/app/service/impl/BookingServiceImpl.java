@@ -3,74 +3,159 @@ package com.flight.app.service.impl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.flight.app.dto.BookingPage;
+import com.flight.app.dto.BookingSummary;
+import com.flight.app.dto.ManifestEntry;
 import com.flight.app.entity.Booking;
 import com.flight.app.entity.Flight;
+import com.flight.app.entity.FlightCancellation;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.entity.Passenger;
+import com.flight.app.entity.WaitlistEntry;
 import com.flight.app.exception.CancellationNotPossibleException;
+import com.flight.app.exception.FlightSoldOutException;
 import com.flight.app.exception.FlightUnavailableException;
 import com.flight.app.exception.ResourceNotFoundException;
 import com.flight.app.repository.BookingRepository;
 import com.flight.app.service.BookingService;
 import com.flight.app.service.FlightService;
+import com.flight.app.service.PnrGenerator;
 
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.UUID;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Function;
 
+@Slf4j
 @Service
 public class BookingServiceImpl implements BookingService {
     
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    private static final Mono<String> SOLD_OUT = Mono.error(FlightSoldOutException.INSTANCE);
+    
     private final FlightService flightService;
     private final BookingRepository bookingRepository;
+    private final PnrGenerator pnrGenerator;
+    private final FlightAdmissionControl admissionControl;
+    private final BookingGroupCommitter groupCommitter;
+    private final BookingIdempotency idempotency;
+    private final SoldOutRegistry soldOutRegistry;
+    private final Waitlist waitlist;
+    private final Outbox outbox;
+    private final FlightCancellationJob flightCancellations;
 
     @Autowired
-    public BookingServiceImpl(FlightService flightService, BookingRepository bookingRepository) {
+    public BookingServiceImpl(FlightService flightService, BookingRepository bookingRepository, 
+            PnrGenerator pnrGenerator, FlightAdmissionControl admissionControl, 
+            BookingGroupCommitter groupCommitter, BookingIdempotency idempotency, SoldOutRegistry soldOutRegistry,
+            Waitlist waitlist, Outbox outbox, FlightCancellationJob flightCancellations) {
         this.flightService = flightService;
         this.bookingRepository = bookingRepository;
+        this.pnrGenerator = pnrGenerator;
+        this.admissionControl = admissionControl;
+        this.groupCommitter = groupCommitter;
+        this.idempotency = idempotency;
+        this.soldOutRegistry = soldOutRegistry;
+        this.waitlist = waitlist;
+        this.outbox = outbox;
+        this.flightCancellations = flightCancellations;
     }
-
-    private String generateUniquePNR() {
-        return "CHUBBFLIGHT" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+    
+    @Override
+    public Mono<String> bookTicket(String flightId, Booking requestBooking, String idempotencyKey) {
+        if(idempotencyKey == null) {
+            return bookTicket(flightId, requestBooking);
+        }
+        return idempotency.execute(idempotencyKey, flightId, requestBooking, 
+                () -> bookTicket(flightId, requestBooking));
     }
 
     @Override
     public Mono<String> bookTicket(String flightId, Booking requestBooking) {
+        int seatsToBook = requestBooking.getPassengers().size();
+        if(seatsToBook <= 0) {
+            return Mono.error(new IllegalArgumentException("Number of seats must be at least one."));
+        }
+        
+        BitSet seats;
+        try {
+            seats = SeatMap.parse(requestBooking.getPassengers().stream().map(Passenger::getSeatNumber).toList());
+        } 
+        catch(IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        
+        // most attempts during a sell-out end here, no read and no new exception
+        if(soldOutRegistry.reject(flightId)) {
+            return SOLD_OUT;
+        }
+        
+        // only a bounded number of bookings per flight reach Mongo at once, see FlightAdmissionControl
+        return admissionControl.admit(flightId, Mono.defer(() -> {
+            if(groupCommitter.isEnabled()) {
+                // stored together with other bookings of the flight, see BookingGroupCommitter
+                return groupCommitter.submit(flightId, requestBooking, seats, 
+                        () -> reserveAndStore(flightId, requestBooking, seats));
+            }
+            return reserveAndStore(flightId, requestBooking, seats);
+        }));
+    }
+    
+    private Mono<String> reserveAndStore(String flightId, Booking requestBooking, BitSet seats) {
+        int seatsToBook = seats.cardinality();
+        
+        // check and decrement seats and claim the seat numbers in one atomic round trip
+        return flightService.reserveSeats(flightId, seats)
+            .switchIfEmpty(Mono.defer(() -> rejectReservation(flightId, seats)))
+            // save booking details in repo
+            .flatMap(updatedFlight -> {
+                completeBooking(requestBooking, pnrGenerator.next(), flightId, updatedFlight);
+                
+                // insert, not save: a repeated PNR must fail instead of overwriting a booking
+                return outbox.write(bookingRepository.insert(requestBooking), 
+                        () -> List.of(Outbox.event(OutboxEvent.Type.BOOKING_CONFIRMED, requestBooking)),
+                        () -> bookingRepository.delete(requestBooking))
+                    .map(Booking::getPnr)
+                    // give the seats back if the booking could not be stored
+                    .onErrorResume(e -> flightService.releaseSeats(flightId, seatsToBook, seats)
+                            .then(Mono.error(e)));
+            });
+    }
+    
+    // fills in what the server decides once the seats are claimed
+    static void completeBooking(Booking booking, String pnr, String flightId, Flight flight) {
+        booking.setPnr(pnr);
+        booking.setFlightId(flightId);
+        booking.setBookingDate(LocalDateTime.now());
+        booking.setNumberOfSeats(booking.getPassengers().size());
+        booking.setTotalCost(flight.getPrice() * booking.getNumberOfSeats());
+        booking.setJourneyDate(flight.getScheduleDate());
+    }
+    
+    // Only reached when the conditional decrement matched nothing,
+    // so the extra read is off the happy path
+    private Mono<Flight> rejectReservation(String flightId, BitSet seats) {
         return flightService.getFlightById(flightId)
             .switchIfEmpty(Mono.error(new ResourceNotFoundException("Flight with ID " + flightId + " not found.")))
-            // check if seats available 
             .flatMap(flight -> {
-                int seatsToBook = requestBooking.getPassengers().size();
-                if(seatsToBook <= 0) {
-                    return Mono.error(new IllegalArgumentException("Number of seats must be at least one."));
+                if(Boolean.TRUE.equals(flight.getCancelled())) {
+                    return Mono.error(new FlightUnavailableException("Flight " + flightId + " is cancelled."));
                 }
-                Integer currentAvailableSeats = flight.getAvailableSeats();              
-                if(currentAvailableSeats < seatsToBook) {
+                if(flight.getAvailableSeats() <= 0) {
+                    soldOutRegistry.markSoldOut(flightId);
+                    return Mono.error(FlightSoldOutException.INSTANCE);
+                }
+                if(flight.getAvailableSeats() < seats.cardinality()) {
                     return Mono.error(new FlightUnavailableException(
-                           "Insufficient seats. Only " + currentAvailableSeats + " seats Available"));
+                        "Insufficient seats. Only " + flight.getAvailableSeats() + " seats Available"));
                 }
-
-                flight.setAvailableSeats(currentAvailableSeats - seatsToBook);
-                return Mono.just(flight);
-            })
-            // Update Flight Inventory
-            .flatMap(updatedFlight -> {
-                Mono<String> updateMono = flightService.updateFlightInventory(updatedFlight);
-                return updateMono.thenReturn(updatedFlight); 
-            })
-            // save booking details in repo
-            .flatMap(updatedFlight -> {
-                String pnr = generateUniquePNR();
-                requestBooking.setPnr(pnr);
-                
-                requestBooking.setFlightId(flightId);
-                requestBooking.setBookingDate(LocalDateTime.now());
-                requestBooking.setNumberOfSeats(requestBooking.getPassengers().size());
-                requestBooking.setTotalCost(updatedFlight.getPrice() * requestBooking.getNumberOfSeats());
-                requestBooking.setJourneyDate(updatedFlight.getScheduleDate());
-                
-                return bookingRepository.save(requestBooking).map(Booking::getPnr);
+                return Mono.error(new FlightUnavailableException(
+                        "Seats not available: " + String.join(", ", SeatMap.unavailable(flight, seats))));
             });
     }
     
@@ -87,6 +172,52 @@ public class BookingServiceImpl implements BookingService {
         return bookingRepository.findByUserEmailOrderByBookingDateDesc(emailId);
     }
     
+    @Override
+    public Mono<BookingPage<Booking>> getBookingHistoryPage(String emailId, String cursor, int size) {
+        return historyPage(emailId, cursor, size, false, Function.identity());
+    }
+    
+    @Override
+    public Mono<BookingPage<BookingSummary>> getBookingHistorySummaryPage(String emailId, String cursor, int size) {
+        return historyPage(emailId, cursor, size, true, BookingSummary::of);
+    }
+    
+    private <T> Mono<BookingPage<T>> historyPage(String emailId, String cursor, int size, 
+            boolean summaryOnly, Function<Booking, T> mapper) {
+        if(size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+            return Mono.error(new IllegalArgumentException(
+                    "Page size must be between 1 and " + MAX_HISTORY_PAGE_SIZE + "."));
+        }
+        
+        HistoryCursor after;
+        try {
+            after = cursor == null ? HistoryCursor.FIRST_PAGE : HistoryCursor.decode(cursor);
+        } 
+        catch(IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        
+        return bookingRepository.findHistoryPage(emailId, after.bookingDate(), after.pnr(), size + 1, summaryOnly)
+            .collectList()
+            .map(bookings -> {
+                // one extra row tells whether another page exists without a count query
+                boolean hasMore = bookings.size() > size;
+                List<Booking> page = hasMore ? bookings.subList(0, size) : bookings;
+                String nextCursor = hasMore ? HistoryCursor.of(page.get(size - 1)).encode() : null;
+                
+                return new BookingPage<>(page.stream().map(mapper).toList(), nextCursor);
+            });
+    }
+    
+    @Override
+    public Flux<ManifestEntry> getPassengerManifest(String flightId) {
+        return flightService.getFlightById(flightId)
+            .switchIfEmpty(Mono.error(new ResourceNotFoundException("Flight with ID " + flightId + " not found.")))
+            // only the bookings read so far are held, whatever the size of the flight
+            .thenMany(Flux.defer(() -> bookingRepository.findManifest(flightId)))
+            .concatMapIterable(ManifestEntry::of);
+    }
+    
     @Override
     public Mono<Void> cancelTicket(String pnr) {
         return getTicketByPnr(pnr)
@@ -102,6 +233,12 @@ public class BookingServiceImpl implements BookingService {
                 Booking booking = tuple.booking;
                 Flight flight = tuple.flight;
                 
+                // FlightCancellationJob cancels it, its seats must not go back on sale
+                if(Boolean.TRUE.equals(flight.getCancelled())) {
+                    return Mono.error(new CancellationNotPossibleException(
+                        "Flight " + flight.getId() + " was cancelled by the airline, the booking is refunded."));
+                }
+                
                 LocalDateTime departureDateTime = booking.getJourneyDate()
                         .atTime(flight.getDepartureTime()); 
                 LocalDateTime cancellationDeadline = departureDateTime.minus(24, ChronoUnit.HOURS);
@@ -111,20 +248,64 @@ public class BookingServiceImpl implements BookingService {
                         "Cancellation Not Possible due to 24 hour deadline."));
                 }
                 
-                flight.setAvailableSeats(flight.getAvailableSeats() + booking.getNumberOfSeats());
                 return Mono.just(tuple);
             })
-            // Update Inventory and Delete Booking
+            // Delete Booking and then Release seats
             .flatMap(tuple -> {
-                Mono<String> updateInventory = flightService.updateFlightInventory(tuple.flight);
-                Mono<Void> deleteBooking = bookingRepository.delete(tuple.booking);
+                Mono<Void> deleteBooking = outbox.write(bookingRepository.delete(tuple.booking), 
+                        () -> List.of(Outbox.event(OutboxEvent.Type.BOOKING_CANCELLED, tuple.booking)),
+                        () -> bookingRepository.insert(tuple.booking));
+                Mono<Flight> releaseSeats = flightService.releaseSeats(
+                        tuple.flight.getId(), tuple.booking.getNumberOfSeats(), seatIndexes(tuple.booking));
                 
-                // Wait for both operations to complete and then return
-                return Mono.when(updateInventory, deleteBooking);
+                // the seats only go back once the booking is really gone, and go to the waitlist first
+                return deleteBooking.then(releaseSeats).then(promoteWaitlist(tuple.flight.getId()));
             });
             
     }
     
+    // the cancellation is done either way, a failed promotion is picked up by the next one
+    private Mono<Void> promoteWaitlist(String flightId) {
+        return waitlist.promote(flightId)
+            .onErrorResume(e -> {
+                log.warn("Waitlist promotion for flight {} failed: {}", flightId, e.getMessage());
+                return Mono.empty();
+            })
+            .then();
+    }
+    
+    @Override
+    public Mono<FlightCancellation> cancelFlight(String flightId, String reason) {
+        return flightCancellations.cancel(flightId, reason);
+    }
+    
+    @Override
+    public Mono<FlightCancellation> getFlightCancellation(String flightId) {
+        return flightCancellations.getProgress(flightId);
+    }
+    
+    @Override
+    public Mono<WaitlistEntry> joinWaitlist(String flightId, Booking booking) {
+        return waitlist.join(flightId, booking);
+    }
+    
+    @Override
+    public Mono<WaitlistEntry> getWaitlistEntry(String entryId) {
+        return waitlist.getEntry(entryId);
+    }
+    
+    @Override
+    public Flux<WaitlistEntry> watchWaitlistEntry(String entryId) {
+        return waitlist.watch(entryId);
+    }
+    
+    private static BitSet seatIndexes(Booking booking) {
+        if(booking.getPassengers() == null) {
+            return new BitSet();
+        }
+        return SeatMap.parseLenient(booking.getPassengers().stream().map(Passenger::getSeatNumber).toList());
+    }
+    
     // helper class to carry two objects through a reactive chain
     private static class BookingFlightTuple {
         final Booking booking;
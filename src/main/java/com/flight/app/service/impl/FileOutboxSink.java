@@ -0,0 +1,68 @@
+package com.flight.app.service.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.service.OutboxSink;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import tools.jackson.databind.json.JsonMapper;
+
+// Appends every event as one JSON line to app.outbox.sink.file.path, for a local consumer
+// that tails the file. Writes block, so they run on boundedElastic.
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink.file.path")
+public class FileOutboxSink implements OutboxSink {
+
+    private final JsonMapper jsonMapper;
+    private final BufferedWriter writer;
+
+    @Autowired
+    public FileOutboxSink(JsonMapper jsonMapper, @Value("${app.outbox.sink.file.path}") Path path) 
+            throws IOException {
+        this.jsonMapper = jsonMapper;
+        if(path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, 
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public Mono<Void> publish(OutboxEvent event) {
+        return Mono.fromCallable(() -> jsonMapper.writeValueAsString(event))
+            .doOnNext(this::append)
+            .subscribeOn(Schedulers.boundedElastic())
+            .then();
+    }
+
+    // the line is written out before the event counts as delivered
+    private synchronized void append(String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        } 
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,191 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.exception.BookingRejectedException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+// Per-flight admission control in front of the booking pipeline. At most max-in-flight bookings
+// of one flight run at a time, up to max-queued more wait for a slot (without holding a thread)
+// and everything beyond is rejected right away with 429. A booking that waited longer than
+// queue-timeout gets 503. Both carry Retry-After. This keeps one hot flight from taking the
+// whole Mongo connection pool while bookings for other flights go through untouched.
+// Metrics: booking.admissions{result=admitted|queued|rejected|timed-out}
+@Component
+public class FlightAdmissionControl {
+
+    private static final Waiter ADMITTED = new Waiter();
+    private static final Waiter RETIRED = new Waiter();
+
+    // a booking waiting for a slot, the slot is handed over directly by the finishing booking
+    private static final class Waiter {
+        static final int WAITING = 0;
+        static final int GRANTED = 1;
+        static final int RUNNING = 2;
+        static final int ABANDONED = 3;
+
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        final Sinks.Empty<Void> turn = Sinks.empty();
+    }
+
+    // slots and queue of one flight, dropped from the map as soon as it is idle
+    private final class Gate {
+        private final String flightId;
+        private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+        private int running;
+        private boolean retired;
+
+        Gate(String flightId) {
+            this.flightId = flightId;
+        }
+
+        // ADMITTED, a Waiter to wait on, RETIRED (look the gate up again) or null when full
+        synchronized Waiter enter() {
+            if(retired) {
+                return RETIRED;
+            }
+            if(running < maxInFlight) {
+                running++;
+                return ADMITTED;
+            }
+            if(waiting.size() < maxQueued) {
+                Waiter waiter = new Waiter();
+                waiting.add(waiter);
+                return waiter;
+            }
+            return null;
+        }
+
+        void release() {
+            Waiter next;
+            synchronized(this) {
+                do {
+                    next = waiting.poll();
+                } while(next != null && !next.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED));
+
+                if(next == null) {
+                    running--;
+                    if(running == 0) {
+                        retired = true;
+                        gates.remove(flightId, this);
+                    }
+                }
+            }
+            if(next != null) {
+                next.turn.tryEmitEmpty();
+            }
+        }
+
+        synchronized void leave(Waiter waiter) {
+            waiting.remove(waiter);
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final Duration queueTimeout;
+    private final Duration retryAfter;
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+    private final Counter admitted;
+    private final Counter queued;
+    private final Counter rejected;
+    private final Counter timedOut;
+
+    @Autowired
+    public FlightAdmissionControl(@Value("${app.admission.enabled:true}") boolean enabled,
+            @Value("${app.admission.max-in-flight:32}") int maxInFlight,
+            @Value("${app.admission.max-queued:256}") int maxQueued,
+            @Value("${app.admission.queue-timeout:2s}") Duration queueTimeout,
+            @Value("${app.admission.retry-after:1s}") Duration retryAfter,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.queueTimeout = queueTimeout;
+        this.retryAfter = retryAfter;
+        this.admitted = admissionCounter(meterRegistry, "admitted");
+        this.queued = admissionCounter(meterRegistry, "queued");
+        this.rejected = admissionCounter(meterRegistry, "rejected");
+        this.timedOut = admissionCounter(meterRegistry, "timed-out");
+    }
+
+    private static Counter admissionCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("booking.admissions").tag("result", result).register(meterRegistry);
+    }
+
+    public <T> Mono<T> admit(String flightId, Mono<T> booking) {
+        if(!enabled) {
+            return booking;
+        }
+
+        return Mono.defer(() -> {
+            Gate gate;
+            Waiter waiter;
+            do {
+                gate = gates.computeIfAbsent(flightId, Gate::new);
+                waiter = gate.enter();
+            } while(waiter == RETIRED);
+
+            if(waiter == ADMITTED) {
+                admitted.increment();
+                return run(gate, booking);
+            }
+            if(waiter == null) {
+                rejected.increment();
+                return Mono.error(new BookingRejectedException(
+                        "Too many bookings for flight " + flightId + " right now, please retry.",
+                        HttpStatus.TOO_MANY_REQUESTS, retryAfter));
+            }
+
+            queued.increment();
+            Gate queuedAt = gate;
+            Waiter queuedAs = waiter;
+            return awaitTurn(queuedAt, queuedAs, flightId).then(Mono.defer(() -> {
+                queuedAs.state.set(Waiter.RUNNING);
+                return run(queuedAt, booking);
+            }));
+        });
+    }
+
+    private <T> Mono<T> run(Gate gate, Mono<T> booking) {
+        return booking.doFinally(signal -> gate.release());
+    }
+
+    private Mono<Void> awaitTurn(Gate gate, Waiter waiter, String flightId) {
+        return waiter.turn.asMono()
+            .timeout(queueTimeout, Mono.defer(() -> {
+                if(!waiter.state.compareAndSet(Waiter.WAITING, Waiter.ABANDONED)) {
+                    // the slot was handed over at the same moment, use it
+                    return Mono.empty();
+                }
+                gate.leave(waiter);
+                timedOut.increment();
+                return Mono.error(new BookingRejectedException(
+                        "Booking for flight " + flightId + " timed out waiting for a slot, please retry.",
+                        HttpStatus.SERVICE_UNAVAILABLE, retryAfter));
+            }))
+            .doOnCancel(() -> {
+                if(waiter.state.compareAndSet(Waiter.WAITING, Waiter.ABANDONED)) {
+                    gate.leave(waiter);
+                }
+                else if(waiter.state.compareAndSet(Waiter.GRANTED, Waiter.ABANDONED)) {
+                    // caller went away after being handed a slot it never used
+                    gate.release();
+                }
+            });
+    }
+}
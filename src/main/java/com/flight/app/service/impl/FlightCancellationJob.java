@@ -0,0 +1,210 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.FlightCancellation;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.exception.ResourceNotFoundException;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.repository.FlightCancellationRepository;
+import com.flight.app.service.FlightService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Cancels every booking of a flight the airline cancelled. cancel marks the flight, so no seat
+// can be claimed anymore, and stores a FlightCancellation that is then run in the background:
+// the bookings are read in pnr order in pages of batch-size (one range of flightid_pnr_idx) and
+// each page is deleted with one deleteAllById and gets a FLIGHT_CANCELLED outbox event per booking
+// in the same Outbox write, up to `concurrency` pages at a time. Unlike cancelTicket there is no
+// flight read per booking, no seat release and no 24 hour deadline, a cancelled flight sells nothing.
+// After each page, in pnr order, lastPnr and the counts are stored and the lease extended. The job
+// of an instance that stopped is taken up by any instance's poll once its lease ended and goes on
+// after lastPnr, pages done past the checkpoint are not found again as their bookings are gone.
+// A booking that claimed its seats right before the flight was marked can be stored behind the
+// cursor, so once grace-period has passed since the mark (far longer than a claim takes to be
+// stored) a last pass from the first pnr picks such bookings up. Only then the flight's waitlist
+// is closed, a promotion still running meanwhile could otherwise put its entry back to WAITING.
+// Metrics: flight.cancellation.bookings
+@Slf4j
+@Component
+public class FlightCancellationJob {
+
+    private final FlightCancellationRepository cancellationRepository;
+    private final FlightService flightService;
+    private final BookingRepository bookingRepository;
+    private final Outbox outbox;
+    private final Waitlist waitlist;
+    private final int batchSize;
+    private final int concurrency;
+    private final Duration lease;
+    private final Duration gracePeriod;
+    private final Duration pollInterval;
+    private final Counter cancelledBookings;
+    private Disposable resumer;
+
+    @Autowired
+    public FlightCancellationJob(FlightCancellationRepository cancellationRepository, FlightService flightService,
+            BookingRepository bookingRepository, Outbox outbox, Waitlist waitlist,
+            @Value("${app.flight-cancellation.batch-size:200}") int batchSize,
+            @Value("${app.flight-cancellation.concurrency:4}") int concurrency,
+            @Value("${app.flight-cancellation.lease:60s}") Duration lease,
+            @Value("${app.flight-cancellation.grace-period:10s}") Duration gracePeriod,
+            @Value("${app.flight-cancellation.poll-interval:30s}") Duration pollInterval,
+            MeterRegistry meterRegistry) {
+        this.cancellationRepository = cancellationRepository;
+        this.flightService = flightService;
+        this.bookingRepository = bookingRepository;
+        this.outbox = outbox;
+        this.waitlist = waitlist;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.lease = lease;
+        this.gracePeriod = gracePeriod;
+        this.pollInterval = pollInterval;
+        this.cancelledBookings = Counter.builder("flight.cancellation.bookings")
+            .description("Bookings cancelled because the airline cancelled their flight")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // the first poll right away, jobs left by a restart go on once their lease ended
+        resumer = Flux.interval(Duration.ZERO, pollInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> resumeAll()
+                .onErrorResume(e -> {
+                    log.warn("Resuming flight cancellations failed: {}", e.getMessage());
+                    return Mono.empty();
+                }), 0)
+            .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if(resumer != null) {
+            resumer.dispose();
+        }
+    }
+
+    // Takes the flight off sale and starts cancelling its bookings, the job as stored.
+    // Asking again for a flight already cancelled answers with its job as it is now.
+    public Mono<FlightCancellation> cancel(String flightId, String reason) {
+        return flightService.getFlightById(flightId)
+            .switchIfEmpty(Mono.error(new ResourceNotFoundException("Flight with ID " + flightId + " not found.")))
+            .then(Mono.defer(() -> bookingRepository.countByFlightId(flightId)))
+            .flatMap(bookings -> {
+                Instant now = Instant.now();
+                // stored first, a stop before the flight is marked leaves a job that marks it on resume
+                return cancellationRepository.insert(new FlightCancellation(flightId, reason,
+                        FlightCancellation.Status.RUNNING, bookings, 0, 0, null, now, now, now));
+            })
+            .flatMap(job -> flightService.cancelFlight(flightId)
+                .doOnNext(flight -> {
+                    log.info("Flight {} cancelled by the airline ({}), cancelling {} bookings", flightId, reason,
+                            job.getBookingsTotal());
+                    run(flightId).subscribe(null, e -> log.warn("Cancellation of flight {} stopped, resumed "
+                            + "after the lease: {}", flightId, e.getMessage()));
+                })
+                .thenReturn(job))
+            .onErrorResume(DuplicateKeyException.class, e -> getProgress(flightId));
+    }
+
+    public Mono<FlightCancellation> getProgress(String flightId) {
+        return cancellationRepository.findById(flightId)
+            .switchIfEmpty(Mono.error(new ResourceNotFoundException(
+                    "No cancellation for flight " + flightId + " found.")));
+    }
+
+    // Every job whose lease ended, one after the other
+    Mono<Void> resumeAll() {
+        return cancellationRepository.findByStatusAndLeaseUntilLessThanEqual(FlightCancellation.Status.RUNNING,
+                Instant.now())
+            .concatMap(job -> run(job.getFlightId())
+                .onErrorResume(e -> {
+                    log.warn("Cancellation of flight {} stopped, resumed after the lease: {}", job.getFlightId(),
+                            e.getMessage());
+                    return Mono.empty();
+                }))
+            .then();
+    }
+
+    // Works the job off unless another instance holds it, the COMPLETED job or empty
+    Mono<FlightCancellation> run(String flightId) {
+        Instant now = Instant.now();
+
+        return cancellationRepository.claim(flightId, now, now.plus(lease))
+            .flatMap(job -> flightService.cancelFlight(flightId)
+                .then(pass(flightId, job.getLastPnr()))
+                .then(Mono.defer(() -> awaitGrace(job)))
+                // the last pass, usually one empty page
+                .then(pass(flightId, null))
+                .then(Mono.defer(() -> waitlist.close(flightId)))
+                .doOnNext(closed -> log.info("Waitlist of cancelled flight {} closed, {} entries", flightId, closed))
+                .then(Mono.defer(() -> cancellationRepository.complete(flightId, Instant.now()))))
+            .doOnNext(job -> log.info("Cancellation of flight {} completed, {} bookings with {} passengers cancelled",
+                    flightId, job.getBookingsCancelled(), job.getPassengersAffected()));
+    }
+
+    // the flight was marked right after the job was stored, a resumed job usually waits no more
+    private Mono<Void> awaitGrace(FlightCancellation job) {
+        Duration left = Duration.between(Instant.now(), job.getRequestedAt().plus(gracePeriod));
+        return left.isNegative() || left.isZero() ? Mono.empty() : Mono.delay(left).then();
+    }
+
+    private Mono<Void> pass(String flightId, String afterPnr) {
+        return page(flightId, afterPnr)
+            .expand(page -> page.size() < batchSize ? Mono.empty() : page(flightId, lastPnr(page)))
+            .filter(page -> !page.isEmpty())
+            // pages are read one after the other, the deletes and events overlap
+            .flatMapSequential(this::cancelBatch, concurrency)
+            // in pnr order, lastPnr never moves past a page that is not done
+            .concatMap(page -> {
+                Instant now = Instant.now();
+                return cancellationRepository.recordProgress(flightId, lastPnr(page), page.size(), passengers(page),
+                        now, now.plus(lease));
+            })
+            .then();
+    }
+
+    private Mono<List<Booking>> page(String flightId, String afterPnr) {
+        return Flux.defer(() -> bookingRepository.findFlightPage(flightId, afterPnr, batchSize)).collectList();
+    }
+
+    private Mono<List<Booking>> cancelBatch(List<Booking> page) {
+        List<String> pnrs = page.stream().map(Booking::getPnr).toList();
+
+        // a page whose events could not be stored is put back and stops the job until its lease ended
+        return outbox.write(bookingRepository.deleteAllById(pnrs),
+                () -> Outbox.events(OutboxEvent.Type.FLIGHT_CANCELLED, page),
+                () -> bookingRepository.insert(page).then())
+            .then(Mono.fromCallable(() -> {
+                cancelledBookings.increment(page.size());
+                return page;
+            }));
+    }
+
+    private static String lastPnr(List<Booking> page) {
+        return page.get(page.size() - 1).getPnr();
+    }
+
+    private static long passengers(List<Booking> page) {
+        return page.stream().mapToLong(booking -> booking.getPassengers() == null ? 0 : booking.getPassengers().size())
+            .sum();
+    }
+}
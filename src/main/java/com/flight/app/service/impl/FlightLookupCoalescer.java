@@ -0,0 +1,116 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+// Single-flight for flight lookups by id: callers asking for a flight that is already being
+// loaded wait for that query instead of sending their own. Optionally the result is kept in a
+// very short near cache (app.flight-lookup.near-cache-ttl, 0 = off). The loaded flight is only
+// kept here, every caller gets its own copy and may change it.
+// Metrics: flight.lookups{result=query|coalesced|near-cache} and flight.lookups.collapse.ratio,
+// the share of lookups that did not reach Mongo.
+@Component
+public class FlightLookupCoalescer {
+
+    private final Map<String, CompletableFuture<Flight>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, Flight> nearCache;
+    private final Counter queries;
+    private final Counter coalesced;
+    private final Counter nearCacheHits;
+
+    @Autowired
+    public FlightLookupCoalescer(@Value("${app.flight-lookup.near-cache-ttl:0s}") Duration nearCacheTtl,
+            MeterRegistry meterRegistry) {
+        this.nearCache = nearCacheTtl.isZero() ? null : Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(nearCacheTtl)
+                .build();
+        this.queries = lookupCounter(meterRegistry, "query");
+        this.coalesced = lookupCounter(meterRegistry, "coalesced");
+        this.nearCacheHits = lookupCounter(meterRegistry, "near-cache");
+        Gauge.builder("flight.lookups.collapse.ratio", this, FlightLookupCoalescer::collapseRatio)
+            .description("Share of flight lookups answered without their own Mongo query")
+            .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("flight.lookups").tag("result", result).register(meterRegistry);
+    }
+
+    public Mono<Flight> get(String flightId, Function<String, Mono<Flight>> loader) {
+        return Mono.defer(() -> {
+            if(nearCache != null) {
+                Flight cached = nearCache.getIfPresent(flightId);
+                if(cached != null) {
+                    nearCacheHits.increment();
+                    return Mono.just(copy(cached));
+                }
+            }
+
+            CompletableFuture<Flight> promise = new CompletableFuture<>();
+            CompletableFuture<Flight> shared = inFlight.putIfAbsent(flightId, promise);
+            if(shared != null) {
+                coalesced.increment();
+                // one caller cancelling must not cancel the query for the others
+                return Mono.fromFuture(shared, true).map(FlightLookupCoalescer::copy);
+            }
+
+            queries.increment();
+            loader.apply(flightId).toFuture().whenComplete((flight, e) -> {
+                // removed before completing, so later callers start a fresh query. If the flight
+                // changed while loading the entry is already gone and the result is not cached.
+                boolean current = inFlight.remove(flightId, promise);
+                if(e != null) {
+                    promise.completeExceptionally(e);
+                    return;
+                }
+                if(current && nearCache != null && flight != null) {
+                    nearCache.put(flightId, flight);
+                }
+                promise.complete(flight);
+            });
+            return Mono.fromFuture(promise, true).map(FlightLookupCoalescer::copy);
+        });
+    }
+
+    // the seat map is the one mutable field that is not a value
+    private static Flight copy(Flight flight) {
+        return flight.toBuilder()
+            .seatMap(flight.getSeatMap() == null ? null : new ArrayList<>(flight.getSeatMap()))
+            .build();
+    }
+
+    @EventListener
+    public void onInventoryChanged(FlightInventoryChangedEvent event) {
+        String flightId = event.flight().getId();
+        inFlight.remove(flightId);
+        if(nearCache != null) {
+            nearCache.invalidate(flightId);
+        }
+    }
+
+    double collapseRatio() {
+        double collapsed = coalesced.count() + nearCacheHits.count();
+        double total = collapsed + queries.count();
+        return total == 0 ? 0 : collapsed / total;
+    }
+}
@@ -0,0 +1,102 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Size bounded, TTL evicted cache of the lean search results per route-day.
+// Hit/miss/eviction stats are published as the "flightSearch" cache metrics (/actuator/metrics/cache.gets).
+@Component
+public class FlightSearchCache {
+
+    public record RouteDayKey(String fromPlace, String toPlace, LocalDate scheduleDate) {
+        
+        public static RouteDayKey of(Flight flight) {
+            return new RouteDayKey(flight.getFromPlace(), flight.getToPlace(), flight.getScheduleDate());
+        }
+    }
+
+    private final AsyncCache<RouteDayKey, List<FlightSearchResult>> cache;
+
+    @Autowired
+    public FlightSearchCache(@Value("${app.search-cache.maximum-size:1000}") long maximumSize,
+            @Value("${app.search-cache.ttl:30s}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                // a patched entry keeps the time it was loaded, so what changed on
+                // other instances still shows up within the ttl
+                .expireAfter(Expiry.<RouteDayKey, List<FlightSearchResult>>creating((key, results) -> ttl))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "flightSearch");
+    }
+
+    public Flux<FlightSearchResult> get(RouteDayKey key, Function<RouteDayKey, Flux<FlightSearchResult>> loader) {
+        // concurrent misses for the same key share the one future Caffeine keeps per key,
+        // so only the first caller actually queries Mongo
+        return Mono.fromFuture(() -> cache.get(key, (k, executor) -> loader.apply(k).collectList().toFuture()), true)
+            .flatMapIterable(Function.identity());
+    }
+
+    // A change on a route-day (new flight, seats taken or given back) patches that flight in the
+    // cached entry instead of dropping it, the busy route-days would otherwise be loaded again after
+    // every booking. Sold out and cancelled flights leave the entry. An entry still loading may miss
+    // the change and is dropped instead.
+    @EventListener
+    public void onInventoryChanged(FlightInventoryChangedEvent event) {
+        Flight flight = event.flight();
+        
+        cache.asMap().computeIfPresent(RouteDayKey.of(flight), (key, future) -> {
+            if(!future.isDone() || future.isCompletedExceptionally()) {
+                return null;
+            }
+            return CompletableFuture.completedFuture(patch(future.join(), flight));
+        });
+    }
+
+    private static List<FlightSearchResult> patch(List<FlightSearchResult> results, Flight flight) {
+        boolean listed = !Boolean.TRUE.equals(flight.getCancelled())
+                && flight.getAvailableSeats() != null && flight.getAvailableSeats() > 0;
+        List<FlightSearchResult> patched = new ArrayList<>(results.size() + 1);
+        boolean found = false;
+        
+        for(FlightSearchResult result : results) {
+            if(!result.id().equals(flight.getId())) {
+                patched.add(result);
+            } else if(listed) {
+                patched.add(FlightSearchResult.of(flight));
+                found = true;
+            }
+        }
+        if(listed && !found) {
+            patched.add(FlightSearchResult.of(flight));
+        }
+        return List.copyOf(patched);
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+}
@@ -1,32 +1,96 @@
 package com.flight.app.service.impl;
 
+import com.flight.app.dto.ConnectionSearchRequest;
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FlightIngestResult;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.dto.Itinerary;
+import com.flight.app.dto.SeatAvailability;
+import com.flight.app.dto.SeatAvailabilityUpdate;
 import com.flight.app.entity.Flight;
+import com.flight.app.entity.LowestFare;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.exception.FlightUnavailableException;
+import com.flight.app.exception.ResourceNotFoundException;
 import com.flight.app.repository.FlightRepository;
 import com.flight.app.service.FlightService;
+import com.flight.app.service.SeatInventory;
+import com.flight.app.service.impl.FlightSearchCache.RouteDayKey;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class FlightServiceImpl implements FlightService {
 
     private final FlightRepository flightRepository;
+    private final SeatInventory seatInventory;
+    private final FlightSearchCache searchCache;
+    private final FlightLookupCoalescer lookupCoalescer;
+    private final RouteGraph routeGraph;
+    private final LowestFareIndex lowestFareIndex;
+    private final SeatAvailabilityBroadcaster availabilityBroadcaster;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final int bulkBatchSize;
 
     @Autowired
-    public FlightServiceImpl(FlightRepository flightRepository) {
+    public FlightServiceImpl(FlightRepository flightRepository, SeatInventory seatInventory, 
+            FlightSearchCache searchCache, FlightLookupCoalescer lookupCoalescer, RouteGraph routeGraph,
+            LowestFareIndex lowestFareIndex, SeatAvailabilityBroadcaster availabilityBroadcaster,
+            ApplicationEventPublisher eventPublisher, Validator validator,
+            @Value("${app.inventory.bulk.batch-size:500}") int bulkBatchSize) {
+        if(bulkBatchSize < 1) {
+            throw new IllegalArgumentException("app.inventory.bulk.batch-size must be at least 1.");
+        }
         this.flightRepository = flightRepository;
+        this.seatInventory = seatInventory;
+        this.searchCache = searchCache;
+        this.lookupCoalescer = lookupCoalescer;
+        this.routeGraph = routeGraph;
+        this.lowestFareIndex = lowestFareIndex;
+        this.availabilityBroadcaster = availabilityBroadcaster;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.bulkBatchSize = bulkBatchSize;
     }
 
     private Mono<Flight> validateFlight(Flight flight) {
+        String violation = checkFlightRules(flight);
+        if(violation != null) {
+            return Mono.error(new IllegalArgumentException(violation));
+        }
+        
+        return Mono.just(flight);
+    }
+    
+    // returns the first broken business rule, null when the flight is fine
+    private String checkFlightRules(Flight flight) {
         // fromPlace and toPlace cannot be the same
         if(flight.getFromPlace().equalsIgnoreCase(flight.getToPlace())) {
-            return Mono.error(new IllegalArgumentException("Departure and arrival places cannot be the same."));
+            return "Departure and arrival places cannot be the same.";
         }
 
         // Arrival time must be after Departure time
@@ -34,23 +98,149 @@ public class FlightServiceImpl implements FlightService {
         LocalTime arrival = flight.getArrivalTime();
 
         if(!arrival.isAfter(departure)) {
-            return Mono.error(new IllegalArgumentException("Arrival time must be after the departure time."));
+            return "Arrival time must be after the departure time.";
         }
         
-        return Mono.just(flight);
+        // the seat map is sized from it, callers that skip bean validation would get a 500
+        if(flight.getTotalSeats() == null || flight.getTotalSeats() < 1) {
+            return "Total seats must be at least 1.";
+        }
+        // and it has to fit the rows a seat number can address
+        int seatsPerRow = SeatMap.seatsPerRow(flight);
+        if(flight.getTotalSeats() > SeatMap.MAX_ROWS * seatsPerRow) {
+            return "Total seats cannot be more than " + SeatMap.MAX_ROWS * seatsPerRow 
+                + " for " + seatsPerRow + " seats per row.";
+        }
+        
+        return null;
+    }
+    
+    // new flights start with every seat free, a cancellation only ever comes from markCancelled
+    private void initSeats(Flight flight) {
+        flight.setCancelled(null);
+        flight.setAvailableSeats(flight.getTotalSeats());
+        flight.setSeatsPerRow(SeatMap.seatsPerRow(flight));
+        flight.setSeatMap(SeatMap.initialBlocks(flight, new BitSet()));
+    }
+    
+    // a flight document was written directly, keep the seat inventory in step
+    // and let caches and other listeners react to the stored state
+    private void publishInventoryChange(Flight flight) {
+        seatInventory.track(flight);
+        publishSeatChange(flight);
+    }
+
+    // the seat inventory made this change itself, only tell the listeners
+    private void publishSeatChange(Flight flight) {
+        eventPublisher.publishEvent(new FlightInventoryChangedEvent(flight));
     }
 
     @Override
     public Mono<String> addFlight(Flight flight) {
         return validateFlight(flight)
             .map(f -> {
-                f.setAvailableSeats(f.getTotalSeats());
+                initSeats(f);
                 return f;
             })
             .flatMap(flightRepository::save)
+            .doOnNext(this::publishInventoryChange)
             .map(savedFlight -> savedFlight.getId());
     }
     
+    @Override
+    public Flux<FlightIngestResult> addFlights(Flux<Flight> flights) {
+        // validation runs per item as the upload streams in, the explicit prefetch of 1 pins the
+        // upstream demand to one batch size so at most one batch is filling while another is inserted
+        return flights.index()
+            .map(indexed -> new IngestItem(indexed.getT1(), indexed.getT2(), checkIngestedFlight(indexed.getT2())))
+            .buffer(bulkBatchSize)
+            .concatMap(this::insertBatch, 1);
+    }
+    
+    // one flight of a bulk upload, error is null when it passed validation
+    private record IngestItem(long index, Flight flight, String error) {
+    }
+    
+    private String checkIngestedFlight(Flight flight) {
+        // bean validation is normally done by @Valid in the controller, the bulk body is a stream
+        Set<ConstraintViolation<Flight>> violations = validator.validate(flight);
+        if(!violations.isEmpty()) {
+            return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+        }
+        return checkFlightRules(flight);
+    }
+    
+    private Flux<FlightIngestResult> insertBatch(List<IngestItem> batch) {
+        Set<String> suppliedIds = batch.stream()
+            .filter(item -> item.error() == null && item.flight().getId() != null)
+            .map(item -> item.flight().getId())
+            .collect(Collectors.toSet());
+        
+        // one lookup per batch, so duplicates are rejected up front instead of failing the insertMany
+        Mono<Set<String>> existingIds = suppliedIds.isEmpty() 
+            ? Mono.just(Set.of()) 
+            : flightRepository.findAllById(suppliedIds).map(Flight::getId).collect(Collectors.toSet());
+        
+        return existingIds.flatMapMany(existing -> {
+            // item index -> reason it was rejected
+            Map<Long, String> rejections = new HashMap<>();
+            Map<String, Long> batchIds = new HashMap<>();
+            List<Flight> flightsToInsert = new ArrayList<>();
+            for(IngestItem item : batch) {
+                Flight flight = item.flight();
+                if(item.error() != null) {
+                    rejections.put(item.index(), item.error());
+                    continue;
+                }
+                if(flight.getId() == null) {
+                    flight.setId(new ObjectId().toHexString());
+                }
+                if(existing.contains(flight.getId()) || batchIds.containsKey(flight.getId())) {
+                    rejections.put(item.index(), "Flight with ID " + flight.getId() + " already exists.");
+                    continue;
+                }
+                initSeats(flight);
+                batchIds.put(flight.getId(), item.index());
+                flightsToInsert.add(flight);
+            }
+            
+            Mono<Void> insert = flightsToInsert.isEmpty() 
+                ? Mono.empty() 
+                : flightRepository.insert(flightsToInsert)
+                    .doOnNext(this::publishInventoryChange)
+                    .then()
+                    // one bad document fails the whole insertMany, retry one by one to find it
+                    .onErrorResume(e -> insertOneByOne(flightsToInsert, batchIds, rejections));
+            
+            return insert.thenMany(Flux.fromIterable(batch)
+                .map(item -> rejections.containsKey(item.index())
+                    ? FlightIngestResult.rejected(item.index(), rejections.get(item.index()))
+                    : FlightIngestResult.accepted(item.index(), item.flight().getId())));
+        });
+    }
+    
+    private Mono<Void> insertOneByOne(List<Flight> flights, Map<String, Long> batchIds, Map<Long, String> rejections) {
+        return Flux.fromIterable(flights)
+            .concatMap(flight -> flightRepository.insert(flight)
+                .doOnNext(this::publishInventoryChange)
+                .then()
+                .onErrorResume(e -> {
+                    // ids were checked before the batch, so a duplicate here was written by the
+                    // part of the insertMany that got through before it failed
+                    if(e instanceof DuplicateKeyException) {
+                        publishInventoryChange(flight);
+                    } 
+                    else {
+                        rejections.put(batchIds.get(flight.getId()), "Flight could not be stored: " + e.getMessage());
+                    }
+                    return Mono.empty();
+                }))
+            .then();
+    }
+    
     @Override
     public Flux<Flight> searchFlights(String fromPlace, String toPlace, LocalDate scheduleDate) {
         return flightRepository.findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan(
@@ -61,15 +251,130 @@ public class FlightServiceImpl implements FlightService {
         );
     }
     
+    @Override
+    public Flux<FlightSearchResult> searchFlightResults(String fromPlace, String toPlace, LocalDate scheduleDate) {
+        return searchCache.get(new RouteDayKey(fromPlace, toPlace, scheduleDate), 
+            key -> flightRepository.findSearchResults(
+                key.fromPlace(),
+                key.toPlace(),
+                key.scheduleDate(),
+                0 // flights with 1 or more available seats
+        ));
+    }
+    
+    @Override
+    public Flux<FlightSearchResult> streamFlightResults(String fromPlace, String toPlace, LocalDate scheduleDate) {
+        return flightRepository.findSearchResults(fromPlace, toPlace, scheduleDate, 0);
+    }
+    
+    @Override
+    public Flux<FareCalendarDay> getFareCalendar(String fromPlace, String toPlace, LocalDate journeyDate, 
+            int flexDays, int passengers) {
+        // days that are already over have nothing left to sell
+        LocalDate today = LocalDate.now();
+        LocalDate fromDate = journeyDate.minusDays(flexDays);
+        if(fromDate.isBefore(today)) {
+            fromDate = today;
+        }
+        LocalDate toDate = journeyDate.plusDays(flexDays);
+        if(toDate.isBefore(fromDate)) {
+            return Flux.empty();
+        }
+        
+        return flightRepository.findFareCalendar(fromPlace, toPlace, fromDate, toDate, passengers);
+    }
+    
+    @Override
+    public Mono<LowestFare> getLowestFare(String fromPlace, String toPlace, YearMonth month) {
+        // straight from memory, kept current by LowestFareIndex
+        return Mono.fromSupplier(() -> lowestFareIndex.lowest(fromPlace, toPlace, month));
+    }
+    
+    @Override
+    public Flux<LowestFare> getLowestFares(String fromPlace, String toPlace, int months) {
+        YearMonth current = YearMonth.now();
+        return Flux.range(0, months)
+            .mapNotNull(offset -> lowestFareIndex.lowest(fromPlace, toPlace, current.plusMonths(offset)));
+    }
+    
+    @Override
+    public Flux<Itinerary> searchConnections(ConnectionSearchRequest request) {
+        if(request.getMinLayoverMinutes() > request.getMaxLayoverMinutes()) {
+            return Flux.error(new IllegalArgumentException("Minimum layover cannot be longer than the maximum layover."));
+        }
+        RouteGraph.Constraints constraints = new RouteGraph.Constraints(request.getPassengers(), request.getMaxStops(),
+                Duration.ofMinutes(request.getMinLayoverMinutes()), Duration.ofMinutes(request.getMaxLayoverMinutes()));
+        
+        // all in memory, no query per leg
+        return Flux.defer(() -> Flux.fromIterable(routeGraph.connections(
+                request.getFromPlace(), request.getToPlace(), request.getJourneyDate(), constraints)));
+    }
+    
     @Override
     public Mono<Flight> getFlightById(String flightId) {
-        return flightRepository.findById(flightId);
+        // a burst of lookups for the same flight shares one findById
+        return lookupCoalescer.get(flightId, flightRepository::findById);
     }
     
     @Override
     public Mono<String> updateFlightInventory(Flight flight) {
         return flightRepository.save(flight)
+            .doOnNext(this::publishInventoryChange)
             .map(savedFlight -> "Flight inventory updated for ID: " + savedFlight.getId())
             .onErrorResume(e -> Mono.just("Flight inventory update failed: " + e.getMessage()));
     }
+    
+    @Override
+    public Mono<Flight> reserveSeats(String flightId, BitSet seats) {
+        return seatInventory.reserve(flightId, seats)
+            .doOnNext(this::publishSeatChange);
+    }
+    
+    @Override
+    public Mono<Flight> releaseSeats(String flightId, int seats, BitSet seatIndexes) {
+        return seatInventory.release(flightId, seats, seatIndexes)
+            .doOnNext(this::publishSeatChange);
+    }
+    
+    @Override
+    public Mono<Flight> cancelFlight(String flightId) {
+        // written outside the seat inventory, the ledger engine must forget its counts
+        return flightRepository.markCancelled(flightId)
+            .doOnNext(this::publishInventoryChange);
+    }
+    
+    @Override
+    public Mono<SeatAvailability> getSeatAvailability(String flightId) {
+        return seatInventory.seatMap(flightId)
+            .switchIfEmpty(Mono.error(new ResourceNotFoundException("Flight with ID " + flightId + " not found.")))
+            .flatMap(flight -> {
+                if(flight.getSeatMap() == null) {
+                    // stored before seat maps, SeatMapBackfill has not reached it yet
+                    return Mono.error(new FlightUnavailableException(
+                            "Seat map of flight " + flightId + " is not available yet."));
+                }
+                return Mono.just(new SeatAvailability(flightId, SeatMap.seatsPerRow(flight), 
+                        flight.getAvailableSeats(), SeatMap.freeSeats(flight)));
+            });
+    }
+    
+    @Override
+    public Flux<SeatAvailabilityUpdate> watchFlightAvailability(String flightId) {
+        // both subscribed at once, a change made while the snapshot is read is delivered after it.
+        // Prefetch 1 so updates are conflated by the broadcaster, not queued in here.
+        return Flux.mergeSequential(1,
+            getFlightById(flightId)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Flight with ID " + flightId + " not found.")))
+                .map(SeatAvailabilityUpdate::of),
+            availabilityBroadcaster.watchFlight(flightId));
+    }
+    
+    @Override
+    public Flux<SeatAvailabilityUpdate> watchRouteAvailability(String fromPlace, String toPlace, LocalDate scheduleDate) {
+        return Flux.mergeSequential(1,
+            searchFlightResults(fromPlace, toPlace, scheduleDate)
+                .map(result -> new SeatAvailabilityUpdate(result.id(), fromPlace, toPlace, scheduleDate, 
+                        result.availableSeats())),
+            availabilityBroadcaster.watchRouteDay(fromPlace, toPlace, scheduleDate));
+    }
 }
@@ -0,0 +1,41 @@
+package com.flight.app.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.flight.app.entity.Booking;
+
+// Continuation token of the paged booking history: the (bookingDate, pnr) key of the
+// last booking on the page, base64url encoded so clients treat it as opaque
+record HistoryCursor(LocalDateTime bookingDate, String pnr) {
+
+    static final HistoryCursor FIRST_PAGE = new HistoryCursor(null, null);
+
+    private static final String SEPARATOR = "|";
+
+    static HistoryCursor of(Booking booking) {
+        return new HistoryCursor(booking.getBookingDate(), booking.getPnr());
+    }
+
+    static HistoryCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if(separator < 0) {
+                throw new IllegalArgumentException("Invalid history cursor.");
+            }
+            return new HistoryCursor(LocalDateTime.parse(decoded.substring(0, separator)), 
+                    decoded.substring(separator + 1));
+        } 
+        catch(IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid history cursor.");
+        }
+    }
+
+    String encode() {
+        String raw = bookingDate + SEPARATOR + pnr;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,24 @@
+package com.flight.app.service.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.service.OutboxSink;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+// Default sink: one log line per event, until real consumers are plugged in
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink.log.enabled", havingValue = "true", matchIfMissing = true)
+public class LogOutboxSink implements OutboxSink {
+
+    @Override
+    public Mono<Void> publish(OutboxEvent event) {
+        return Mono.fromRunnable(() -> log.info("Outbox event {} {} PNR {} flight {} for {}", event.getId(),
+                event.getType(), event.getPnr(), event.getFlightId(),
+                event.getBooking() == null ? null : event.getBooking().getUserEmail()));
+    }
+}
@@ -0,0 +1,289 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.LowestFare;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.repository.FlightRepository;
+import com.flight.app.repository.LowestFareRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Lowest fare per (fromPlace, toPlace, month) over the upcoming flights that still have seats.
+// Every month keeps its flights ordered by price, a change of one flight (added, price changed,
+// sold out, seats given back) moves only that flight and the next cheapest one takes over
+// without looking at the rest of the month. Reads are a map lookup.
+// Changed months are written to lowest_fares in the background. After a restart the stored
+// values answer until the index has been rebuilt from the flights collection.
+@Slf4j
+@Component
+public class LowestFareIndex {
+
+    public record RouteMonthKey(String fromPlace, String toPlace, YearMonth month) {
+
+        static RouteMonthKey of(Flight flight) {
+            return new RouteMonthKey(flight.getFromPlace(), flight.getToPlace(), YearMonth.from(flight.getScheduleDate()));
+        }
+
+        String id() {
+            return fromPlace + "|" + toPlace + "|" + month;
+        }
+    }
+
+    // cheapest first, earlier day and then id break ties so every flight has its own slot
+    private record Fare(double price, LocalDate scheduleDate, String flightId) implements Comparable<Fare> {
+
+        @Override
+        public int compareTo(Fare other) {
+            int byPrice = Double.compare(price, other.price);
+            if(byPrice != 0) {
+                return byPrice;
+            }
+            int byDate = scheduleDate.compareTo(other.scheduleDate);
+            return byDate != 0 ? byDate : flightId.compareTo(other.flightId);
+        }
+    }
+
+    // the bookable flights of one route-month, `lowest` is what readers see
+    private static final class MonthFares {
+        private final TreeSet<Fare> fares = new TreeSet<>();
+        private final Map<String, Fare> byFlight = new HashMap<>();
+        private volatile LowestFare lowest;
+    }
+
+    private final LowestFareRepository lowestFareRepository;
+    private final FlightRepository flightRepository;
+    private final Duration flushInterval;
+    private final Map<RouteMonthKey, MonthFares> months = new ConcurrentHashMap<>();
+    // route-month a flight is filed under, a changed date or route moves it
+    private final Map<String, RouteMonthKey> flightMonths = new ConcurrentHashMap<>();
+    private final Set<RouteMonthKey> dirtyMonths = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<LocalDate> prunedUntil = new AtomicReference<>(LocalDate.MIN);
+    // stored values of the last run, only read until the rebuild is done
+    private volatile Map<String, LowestFare> restored = Map.of();
+    private volatile boolean rebuilt;
+    private Disposable flusher;
+
+    @Autowired
+    public LowestFareIndex(LowestFareRepository lowestFareRepository, FlightRepository flightRepository,
+            @Value("${app.lowest-fare.flush-interval:1s}") Duration flushInterval) {
+        this.lowestFareRepository = lowestFareRepository;
+        this.flightRepository = flightRepository;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    public void startFlusher() {
+        flusher = Flux.interval(flushInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> flush()
+                .onErrorResume(e -> {
+                    log.warn("Lowest fare flush failed, will retry: {}", e.getMessage());
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    @PreDestroy
+    public void stopFlusher() {
+        flusher.dispose();
+        try {
+            flush().block(Duration.ofSeconds(10));
+        }
+        catch(RuntimeException e) {
+            log.warn("Final lowest fare flush failed, it is rebuilt on the next start: {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        // in the background, the stored values answer in the meantime
+        restore().then(rebuild()).subscribe(
+            count -> log.info("Lowest fare index rebuilt from {} flights", count),
+            e -> log.warn("Lowest fare index rebuild failed: {}", e.getMessage()));
+    }
+
+    Mono<Void> restore() {
+        return lowestFareRepository.findAll()
+            .collectMap(LowestFare::getId)
+            .doOnNext(stored -> restored = stored)
+            .then();
+    }
+
+    Mono<Long> rebuild() {
+        return flightRepository.findByScheduleDateGreaterThanEqual(LocalDate.now())
+            .doOnNext(flight -> update(flight, false))
+            .count()
+            .doOnNext(count -> {
+                // only months that differ from what is stored need a write
+                restored.values().forEach(stored -> {
+                    RouteMonthKey key = new RouteMonthKey(stored.getFromPlace(), stored.getToPlace(),
+                            YearMonth.parse(stored.getMonth()));
+                    if(stored.equals(indexed(key))) {
+                        dirtyMonths.remove(key);
+                    }
+                    else {
+                        dirtyMonths.add(key);
+                    }
+                });
+                rebuilt = true;
+                restored = Map.of();
+            });
+    }
+
+    @EventListener
+    public void onInventoryChanged(FlightInventoryChangedEvent event) {
+        update(event.flight(), true);
+    }
+
+    private void update(Flight flight, boolean replace) {
+        pruneDepartedDays();
+        RouteMonthKey key = RouteMonthKey.of(flight);
+        RouteMonthKey previous = replace 
+                ? flightMonths.put(flight.getId(), key) 
+                : flightMonths.putIfAbsent(flight.getId(), key);
+        if(previous != null && !replace) {
+            // changed while the rebuild was loading, already filed with its newer state
+            return;
+        }
+        if(previous != null && !previous.equals(key)) {
+            MonthFares previousMonth = months.get(previous);
+            if(previousMonth != null) {
+                refile(previous, previousMonth, flight.getId(), null);
+            }
+        }
+
+        Fare fare = bookable(flight)
+                ? new Fare(flight.getPrice(), flight.getScheduleDate(), flight.getId())
+                : null;
+        refile(key, months.computeIfAbsent(key, k -> new MonthFares()), flight.getId(), fare);
+    }
+
+    private static boolean bookable(Flight flight) {
+        return flight.getPrice() != null && flight.getAvailableSeats() != null && flight.getAvailableSeats() > 0
+                && !flight.getScheduleDate().isBefore(LocalDate.now());
+    }
+
+    // O(log n) in the flights of the month, the month is never scanned
+    private void refile(RouteMonthKey key, MonthFares month, String flightId, Fare fare) {
+        synchronized(month) {
+            Fare old = fare == null ? month.byFlight.remove(flightId) : month.byFlight.put(flightId, fare);
+            if(old != null) {
+                month.fares.remove(old);
+            }
+            if(fare != null) {
+                month.fares.add(fare);
+            }
+            publishLowest(key, month);
+        }
+    }
+
+    // caller holds the month lock
+    private void publishLowest(RouteMonthKey key, MonthFares month) {
+        LowestFare lowest = month.fares.isEmpty() ? null : lowestFare(key, month.fares.first());
+        if(!Objects.equals(lowest, month.lowest)) {
+            month.lowest = lowest;
+            dirtyMonths.add(key);
+        }
+    }
+
+    private static LowestFare lowestFare(RouteMonthKey key, Fare fare) {
+        return new LowestFare(key.id(), key.fromPlace(), key.toPlace(), key.month().toString(),
+                fare.price(), fare.flightId(), fare.scheduleDate());
+    }
+
+    // once a day drop the flights of days that are over, their month moves on to the next cheapest
+    private void pruneDepartedDays() {
+        LocalDate today = LocalDate.now();
+        LocalDate pruned = prunedUntil.get();
+        if(!pruned.isBefore(today) || !prunedUntil.compareAndSet(pruned, today)) {
+            return;
+        }
+        months.forEach((key, month) -> {
+            synchronized(month) {
+                month.fares.removeIf(fare -> {
+                    if(!fare.scheduleDate().isBefore(today)) {
+                        return false;
+                    }
+                    month.byFlight.remove(fare.flightId());
+                    flightMonths.remove(fare.flightId(), key);
+                    return true;
+                });
+                publishLowest(key, month);
+            }
+        });
+        months.entrySet().removeIf(entry -> entry.getKey().month().isBefore(YearMonth.from(today)) 
+                && entry.getValue().lowest == null);
+    }
+
+    // null when no flight of the month is bookable
+    public LowestFare lowest(String fromPlace, String toPlace, YearMonth month) {
+        return lowest(new RouteMonthKey(fromPlace, toPlace, month));
+    }
+
+    private LowestFare lowest(RouteMonthKey key) {
+        if(!rebuilt) {
+            LowestFare stored = restored.get(key.id());
+            if(stored != null) {
+                return stored;
+            }
+        }
+        return indexed(key);
+    }
+
+    private LowestFare indexed(RouteMonthKey key) {
+        MonthFares month = months.get(key);
+        return month == null ? null : month.lowest;
+    }
+
+    Mono<Void> flush() {
+        List<RouteMonthKey> keys = new ArrayList<>();
+        for(Iterator<RouteMonthKey> it = dirtyMonths.iterator(); it.hasNext();) {
+            keys.add(it.next());
+            it.remove();
+        }
+
+        // read after the keys were taken out, a change racing with the flush marks the month again
+        List<LowestFare> changed = new ArrayList<>();
+        List<String> emptied = new ArrayList<>();
+        keys.forEach(key -> {
+            MonthFares month = months.get(key);
+            LowestFare lowest = month == null ? null : month.lowest;
+            if(lowest == null) {
+                emptied.add(key.id());
+            }
+            else {
+                changed.add(lowest);
+            }
+        });
+
+        Mono<Void> save = changed.isEmpty() ? Mono.empty() : lowestFareRepository.saveAll(changed).then();
+        Mono<Void> delete = emptied.isEmpty() ? Mono.empty() : lowestFareRepository.deleteAllById(emptied);
+        return save.then(delete)
+            .doOnError(e -> dirtyMonths.addAll(keys));
+    }
+}
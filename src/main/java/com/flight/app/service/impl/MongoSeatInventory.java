@@ -0,0 +1,41 @@
+package com.flight.app.service.impl;
+
+import java.util.BitSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.repository.FlightRepository;
+import com.flight.app.service.SeatInventory;
+
+import reactor.core.publisher.Mono;
+
+// Default engine, every reserve/release is one atomic findAndModify on the flight document
+@Component
+@ConditionalOnProperty(name = "app.inventory.engine", havingValue = "mongo", matchIfMissing = true)
+public class MongoSeatInventory implements SeatInventory {
+
+    private final FlightRepository flightRepository;
+
+    @Autowired
+    public MongoSeatInventory(FlightRepository flightRepository) {
+        this.flightRepository = flightRepository;
+    }
+
+    @Override
+    public Mono<Flight> reserve(String flightId, BitSet seats) {
+        return flightRepository.claimSeats(flightId, seats.cardinality(), seats.toLongArray());
+    }
+
+    @Override
+    public Mono<Flight> release(String flightId, int seats, BitSet seatIndexes) {
+        return flightRepository.releaseSeats(flightId, seats, seatIndexes.toLongArray());
+    }
+
+    @Override
+    public Mono<Flight> seatMap(String flightId) {
+        return flightRepository.findSeatMap(flightId);
+    }
+}
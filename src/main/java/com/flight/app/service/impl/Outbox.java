@@ -0,0 +1,105 @@
+package com.flight.app.service.impl;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.entity.Passenger;
+import com.flight.app.repository.OutboxEventRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+// Writes the side effects of a booking change to the outbox collection in the same pipeline as
+// the change, OutboxRelay delivers them in the background. The booking call waits for one more
+// insert and never for a consumer.
+// With app.outbox.transactions.enabled (replica set only) the change and its events commit in
+// one Mongo transaction. Without, the events are inserted right after the change succeeded and
+// before the caller gets an answer. When that insert fails the change is undone and the caller
+// gets the error, so there is never a stored change without its events. Only a crash between
+// the two writes can still lose the events of that one change.
+@Slf4j
+@Component
+public class Outbox {
+
+    private final OutboxEventRepository outboxRepository;
+    private final Optional<TransactionalOperator> transactions;
+    private final boolean enabled;
+    // nudges the relay, a nudge lost to a concurrent one is picked up by its next poll
+    private final Sinks.Many<Boolean> appended = Sinks.many().multicast().directBestEffort();
+
+    @Autowired
+    public Outbox(OutboxEventRepository outboxRepository, Optional<TransactionalOperator> transactions,
+            @Value("${app.outbox.enabled:true}") boolean enabled) {
+        this.outboxRepository = outboxRepository;
+        this.transactions = transactions;
+        this.enabled = enabled;
+    }
+
+    // Runs the change, then stores its events. events is only asked once the change succeeded,
+    // undo only when the events could not be stored outside a transaction.
+    public <T> Mono<T> write(Mono<T> change, Supplier<List<OutboxEvent>> events, Supplier<Mono<?>> undo) {
+        if(!enabled) {
+            return change;
+        }
+        Mono<T> changeAndEvents = change.singleOptional()
+            .flatMap(result -> insert(events.get(), undo).then(Mono.justOrEmpty(result)));
+        
+        return transactions.map(operator -> operator.transactional(changeAndEvents)).orElse(changeAndEvents)
+            .doOnSuccess(result -> appended.tryEmitNext(true));
+    }
+
+    // In a transaction a failed insert rolls the change back. Without, the change is undone by
+    // hand, so callers give back their side of it (seats) as for a change that failed.
+    private Mono<Void> insert(List<OutboxEvent> events, Supplier<Mono<?>> undo) {
+        Mono<Void> insert = outboxRepository.insert(events).then();
+        if(transactions.isPresent()) {
+            return insert;
+        }
+        return insert.onErrorResume(e -> Mono.defer(undo)
+            .onErrorResume(undoError -> {
+                log.error("Outbox events {} of PNRs {} not stored and the change not undone: {}",
+                        events.stream().map(OutboxEvent::getType).toList(),
+                        events.stream().map(OutboxEvent::getPnr).toList(), undoError.getMessage());
+                return Mono.empty();
+            })
+            .then(Mono.error(e)));
+    }
+
+    // every event that was just written
+    Flux<Boolean> appended() {
+        return appended.asFlux();
+    }
+
+    public static OutboxEvent event(OutboxEvent.Type type, Booking booking) {
+        Instant now = Instant.now();
+        return new OutboxEvent(null, type, booking.getPnr(), booking.getFlightId(), snapshot(booking), now,
+                OutboxEvent.Status.PENDING, 0, now, null);
+    }
+
+    public static List<OutboxEvent> events(OutboxEvent.Type type, List<Booking> bookings) {
+        return bookings.stream().map(booking -> event(type, booking)).toList();
+    }
+
+    // the caller keeps working with its booking, the event must not change with it
+    private static Booking snapshot(Booking booking) {
+        List<Passenger> passengers = booking.getPassengers() == null ? null : new ArrayList<>(booking.getPassengers()
+                .stream()
+                .map(p -> new Passenger(p.getId(), p.getName(), p.getGender(), p.getAge(), p.getSeatNumber()))
+                .toList());
+        return new Booking(booking.getPnr(), booking.getUserName(), booking.getUserEmail(), booking.getMobileNumber(),
+                booking.getBookingDate(), booking.getNumberOfSeats(), booking.getMealOpted(), booking.getTotalCost(),
+                booking.getFlightId(), booking.getJourneyDate(), passengers);
+    }
+}
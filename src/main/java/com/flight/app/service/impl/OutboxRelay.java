@@ -0,0 +1,244 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.repository.OutboxEventRepository;
+import com.flight.app.service.OutboxSink;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Drains the outbox in the background: every poll-interval, and right after Outbox wrote events
+// on this instance, the due events are read in batches of batch-size and handed to every
+// OutboxSink, up to `concurrency` at a time. Each event is claimed with a lease first, so relays
+// on several instances never work on the same one and an event of a relay that died becomes due
+// again when the lease ends.
+// The events of one booking go out in createdAt order: in a batch one after the other, and the
+// ones behind a failed delivery or behind an older event still PENDING outside the batch (leased
+// by another relay, waiting for its backoff) are postponed until that one is due again.
+// A failed delivery is retried with exponential backoff (initial-backoff doubling up to
+// max-backoff), after max-attempts the event is kept as FAILED. Delivered events are deleted.
+// Metrics: outbox.delivered, outbox.retried, outbox.failed
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxRepository;
+    private final Outbox outbox;
+    private final List<OutboxSink> sinks;
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final Counter delivered;
+    private final Counter retried;
+    private final Counter failed;
+    private Disposable relay;
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxRepository, Outbox outbox, List<OutboxSink> sinks,
+            @Value("${app.outbox.relay.enabled:true}") boolean enabled,
+            @Value("${app.outbox.relay.poll-interval:500ms}") Duration pollInterval,
+            @Value("${app.outbox.relay.batch-size:100}") int batchSize,
+            @Value("${app.outbox.relay.concurrency:8}") int concurrency,
+            @Value("${app.outbox.relay.max-attempts:10}") int maxAttempts,
+            @Value("${app.outbox.relay.initial-backoff:1s}") Duration initialBackoff,
+            @Value("${app.outbox.relay.max-backoff:5m}") Duration maxBackoff,
+            @Value("${app.outbox.relay.lease:30s}") Duration lease,
+            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.outbox = outbox;
+        this.sinks = sinks;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        this.delivered = Counter.builder("outbox.delivered")
+            .description("Outbox events taken by every sink")
+            .register(meterRegistry);
+        this.retried = Counter.builder("outbox.retried")
+            .description("Failed outbox deliveries scheduled for another attempt")
+            .register(meterRegistry);
+        this.failed = Counter.builder("outbox.failed")
+            .description("Outbox events given up after max-attempts")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if(!enabled) {
+            return;
+        }
+        if(sinks.isEmpty()) {
+            log.warn("No outbox sink configured, outbox events stay in the outbox");
+            return;
+        }
+        // ticks arriving while a drain runs are dropped, the running drain goes on until nothing is due
+        relay = Flux.merge(Flux.interval(pollInterval).map(tick -> true), outbox.appended())
+            .onBackpressureDrop()
+            .concatMap(tick -> drain()
+                .onErrorResume(e -> {
+                    log.warn("Outbox relay pass failed: {}", e.getMessage());
+                    return Mono.empty();
+                }), 0)
+            .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if(relay != null) {
+            relay.dispose();
+        }
+    }
+
+    // Delivers batches until a batch comes back short, the number of events delivered
+    public Mono<Long> drain() {
+        return drainBatch()
+            .expand(batch -> batch.found() == batchSize ? drainBatch() : Mono.empty())
+            .map(Batch::delivered)
+            .reduce(0L, Long::sum);
+    }
+
+    private record Batch(int found, long delivered) {
+    }
+
+    private Mono<Batch> drainBatch() {
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plus(lease);
+
+        return outboxRepository.findDue(now, batchSize)
+            .collectList()
+            .flatMap(due -> Flux.fromIterable(due)
+                .flatMap(event -> outboxRepository.claim(event.getId(), now, leaseUntil), concurrency)
+                .collectList()
+                .flatMap(claimed -> olderPending(claimed)
+                    .flatMap(older -> Flux.fromIterable(byBooking(claimed))
+                        .flatMap(events -> {
+                            OutboxEvent blocker = older.get(events.get(0).getPnr());
+                            // checked again on a later poll when the older one is due already
+                            return blocker == null ? deliverInOrder(events)
+                                : postpone(events, latest(blocker.getNextAttemptAt(), now.plus(pollInterval)));
+                        }, concurrency)
+                        .collectList()))
+                .flatMap(deliveredIds -> outboxRepository.deleteAllById(deliveredIds)
+                    .thenReturn(new Batch(due.size(), deliveredIds.size()))));
+    }
+
+    // in createdAt order per booking
+    private static List<List<OutboxEvent>> byBooking(List<OutboxEvent> events) {
+        Map<String, List<OutboxEvent>> byPnr = new LinkedHashMap<>();
+        events.stream()
+            .sorted(Comparator.comparing(OutboxEvent::getCreatedAt))
+            .forEach(event -> byPnr.computeIfAbsent(event.getPnr(), pnr -> new ArrayList<>()).add(event));
+        return new ArrayList<>(byPnr.values());
+    }
+
+    // Per booking of the batch the PENDING event outside it that is older than its events in the
+    // batch and due first, one query for the whole batch
+    private Mono<Map<String, OutboxEvent>> olderPending(List<OutboxEvent> claimed) {
+        if(claimed.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        Set<String> claimedIds = claimed.stream().map(OutboxEvent::getId).collect(Collectors.toSet());
+        Map<String, Instant> oldestClaimed = claimed.stream()
+            .collect(Collectors.toMap(OutboxEvent::getPnr, OutboxEvent::getCreatedAt, 
+                    (a, b) -> a.isBefore(b) ? a : b));
+
+        return outboxRepository.findByPnrInAndStatus(oldestClaimed.keySet(), OutboxEvent.Status.PENDING)
+            .filter(event -> !claimedIds.contains(event.getId()) 
+                    && event.getCreatedAt().isBefore(oldestClaimed.get(event.getPnr())))
+            .collect(Collectors.toMap(OutboxEvent::getPnr, Function.identity(), 
+                    (a, b) -> a.getNextAttemptAt().isBefore(b.getNextAttemptAt()) ? a : b));
+    }
+
+    // The ids of the delivered events of one booking. The events after a failed one wait for its
+    // next attempt, once it was given up they go out.
+    private Flux<String> deliverInOrder(List<OutboxEvent> events) {
+        if(events.isEmpty()) {
+            return Flux.empty();
+        }
+        OutboxEvent event = events.get(0);
+        List<OutboxEvent> later = events.subList(1, events.size());
+
+        return deliver(event)
+            .flatMapMany(failure -> failure
+                .map(failed -> failed.getStatus() == OutboxEvent.Status.PENDING 
+                        ? postpone(later, failed.getNextAttemptAt()) 
+                        : deliverInOrder(later))
+                .orElseGet(() -> Flux.concat(Mono.just(event.getId()), deliverInOrder(later))));
+    }
+
+    // empty Optional when every sink took the event, otherwise the event with the failure recorded
+    private Mono<Optional<OutboxEvent>> deliver(OutboxEvent event) {
+        return Flux.fromIterable(sinks)
+            .concatMap(sink -> sink.publish(event))
+            .then()
+            // a delivery running past the lease could meet another relay's attempt
+            .timeout(lease)
+            .then(Mono.fromCallable(() -> {
+                delivered.increment();
+                return Optional.<OutboxEvent>empty();
+            }))
+            .onErrorResume(e -> recordFailure(event, e).map(Optional::of));
+    }
+
+    private Flux<String> postpone(List<OutboxEvent> events, Instant nextAttemptAt) {
+        return Flux.fromIterable(events)
+            .concatMap(event -> outboxRepository.postpone(event.getId(), nextAttemptAt))
+            .thenMany(Flux.empty());
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private Mono<OutboxEvent> recordFailure(OutboxEvent event, Throwable error) {
+        int attempts = event.getAttempts() + 1;
+        String message = String.valueOf(error.getMessage());
+        if(attempts >= maxAttempts) {
+            failed.increment();
+            log.error("Outbox event {} {} PNR {} failed {} times, giving up: {}", event.getId(), event.getType(),
+                    event.getPnr(), attempts, message);
+            return outboxRepository.recordFailure(event.getId(), OutboxEvent.Status.FAILED, attempts, null, message);
+        }
+        retried.increment();
+        return outboxRepository.recordFailure(event.getId(), OutboxEvent.Status.PENDING, attempts,
+                Instant.now().plus(backoff(attempts)), message);
+    }
+
+    // initialBackoff, 2x, 4x ... up to maxBackoff
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+}
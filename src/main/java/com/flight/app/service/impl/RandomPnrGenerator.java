@@ -0,0 +1,20 @@
+package com.flight.app.service.impl;
+
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.service.PnrGenerator;
+
+// The original generator: 6 hex characters of a random UUID (16.7M values, collisions
+// become likely after a few thousand bookings). Kept only for comparison, app.pnr.generator=random
+@Component
+@ConditionalOnProperty(name = "app.pnr.generator", havingValue = "random")
+public class RandomPnrGenerator implements PnrGenerator {
+
+    @Override
+    public String next() {
+        return "CHUBBFLIGHT" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+    }
+}
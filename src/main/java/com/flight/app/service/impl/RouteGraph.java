@@ -0,0 +1,265 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.dto.Itinerary;
+import com.flight.app.dto.ItineraryLeg;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.repository.FlightRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+// In-memory graph of upcoming flights, edges fromPlace -> toPlace indexed by (fromPlace, scheduleDate).
+// Loaded once at startup and kept current from FlightInventoryChangedEvent, so connecting
+// itineraries are searched without any query per leg.
+// Metric: route.graph.legs
+@Slf4j
+@Component
+public class RouteGraph {
+
+    private static final int MAX_RESULTS = 50;
+    private static final Comparator<Itinerary> BY_DURATION_AND_PRICE = Comparator
+            .comparingLong(Itinerary::durationMinutes)
+            .thenComparingDouble(Itinerary::totalPrice);
+
+    public record Constraints(int seats, int maxStops, Duration minLayover, Duration maxLayover) {
+    }
+
+    private record DepartureKey(String fromPlace, LocalDate scheduleDate) {
+    }
+
+    private record RouteKey(String fromPlace, String toPlace, LocalDate scheduleDate) {
+    }
+
+    // legs of a day ordered by departure, so a layover window is a range lookup
+    private record Slot(LocalTime departureTime, String flightId) implements Comparable<Slot> {
+
+        static Slot of(ItineraryLeg leg) {
+            return new Slot(leg.departureTime(), leg.flightId());
+        }
+
+        @Override
+        public int compareTo(Slot other) {
+            int byTime = departureTime.compareTo(other.departureTime);
+            return byTime != 0 ? byTime : flightId.compareTo(other.flightId);
+        }
+    }
+
+    private final FlightRepository flightRepository;
+    private final Map<String, ItineraryLeg> legs = new ConcurrentHashMap<>();
+    private final Map<DepartureKey, NavigableMap<Slot, ItineraryLeg>> departures = new ConcurrentHashMap<>();
+    // same legs by route, the last leg of an itinerary only needs the ones to the destination
+    private final Map<RouteKey, NavigableMap<Slot, ItineraryLeg>> routes = new ConcurrentHashMap<>();
+    private final AtomicReference<LocalDate> prunedUntil = new AtomicReference<>(LocalDate.MIN);
+
+    @Autowired
+    public RouteGraph(FlightRepository flightRepository, MeterRegistry meterRegistry) {
+        this.flightRepository = flightRepository;
+        Gauge.builder("route.graph.legs", legs, Map::size)
+            .description("Upcoming flights in the connection search graph")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        // in the background, searches before it is done only see flights added since startup
+        load().subscribe(
+            count -> log.info("Route graph loaded with {} flights", count),
+            e -> log.warn("Route graph load failed: {}", e.getMessage()));
+    }
+
+    Mono<Long> load() {
+        return flightRepository.findByScheduleDateGreaterThanEqual(LocalDate.now())
+            // a flight changed while loading already has a newer state in the graph
+            .doOnNext(flight -> put(ItineraryLeg.of(flight), false))
+            .count();
+    }
+
+    @EventListener
+    public void onInventoryChanged(FlightInventoryChangedEvent event) {
+        put(ItineraryLeg.of(event.flight()), true);
+    }
+
+    private void put(ItineraryLeg leg, boolean replace) {
+        pruneDepartedDays();
+        if(leg.scheduleDate().isBefore(LocalDate.now())) {
+            return;
+        }
+
+        // compute is atomic per flight, so the leg is in exactly one departure list
+        legs.compute(leg.flightId(), (id, old) -> {
+            if(old != null && !replace) {
+                return old;
+            }
+            if(old != null) {
+                remove(departures.get(departureKey(old)), old);
+                remove(routes.get(routeKey(old)), old);
+            }
+            departures.computeIfAbsent(departureKey(leg), key -> new ConcurrentSkipListMap<>()).put(Slot.of(leg), leg);
+            routes.computeIfAbsent(routeKey(leg), key -> new ConcurrentSkipListMap<>()).put(Slot.of(leg), leg);
+            return leg;
+        });
+    }
+
+    private static void remove(NavigableMap<Slot, ItineraryLeg> legsOfDay, ItineraryLeg leg) {
+        if(legsOfDay != null) {
+            legsOfDay.remove(Slot.of(leg));
+        }
+    }
+
+    private static DepartureKey departureKey(ItineraryLeg leg) {
+        return new DepartureKey(leg.fromPlace(), leg.scheduleDate());
+    }
+
+    private static RouteKey routeKey(ItineraryLeg leg) {
+        return new RouteKey(leg.fromPlace(), leg.toPlace(), leg.scheduleDate());
+    }
+
+    // once a day drop the days that are over
+    private void pruneDepartedDays() {
+        LocalDate today = LocalDate.now();
+        LocalDate pruned = prunedUntil.get();
+        if(!pruned.isBefore(today) || !prunedUntil.compareAndSet(pruned, today)) {
+            return;
+        }
+        departures.entrySet().removeIf(entry -> {
+            if(!entry.getKey().scheduleDate().isBefore(today)) {
+                return false;
+            }
+            entry.getValue().values().forEach(leg -> legs.remove(leg.flightId(), leg));
+            return true;
+        });
+        routes.keySet().removeIf(key -> key.scheduleDate().isBefore(today));
+    }
+
+    // 1 and 2 stop itineraries, shortest travel time first
+    public List<Itinerary> connections(String fromPlace, String toPlace, LocalDate journeyDate, Constraints constraints) {
+        // the worst itinerary kept so far is on top, paths already longer than it are not followed
+        PriorityQueue<Itinerary> best = new PriorityQueue<>(MAX_RESULTS + 1, BY_DURATION_AND_PRICE.reversed());
+        List<ItineraryLeg> path = new ArrayList<>(constraints.maxStops() + 1);
+        for(ItineraryLeg first : departing(fromPlace, journeyDate, LocalTime.MIN, LocalTime.MAX)) {
+            if(hasSeats(first, constraints) && !first.toPlace().equals(fromPlace) && !first.toPlace().equals(toPlace)) {
+                path.add(first);
+                extend(path, toPlace, constraints, best);
+                path.remove(0);
+            }
+        }
+
+        List<Itinerary> itineraries = new ArrayList<>(best);
+        itineraries.sort(BY_DURATION_AND_PRICE);
+        return itineraries;
+    }
+
+    // direct flights are what the normal search is for, so the path here always has a stop to make
+    private void extend(List<ItineraryLeg> path, String toPlace, Constraints constraints, PriorityQueue<Itinerary> best) {
+        ItineraryLeg first = path.get(0);
+        ItineraryLeg last = path.get(path.size() - 1);
+        LocalDateTime landing = last.scheduleDate().atTime(last.arrivalTime());
+        if(best.size() == MAX_RESULTS 
+                && minutesBetween(first, landing) > best.peek().durationMinutes()) {
+            return;
+        }
+
+        boolean lastLeg = path.size() == constraints.maxStops();
+        LocalDateTime earliest = landing.plus(constraints.minLayover());
+        LocalDateTime latest = landing.plus(constraints.maxLayover());
+        // a long layover can run into the next day
+        for(LocalDate day = earliest.toLocalDate(); !day.isAfter(latest.toLocalDate()); day = day.plusDays(1)) {
+            LocalTime from = day.equals(earliest.toLocalDate()) ? earliest.toLocalTime() : LocalTime.MIN;
+            LocalTime to = day.equals(latest.toLocalDate()) ? latest.toLocalTime() : LocalTime.MAX;
+            Iterable<ItineraryLeg> candidates = lastLeg 
+                    ? flying(last.toPlace(), toPlace, day, from, to) 
+                    : departing(last.toPlace(), day, from, to);
+            for(ItineraryLeg next : candidates) {
+                if(!hasSeats(next, constraints) || visits(path, next.toPlace())) {
+                    continue;
+                }
+                if(next.toPlace().equals(toPlace)) {
+                    // only build the itinerary when it makes the cut
+                    long minutes = minutesBetween(first, next.scheduleDate().atTime(next.arrivalTime()));
+                    if(best.size() < MAX_RESULTS || minutes <= best.peek().durationMinutes()) {
+                        path.add(next);
+                        keep(itinerary(path, minutes), best);
+                        path.remove(path.size() - 1);
+                    }
+                    continue;
+                }
+                path.add(next);
+                extend(path, toPlace, constraints, best);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static void keep(Itinerary itinerary, PriorityQueue<Itinerary> best) {
+        best.add(itinerary);
+        if(best.size() > MAX_RESULTS) {
+            best.poll();
+        }
+    }
+
+    private Iterable<ItineraryLeg> departing(String fromPlace, LocalDate day, LocalTime from, LocalTime to) {
+        return window(departures.get(new DepartureKey(fromPlace, day)), from, to);
+    }
+
+    private Iterable<ItineraryLeg> flying(String fromPlace, String toPlace, LocalDate day, LocalTime from, LocalTime to) {
+        return window(routes.get(new RouteKey(fromPlace, toPlace, day)), from, to);
+    }
+
+    // legs departing from..to, both inclusive
+    private static Iterable<ItineraryLeg> window(NavigableMap<Slot, ItineraryLeg> legsOfDay, LocalTime from, LocalTime to) {
+        if(legsOfDay == null) {
+            return List.of();
+        }
+        return legsOfDay.subMap(new Slot(from, ""), true, new Slot(to, "\uffff"), true).values();
+    }
+
+    private static boolean hasSeats(ItineraryLeg leg, Constraints constraints) {
+        return leg.availableSeats() != null && leg.availableSeats() >= constraints.seats();
+    }
+
+    // no itinerary passes through the same place twice
+    private static boolean visits(List<ItineraryLeg> path, String place) {
+        if(path.get(0).fromPlace().equals(place)) {
+            return true;
+        }
+        for(ItineraryLeg leg : path) {
+            if(leg.toPlace().equals(place)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Itinerary itinerary(List<ItineraryLeg> path, long minutes) {
+        double totalPrice = 0;
+        for(ItineraryLeg leg : path) {
+            totalPrice += leg.price() == null ? 0 : leg.price();
+        }
+        return new Itinerary(List.copyOf(path), path.size() - 1, totalPrice, minutes);
+    }
+
+    private static long minutesBetween(ItineraryLeg first, LocalDateTime time) {
+        return Duration.between(first.scheduleDate().atTime(first.departureTime()), time).toMinutes();
+    }
+}
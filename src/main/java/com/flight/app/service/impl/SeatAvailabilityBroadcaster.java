@@ -0,0 +1,172 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.dto.SeatAvailabilityUpdate;
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.repository.FlightRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+// Fans seat changes out to the availability streams, one topic per flight and one per route-day,
+// created on the first watcher and dropped with the last one.
+// Fed by FlightInventoryChangedEvent (updateFlightInventory, bookings, cancellations on this
+// instance) or, with app.availability.change-stream.enabled, by a change stream on the flights
+// collection, which also sees changes made by other instances (needs a replica set).
+// Watchers always have demand on their topic and only keep the latest update of each flight that
+// they have not taken yet, so a slow client never holds up the publisher or the other watchers
+// and gets the current seats rather than every step in between.
+// Metric: availability.watchers
+@Slf4j
+@Component
+public class SeatAvailabilityBroadcaster {
+
+    // watchers of one flight or route-day, `watchers` only changes inside topics.compute
+    private static final class Topic {
+        final Sinks.Many<SeatAvailabilityUpdate> sink = Sinks.many().multicast().directBestEffort();
+        int watchers;
+    }
+
+    private final FlightRepository flightRepository;
+    private final boolean changeStreamEnabled;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private Disposable changeStream;
+
+    @Autowired
+    public SeatAvailabilityBroadcaster(FlightRepository flightRepository,
+            @Value("${app.availability.change-stream.enabled:false}") boolean changeStreamEnabled,
+            MeterRegistry meterRegistry) {
+        this.flightRepository = flightRepository;
+        this.changeStreamEnabled = changeStreamEnabled;
+        Gauge.builder("availability.watchers", topics, t -> t.values().stream().mapToInt(topic -> topic.watchers).sum())
+            .description("Open seat availability streams")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void watchChangeStream() {
+        if(!changeStreamEnabled) {
+            return;
+        }
+        changeStream = flightRepository.watchChanges()
+            .doOnNext(this::publish)
+            // a dropped cursor or an election, pick the stream up again
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                .doBeforeRetry(signal -> log.warn("Flight change stream failed, reconnecting: {}",
+                        signal.failure().getMessage())))
+            .subscribe();
+    }
+
+    @PreDestroy
+    public void stopChangeStream() {
+        if(changeStream != null) {
+            changeStream.dispose();
+        }
+    }
+
+    @EventListener
+    public void onInventoryChanged(FlightInventoryChangedEvent event) {
+        // the change stream delivers this change as well
+        if(!changeStreamEnabled) {
+            publish(event.flight());
+        }
+    }
+
+    private void publish(Flight flight) {
+        SeatAvailabilityUpdate update = SeatAvailabilityUpdate.of(flight);
+        emit(flightTopic(flight.getId()), update);
+        emit(routeDayTopic(flight.getFromPlace(), flight.getToPlace(), flight.getScheduleDate()), update);
+    }
+
+    private void emit(String key, SeatAvailabilityUpdate update) {
+        Topic topic = topics.get(key);
+        if(topic == null) {
+            return;
+        }
+        // events arrive from many threads, the sink wants one emitter at a time
+        synchronized(topic) {
+            topic.sink.tryEmitNext(update);
+        }
+    }
+
+    public Flux<SeatAvailabilityUpdate> watchFlight(String flightId) {
+        return watch(flightTopic(flightId));
+    }
+
+    public Flux<SeatAvailabilityUpdate> watchRouteDay(String fromPlace, String toPlace, LocalDate scheduleDate) {
+        return watch(routeDayTopic(fromPlace, toPlace, scheduleDate));
+    }
+
+    private Flux<SeatAvailabilityUpdate> watch(String key) {
+        return Flux.defer(() -> {
+            Topic topic = topics.compute(key, (k, existing) -> {
+                Topic joined = existing == null ? new Topic() : existing;
+                joined.watchers++;
+                return joined;
+            });
+            // per watcher the latest update of every flight it has not taken yet, in first-changed order
+            Map<String, SeatAvailabilityUpdate> pending = new LinkedHashMap<>();
+            return topic.sink.asFlux()
+                .doOnNext(update -> {
+                    synchronized(pending) {
+                        pending.put(update.flightId(), update);
+                    }
+                })
+                // the sink always finds demand, a slow client only holds one wake-up
+                .onBackpressureLatest()
+                .concatMap(wakeUp -> Flux.<SeatAvailabilityUpdate>generate(next -> {
+                    SeatAvailabilityUpdate update = takeFirst(pending);
+                    if(update == null) {
+                        next.complete();
+                    }
+                    else {
+                        next.next(update);
+                    }
+                }), 0)
+                .doFinally(signal -> topics.computeIfPresent(key, (k, existing) -> {
+                    existing.watchers--;
+                    return existing.watchers == 0 ? null : existing;
+                }));
+        });
+    }
+
+    // taken one at a time as the watcher asks, so what it gets is as fresh as it can be
+    private static SeatAvailabilityUpdate takeFirst(Map<String, SeatAvailabilityUpdate> pending) {
+        synchronized(pending) {
+            Iterator<SeatAvailabilityUpdate> first = pending.values().iterator();
+            if(!first.hasNext()) {
+                return null;
+            }
+            SeatAvailabilityUpdate update = first.next();
+            first.remove();
+            return update;
+        }
+    }
+
+    private static String flightTopic(String flightId) {
+        return "flight:" + flightId;
+    }
+
+    private static String routeDayTopic(String fromPlace, String toPlace, LocalDate scheduleDate) {
+        return "route:" + fromPlace + "|" + toPlace + "|" + scheduleDate;
+    }
+}
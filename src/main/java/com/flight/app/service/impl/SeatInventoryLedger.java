@@ -0,0 +1,273 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.dto.BookedSeats;
+import com.flight.app.entity.Flight;
+import com.flight.app.exception.FlightUnavailableException;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.repository.FlightRepository;
+import com.flight.app.service.SeatInventory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// "Inventory engine" mode (app.inventory.engine=ledger): seat counts of active flights live in
+// per-flight atomic counters and are flushed to the flights collection in background batches.
+// Meant for a single booking node, counters are not shared between instances.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.inventory.engine", havingValue = "ledger")
+public class SeatInventoryLedger implements SeatInventory {
+
+    // static flight details plus the live seat counter and seat map of one flight
+    private static final class LedgerEntry {
+        final Flight flight;
+        final AtomicInteger availableSeats;
+        final AtomicLongArray seatMap;
+
+        LedgerEntry(Flight flight, int availableSeats, List<Long> seatMap) {
+            this.flight = flight;
+            this.availableSeats = new AtomicInteger(availableSeats);
+            this.seatMap = new AtomicLongArray(seatMap.stream().mapToLong(Long::longValue).toArray());
+        }
+        
+        boolean cancelled() {
+            return Boolean.TRUE.equals(flight.getCancelled());
+        }
+        
+        // flights stored before seat maps existed get an empty one
+        LedgerEntry(Flight flight) {
+            this(flight, flight.getAvailableSeats(), flight.getSeatMap() != null 
+                    ? flight.getSeatMap() 
+                    : SeatMap.initialBlocks(flight, new BitSet()));
+        }
+
+        // sets all bits of blocks or none of them
+        boolean claim(long[] blocks) {
+            for(int i = 0; i < blocks.length; i++) {
+                if(blocks[i] == 0) {
+                    continue;
+                }
+                long current;
+                do {
+                    current = i < seatMap.length() ? seatMap.get(i) : -1L;
+                    if((current & blocks[i]) != 0) {
+                        clear(blocks, i);
+                        return false;
+                    }
+                } while(!seatMap.compareAndSet(i, current, current | blocks[i]));
+            }
+            return true;
+        }
+
+        // clears the bits of the first `upTo` blocks
+        void clear(long[] blocks, int upTo) {
+            for(int i = 0; i < Math.min(upTo, seatMap.length()); i++) {
+                long mask = ~blocks[i];
+                seatMap.getAndUpdate(i, current -> current & mask);
+            }
+        }
+
+        Flight snapshot(int seats) {
+            List<Long> blocks = new ArrayList<>(seatMap.length());
+            for(int i = 0; i < seatMap.length(); i++) {
+                blocks.add(seatMap.get(i));
+            }
+            return flight.toBuilder().availableSeats(seats).seatMap(blocks).build();
+        }
+    }
+
+    private static final Duration FOREVER = Duration.ofMillis(Long.MAX_VALUE);
+
+    private final FlightRepository flightRepository;
+    private final BookingRepository bookingRepository;
+    private final Duration flushInterval;
+    private final int flushBatchSize;
+
+    private final Map<String, LedgerEntry> entries = new ConcurrentHashMap<>();
+    private final Set<String> dirtyFlightIds = ConcurrentHashMap.newKeySet();
+    // bookings wait for recovery, a failed recovery is retried by the next caller
+    private final Mono<Void> recovered;
+    private Disposable flusher;
+
+    @Autowired
+    public SeatInventoryLedger(FlightRepository flightRepository, BookingRepository bookingRepository,
+            @Value("${app.inventory.ledger.flush-interval:200ms}") Duration flushInterval,
+            @Value("${app.inventory.ledger.flush-batch-size:500}") int flushBatchSize) {
+        this.flightRepository = flightRepository;
+        this.bookingRepository = bookingRepository;
+        this.flushInterval = flushInterval;
+        this.flushBatchSize = flushBatchSize;
+        this.recovered = Mono.defer(this::rebuild).cache(v -> FOREVER, e -> Duration.ZERO, () -> FOREVER);
+    }
+
+    @PostConstruct
+    public void startFlusher() {
+        flusher = Flux.interval(flushInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> flush()
+                .onErrorResume(e -> {
+                    log.warn("Seat ledger flush failed, will retry: {}", e.getMessage());
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        recovered.subscribe(null, e -> log.warn("Seat ledger recovery failed, will retry on first booking: {}", 
+                e.getMessage()));
+    }
+
+    @PreDestroy
+    public void stopFlusher() {
+        flusher.dispose();
+        try {
+            flush().block(Duration.ofSeconds(10));
+        } 
+        catch(RuntimeException e) {
+            log.warn("Final seat ledger flush failed, counts will be recovered from bookings: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Mono<Flight> reserve(String flightId, BitSet seats) {
+        int count = seats.cardinality();
+        long[] blocks = seats.toLongArray();
+        return recovered.then(Mono.defer(() -> entryFor(flightId)))
+            .flatMap(entry -> {
+                if(entry.cancelled()) {
+                    return Mono.error(new FlightUnavailableException("Flight " + flightId + " is cancelled."));
+                }
+                int current;
+                do {
+                    current = entry.availableSeats.get();
+                    if(current < count) {
+                        return Mono.empty();
+                    }
+                } while(!entry.availableSeats.compareAndSet(current, current - count));
+                
+                if(!entry.claim(blocks)) {
+                    entry.availableSeats.addAndGet(count);
+                    return Mono.empty();
+                }
+                
+                dirtyFlightIds.add(flightId);
+                return Mono.just(entry.snapshot(current - count));
+            });
+    }
+
+    @Override
+    public Mono<Flight> release(String flightId, int seats, BitSet seatIndexes) {
+        long[] blocks = seatIndexes.toLongArray();
+        return recovered.then(Mono.defer(() -> entryFor(flightId)))
+            .map(entry -> {
+                // the seats of a cancelled flight stay taken, nothing goes back on sale
+                if(entry.cancelled()) {
+                    return entry.snapshot(entry.availableSeats.get());
+                }
+                entry.clear(blocks, blocks.length);
+                int updated = entry.availableSeats.addAndGet(seats);
+                dirtyFlightIds.add(flightId);
+                return entry.snapshot(updated);
+            });
+    }
+
+    @Override
+    public Mono<Flight> seatMap(String flightId) {
+        return recovered.then(Mono.defer(() -> entryFor(flightId)))
+            .map(entry -> entry.snapshot(entry.availableSeats.get()));
+    }
+
+    @Override
+    public void track(Flight flight) {
+        entries.put(flight.getId(), new LedgerEntry(flight));
+    }
+
+    // flights outside the active window (or added by another node) are loaded on first use
+    private Mono<LedgerEntry> entryFor(String flightId) {
+        LedgerEntry entry = entries.get(flightId);
+        if(entry != null) {
+            return Mono.just(entry);
+        }
+        return flightRepository.findById(flightId)
+            .map(flight -> entries.computeIfAbsent(flightId, id -> new LedgerEntry(flight)));
+    }
+
+    // Crash safe recovery: bookings are stored before a PNR is handed out, so they are the
+    // journal. Counts and seat maps are recomputed from them instead of trusting the last flush.
+    Mono<Void> rebuild() {
+        return flightRepository.findByScheduleDateGreaterThanEqual(LocalDate.now())
+            .collectMap(Flight::getId)
+            .flatMap(flights -> bookingRepository.sumBookedSeatsByFlightId(flights.keySet())
+                .collectMap(BookedSeats::flightId)
+                .doOnNext(bookedSeats -> {
+                    flights.values().forEach(flight -> {
+                        BookedSeats booked = bookedSeats.get(flight.getId());
+                        // its bookings are being deleted by FlightCancellationJob, it must not look empty
+                        int available = Boolean.TRUE.equals(flight.getCancelled()) ? 0 
+                                : booked == null ? flight.getTotalSeats() 
+                                : Math.max(0, flight.getTotalSeats() - booked.seats());
+                        List<Long> seatMap = SeatMap.initialBlocks(flight, booked == null 
+                                ? new BitSet() 
+                                : SeatMap.parseLenient(booked.seatNumbers()));
+                        
+                        entries.put(flight.getId(), new LedgerEntry(flight, available, seatMap));
+                        if(!Integer.valueOf(available).equals(flight.getAvailableSeats()) 
+                                || !seatMap.equals(flight.getSeatMap())) {
+                            dirtyFlightIds.add(flight.getId());
+                        }
+                    });
+                    log.info("Seat ledger rebuilt for {} active flights, {} corrected", 
+                            flights.size(), dirtyFlightIds.size());
+                }))
+            .then(Mono.defer(this::flush));
+    }
+
+    Mono<Void> flush() {
+        List<String> flightIds = new ArrayList<>();
+        for(Iterator<String> it = dirtyFlightIds.iterator(); it.hasNext();) {
+            flightIds.add(it.next());
+            it.remove();
+        }
+        
+        // counters are read after the ids were taken out, so a change racing 
+        // with the flush marks the flight dirty again for the next tick
+        return Flux.fromIterable(flightIds)
+            .buffer(flushBatchSize)
+            .concatMap(batch -> {
+                List<Flight> snapshots = new ArrayList<>(batch.size());
+                batch.forEach(flightId -> {
+                    LedgerEntry entry = entries.get(flightId);
+                    if(entry != null) {
+                        snapshots.add(entry.snapshot(entry.availableSeats.get()));
+                    }
+                });
+                return flightRepository.setSeatInventory(snapshots)
+                    .doOnError(e -> dirtyFlightIds.addAll(batch));
+            })
+            .then();
+    }
+}
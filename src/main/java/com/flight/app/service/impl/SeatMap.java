@@ -0,0 +1,149 @@
+package com.flight.app.service.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.flight.app.entity.Flight;
+
+// Seat numbers like "12C" <-> bit index (row - 1) * COLUMNS + column in Flight.seatMap.
+// A set bit means taken, positions that are not seats of the flight are set from the start,
+// so claiming them fails the same way as claiming a taken seat.
+final class SeatMap {
+
+    // seat letters A-J, the widest cabin we sell
+    static final int COLUMNS = 10;
+    static final int DEFAULT_SEATS_PER_ROW = 6;
+    // seat numbers have at most three row digits
+    static final int MAX_ROWS = 999;
+
+    private static final Pattern SEAT_NUMBER = Pattern.compile("([1-9][0-9]{0,2})([A-J])");
+
+    private SeatMap() {
+    }
+
+    // -1 when the text is not a seat number
+    static int indexOf(String seatNumber) {
+        if(seatNumber == null) {
+            return -1;
+        }
+        Matcher matcher = SEAT_NUMBER.matcher(seatNumber.trim().toUpperCase());
+        if(!matcher.matches()) {
+            return -1;
+        }
+        int row = Integer.parseInt(matcher.group(1));
+        int column = matcher.group(2).charAt(0) - 'A';
+        return (row - 1) * COLUMNS + column;
+    }
+
+    static String seatNumber(int index) {
+        return (index / COLUMNS + 1) + String.valueOf((char) ('A' + index % COLUMNS));
+    }
+
+    // seats requested by a booking, every seat number must be valid and requested once
+    static BitSet parse(Collection<String> seatNumbers) {
+        BitSet seats = new BitSet();
+        for(String seatNumber : seatNumbers) {
+            int index = indexOf(seatNumber);
+            if(index < 0) {
+                throw new IllegalArgumentException("Invalid seat number: " + seatNumber + ".");
+            }
+            if(seats.get(index)) {
+                throw new IllegalArgumentException("Seat " + seatNumber + " is requested more than once.");
+            }
+            seats.set(index);
+        }
+        return seats;
+    }
+
+    // seats held by a stored booking, older bookings may carry free text that is skipped
+    static BitSet parseLenient(Collection<String> seatNumbers) {
+        BitSet seats = new BitSet();
+        for(String seatNumber : seatNumbers) {
+            int index = indexOf(seatNumber);
+            if(index >= 0) {
+                seats.set(index);
+            }
+        }
+        return seats;
+    }
+
+    static int seatsPerRow(Flight flight) {
+        return flight.getSeatsPerRow() == null ? DEFAULT_SEATS_PER_ROW : flight.getSeatsPerRow();
+    }
+
+    // empty seat map of the flight: only the positions that are not seats are set
+    static BitSet layout(int totalSeats, int seatsPerRow) {
+        int bits = blockCount(totalSeats, seatsPerRow) * 64;
+
+        BitSet blocked = new BitSet(bits);
+        for(int index = 0; index < bits; index++) {
+            if(!isSeat(index, totalSeats, seatsPerRow)) {
+                blocked.set(index);
+            }
+        }
+        return blocked;
+    }
+
+    static int blockCount(int totalSeats, int seatsPerRow) {
+        int rows = (totalSeats + seatsPerRow - 1) / seatsPerRow;
+        return (rows * COLUMNS + 63) / 64;
+    }
+
+    private static boolean isSeat(int index, int totalSeats, int seatsPerRow) {
+        int row = index / COLUMNS;
+        int column = index % COLUMNS;
+        return column < seatsPerRow && row * seatsPerRow + column < totalSeats;
+    }
+
+    static List<Long> toBlocks(BitSet seats, int blockCount) {
+        long[] words = seats.toLongArray();
+        List<Long> blocks = new ArrayList<>(blockCount);
+        for(int i = 0; i < blockCount; i++) {
+            blocks.add(i < words.length ? words[i] : 0L);
+        }
+        return blocks;
+    }
+
+    static BitSet fromBlocks(List<Long> blocks) {
+        long[] words = new long[blocks.size()];
+        for(int i = 0; i < words.length; i++) {
+            words[i] = blocks.get(i);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    // seat map of a new flight, or of an existing one rebuilt from the seats of its bookings
+    static List<Long> initialBlocks(Flight flight, BitSet bookedSeats) {
+        int seatsPerRow = seatsPerRow(flight);
+        BitSet seatMap = layout(flight.getTotalSeats(), seatsPerRow);
+        seatMap.or(bookedSeats);
+        return toBlocks(seatMap, blockCount(flight.getTotalSeats(), seatsPerRow));
+    }
+
+    // requested seats that cannot be claimed on the flight right now
+    static List<String> unavailable(Flight flight, BitSet requested) {
+        BitSet taken = flight.getSeatMap() == null ? null : fromBlocks(flight.getSeatMap());
+        int capacity = flight.getSeatMap() == null ? 0 : flight.getSeatMap().size() * 64;
+
+        List<String> unavailable = new ArrayList<>();
+        requested.stream()
+            .filter(index -> taken == null || index >= capacity || taken.get(index))
+            .forEach(index -> unavailable.add(seatNumber(index)));
+        return unavailable;
+    }
+
+    static List<String> freeSeats(Flight flight) {
+        BitSet taken = fromBlocks(flight.getSeatMap());
+        int capacity = flight.getSeatMap().size() * 64;
+
+        List<String> free = new ArrayList<>();
+        for(int index = taken.nextClearBit(0); index < capacity; index = taken.nextClearBit(index + 1)) {
+            free.add(seatNumber(index));
+        }
+        return free;
+    }
+}
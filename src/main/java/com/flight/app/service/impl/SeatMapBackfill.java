@@ -0,0 +1,74 @@
+package com.flight.app.service.impl;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.dto.BookedSeats;
+import com.flight.app.entity.Flight;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.repository.FlightRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Gives flights stored before seat maps existed a seat map built from the seats of their
+// bookings. Until then bookings on such a flight are rejected, since the claim needs the map.
+@Slf4j
+@Component
+public class SeatMapBackfill {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final FlightRepository flightRepository;
+    private final BookingRepository bookingRepository;
+
+    @Autowired
+    public SeatMapBackfill(FlightRepository flightRepository, BookingRepository bookingRepository) {
+        this.flightRepository = flightRepository;
+        this.bookingRepository = bookingRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        // in the background, like the index bootstrap
+        backfill().subscribe(
+            count -> {
+                if(count > 0) {
+                    log.info("Seat maps built for {} existing flights", count);
+                }
+            },
+            e -> log.warn("Seat map backfill failed: {}", e.getMessage()));
+    }
+
+    Mono<Long> backfill() {
+        return flightRepository.findBySeatMapIsNull()
+            .buffer(BATCH_SIZE)
+            .concatMap(this::backfillBatch)
+            .count();
+    }
+
+    private Flux<Boolean> backfillBatch(List<Flight> flights) {
+        return bookingRepository.sumBookedSeatsByFlightId(flights.stream().map(Flight::getId).toList())
+            .collectMap(BookedSeats::flightId)
+            .flatMapMany(booked -> Flux.fromIterable(flights)
+                .concatMap(flight -> initSeatMap(flight, booked)))
+            .filter(Boolean::booleanValue);
+    }
+
+    private Mono<Boolean> initSeatMap(Flight flight, Map<String, BookedSeats> booked) {
+        BookedSeats bookedSeats = booked.get(flight.getId());
+        BitSet seats = bookedSeats == null ? new BitSet() : SeatMap.parseLenient(bookedSeats.seatNumbers());
+
+        // only written while the flight still has no seat map, bookings cannot claim seats on it
+        // before that, so nothing booked between the read and this write is lost
+        return flightRepository.initSeatMap(flight.getId(), SeatMap.seatsPerRow(flight),
+                SeatMap.initialBlocks(flight, seats));
+    }
+}
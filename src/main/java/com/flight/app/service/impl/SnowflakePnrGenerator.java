@@ -0,0 +1,77 @@
+package com.flight.app.service.impl;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.service.PnrGenerator;
+
+// Snowflake style PNR: | 41 bits millis | 10 bits sequence | 8 bits node | 4 bits stripe |
+// written as 13 base-36 characters after the prefix. Unique without a database check as long
+// as every instance runs with its own app.pnr.node-id.
+// Threads are spread over 16 stripes with their own counter, so callers only contend when
+// they hash to the same stripe. A stripe counter never goes backwards: past 1024 PNRs in one
+// millisecond (or when the wall clock steps back) it simply runs ahead of the clock.
+@Component
+@ConditionalOnProperty(name = "app.pnr.generator", havingValue = "snowflake", matchIfMissing = true)
+public class SnowflakePnrGenerator implements PnrGenerator {
+
+    static final String PREFIX = "CHUBBFLIGHT";
+    static final int CODE_LENGTH = 13;
+    static final int MAX_NODE_ID = 255;
+
+    private static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int SEQUENCE_BITS = 10;
+    private static final int NODE_BITS = 8;
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    // last (millis << SEQUENCE_BITS | sequence) handed out per stripe,
+    // padded 8 longs apart so neighbouring stripes do not share a cache line
+    private final AtomicLongArray ticks = new AtomicLongArray(STRIPES * 8);
+    private final long nodeBits;
+
+    @Autowired
+    public SnowflakePnrGenerator(@Value("${app.pnr.node-id:0}") int nodeId) {
+        if(nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("app.pnr.node-id must be between 0 and " + MAX_NODE_ID + ".");
+        }
+        this.nodeBits = (long) nodeId << STRIPE_BITS;
+    }
+
+    @Override
+    public String next() {
+        int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+        long tick = nextTick(stripe * 8);
+        long id = tick << (NODE_BITS + STRIPE_BITS) | nodeBits | stripe;
+        return encode(id);
+    }
+
+    private long nextTick(int slot) {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = ticks.get(slot);
+            next = Math.max(prev + 1, now);
+        } 
+        while(!ticks.compareAndSet(slot, prev, next));
+        return next;
+    }
+
+    // fixed width so every PNR has the same length and sorts by issue time
+    private static String encode(long id) {
+        char[] chars = new char[PREFIX.length() + CODE_LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        for(int i = chars.length - 1; i >= PREFIX.length(); i--) {
+            chars[i] = DIGITS[(int) (id % 36)];
+            id /= 36;
+        }
+        return new String(chars);
+    }
+}
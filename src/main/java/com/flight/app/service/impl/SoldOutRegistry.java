@@ -0,0 +1,75 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Flights known to have no seats left, so bookings for them are turned away before the
+// admission queue and without reading the flight. Kept current by FlightInventoryChangedEvent
+// (the last seat taken, seats given back, inventory updated) and by rejected reservations.
+// Seats given back by another instance are not seen here, so an entry only answers for
+// recheck-interval, after that one booking goes to Mongo again and refreshes it.
+// Metrics: booking.sold.out.flights, booking.sold.out.rejections
+@Component
+public class SoldOutRegistry {
+
+    // flightId -> System.nanoTime() when it was seen sold out
+    private final Map<String, Long> soldOut = new ConcurrentHashMap<>();
+    private final long recheckNanos;
+    private final Counter rejections;
+
+    @Autowired
+    public SoldOutRegistry(@Value("${app.sold-out.recheck-interval:2s}") Duration recheckInterval,
+            MeterRegistry meterRegistry) {
+        this.recheckNanos = recheckInterval.toNanos();
+        this.rejections = Counter.builder("booking.sold.out.rejections")
+            .description("Bookings turned away by the sold-out registry")
+            .register(meterRegistry);
+        Gauge.builder("booking.sold.out.flights", soldOut, Map::size)
+            .description("Flights known to be sold out")
+            .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onInventoryChanged(FlightInventoryChangedEvent event) {
+        Flight flight = event.flight();
+        if(flight.getAvailableSeats() != null && flight.getAvailableSeats() <= 0) {
+            markSoldOut(flight.getId());
+        }
+        else {
+            soldOut.remove(flight.getId());
+        }
+    }
+
+    public void markSoldOut(String flightId) {
+        soldOut.put(flightId, System.nanoTime());
+    }
+
+    // true when the booking can be rejected right away, counted as a rejection
+    public boolean reject(String flightId) {
+        Long since = soldOut.get(flightId);
+        if(since == null) {
+            return false;
+        }
+        if(System.nanoTime() - since > recheckNanos) {
+            // let this booking through to look again, the others keep being rejected meanwhile
+            if(soldOut.replace(flightId, since, System.nanoTime())) {
+                return false;
+            }
+        }
+        rejections.increment();
+        return true;
+    }
+}
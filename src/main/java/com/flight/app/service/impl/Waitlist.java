@@ -0,0 +1,320 @@
+package com.flight.app.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.entity.Passenger;
+import com.flight.app.entity.WaitlistEntry;
+import com.flight.app.entity.WaitlistEntry.Status;
+import com.flight.app.exception.FlightUnavailableException;
+import com.flight.app.exception.ResourceNotFoundException;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.repository.WaitlistEntryRepository;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.PnrGenerator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Per-flight FIFO queue of booking requests that found the flight sold out, so clients wait
+// for a push instead of retrying the booking or polling the search.
+// promote runs inside cancelTicket right after the seats are released and books the waiting
+// entries in createdAt order until the head of the queue no longer fits (a later, smaller
+// request never jumps the queue). An entry is claimed WAITING -> PROMOTING with a conditional
+// update first, so concurrent cancellations, also on other instances, never book it twice.
+// The claim holds the entry for promotion-lease, far longer than a promotion takes. Entries of
+// promotions that died with their instance are put back to WAITING by a sweep every
+// sweep-interval, and their flight's queue is worked off again (or closed, if it was cancelled).
+// A booking arriving between the release and the promotion can still take the seats first,
+// the entry then stays WAITING for the next cancellation.
+// Waiters are told off the cancellation's pipeline: a log line and the waitlist streams of
+// this instance, other instances' waiters see BOOKED on their next read. When the airline
+// cancels the flight, close turns the waiting entries CLOSED the same way.
+// Metrics: waitlist.joined, waitlist.promoted
+@Slf4j
+@Component
+public class Waitlist {
+
+    private enum Outcome {
+        BOOKED,
+        // claimed by a concurrent promotion
+        SKIPPED,
+        NO_SEATS
+    }
+
+    private final WaitlistEntryRepository waitlistRepository;
+    private final FlightService flightService;
+    private final BookingRepository bookingRepository;
+    private final PnrGenerator pnrGenerator;
+    private final Outbox outbox;
+    private final Duration promotionLease;
+    private final Duration sweepInterval;
+    private final Counter joined;
+    private final Counter promoted;
+    private final Sinks.Many<WaitlistEntry> promotions = Sinks.many().multicast().directBestEffort();
+    private final Scheduler notifier = Schedulers.boundedElastic();
+    private Disposable sweeper;
+
+    @Autowired
+    public Waitlist(WaitlistEntryRepository waitlistRepository, FlightService flightService,
+            BookingRepository bookingRepository, PnrGenerator pnrGenerator, Outbox outbox,
+            @Value("${app.waitlist.promotion-lease:60s}") Duration promotionLease,
+            @Value("${app.waitlist.sweep-interval:30s}") Duration sweepInterval,
+            MeterRegistry meterRegistry) {
+        this.waitlistRepository = waitlistRepository;
+        this.flightService = flightService;
+        this.bookingRepository = bookingRepository;
+        this.pnrGenerator = pnrGenerator;
+        this.outbox = outbox;
+        this.promotionLease = promotionLease;
+        this.sweepInterval = sweepInterval;
+        this.joined = Counter.builder("waitlist.joined")
+            .description("Booking requests put on a flight's waitlist")
+            .register(meterRegistry);
+        this.promoted = Counter.builder("waitlist.promoted")
+            .description("Waitlist entries booked after a cancellation")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        sweeper = Flux.interval(sweepInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> sweepExpiredPromotions()
+                .onErrorResume(e -> {
+                    log.warn("Waitlist promotion sweep failed: {}", e.getMessage());
+                    return Mono.empty();
+                }), 0)
+            .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if(sweeper != null) {
+            sweeper.dispose();
+        }
+    }
+
+    // Only for requests the flight cannot take right now. The queue is tried once after the
+    // insert, seats given back since the caller was turned away are not left unused.
+    public Mono<WaitlistEntry> join(String flightId, Booking request) {
+        int seatsWanted = request.getPassengers().size();
+        if(seatsWanted <= 0) {
+            return Mono.error(new IllegalArgumentException("Number of seats must be at least one."));
+        }
+        try {
+            SeatMap.parse(request.getPassengers().stream().map(Passenger::getSeatNumber).toList());
+        }
+        catch(IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+
+        return flightService.getFlightById(flightId)
+            .switchIfEmpty(Mono.error(new ResourceNotFoundException("Flight with ID " + flightId + " not found.")))
+            .flatMap(flight -> {
+                if(Boolean.TRUE.equals(flight.getCancelled())) {
+                    return Mono.error(new FlightUnavailableException("Flight " + flightId + " is cancelled."));
+                }
+                if(flight.getAvailableSeats() != null && flight.getAvailableSeats() >= seatsWanted) {
+                    return Mono.error(new IllegalArgumentException(
+                            "Flight " + flightId + " has " + flight.getAvailableSeats()
+                            + " seats available, book it instead of joining the waitlist."));
+                }
+                WaitlistEntry entry = new WaitlistEntry(null, flightId, request.getUserName(),
+                        request.getUserEmail(), request.getMobileNumber(), request.getMealOpted(),
+                        request.getPassengers(), Instant.now(), Status.WAITING, null, null);
+                return waitlistRepository.insert(entry);
+            })
+            .doOnNext(entry -> joined.increment())
+            .flatMap(entry -> promote(flightId)
+                .then(waitlistRepository.findById(entry.getId()))
+                .defaultIfEmpty(entry));
+    }
+
+    public Mono<WaitlistEntry> getEntry(String entryId) {
+        return waitlistRepository.findById(entryId)
+            .switchIfEmpty(Mono.error(new ResourceNotFoundException(
+                    "Waitlist entry " + entryId + " not found.")));
+    }
+
+    // The entry as it is now, then the promotion once it happens. Completes with BOOKED or CLOSED.
+    public Flux<WaitlistEntry> watch(String entryId) {
+        // listening before the read, a promotion in between is not lost
+        Flux<WaitlistEntry> promotion = promotions.asFlux().filter(entry -> entryId.equals(entry.getId()));
+
+        return Flux.merge(promotion, getEntry(entryId))
+            .takeUntil(entry -> entry.getStatus() == Status.BOOKED || entry.getStatus() == Status.CLOSED);
+    }
+
+    // The flight was cancelled by the airline: every WAITING entry turns CLOSED, the number closed.
+    // Run once no promotion of the flight can still be under way, one in progress would put its
+    // entry back to WAITING when the seat claim fails.
+    public Mono<Long> close(String flightId) {
+        return waitlistRepository.findByFlightIdAndStatusOrderByCreatedAtAscIdAsc(flightId, Status.WAITING)
+            .concatMap(entry -> waitlistRepository.updateStatus(entry.getId(), Status.WAITING, Status.CLOSED, null))
+            .doOnNext(this::notifyClosed)
+            .count();
+    }
+
+    // Books waiting entries of the flight in queue order while the free seats cover them,
+    // the number of entries booked
+    public Mono<Long> promote(String flightId) {
+        return waitlistRepository.findByFlightIdAndStatusOrderByCreatedAtAscIdAsc(flightId, Status.WAITING)
+            .concatMap(this::tryPromote)
+            .takeWhile(outcome -> outcome != Outcome.NO_SEATS)
+            .filter(outcome -> outcome == Outcome.BOOKED)
+            .count();
+    }
+
+    private Mono<Outcome> tryPromote(WaitlistEntry waiting) {
+        String flightId = waiting.getFlightId();
+
+        return flightService.getSeatAvailability(flightId)
+            .flatMap(availability -> {
+                List<String> seatNumbers = pickSeats(waiting.getPassengers(), availability.freeSeats());
+                if(seatNumbers == null) {
+                    return Mono.just(Outcome.NO_SEATS);
+                }
+                return waitlistRepository.claimPromotion(waiting.getId(), Instant.now().plus(promotionLease))
+                    .flatMap(entry -> book(entry, seatNumbers))
+                    .defaultIfEmpty(Outcome.SKIPPED);
+            });
+    }
+
+    private Mono<Outcome> book(WaitlistEntry entry, List<String> seatNumbers) {
+        String flightId = entry.getFlightId();
+        BitSet seats = SeatMap.parse(seatNumbers);
+        Mono<WaitlistEntry> backToWaiting = Mono.defer(() -> waitlistRepository.updateStatus(entry.getId(), 
+                Status.PROMOTING, Status.WAITING, null));
+
+        return flightService.reserveSeats(flightId, seats)
+            .flatMap(flight -> {
+                Booking booking = toBooking(entry, seatNumbers);
+                BookingServiceImpl.completeBooking(booking, pnrGenerator.next(), flightId, flight);
+
+                return outbox.write(bookingRepository.insert(booking), 
+                        () -> List.of(Outbox.event(OutboxEvent.Type.BOOKING_CONFIRMED, booking)),
+                        () -> bookingRepository.delete(booking))
+                    .onErrorResume(e -> flightService.releaseSeats(flightId, seats.cardinality(), seats)
+                            .then(backToWaiting)
+                            .then(Mono.error(e)));
+            })
+            .flatMap(booking -> waitlistRepository.updateStatus(entry.getId(), Status.PROMOTING, Status.BOOKED,
+                    booking.getPnr()))
+            .doOnNext(this::notifyBooked)
+            .map(booked -> Outcome.BOOKED)
+            // the seats went to a booking in the meantime
+            .switchIfEmpty(backToWaiting.thenReturn(Outcome.NO_SEATS));
+    }
+
+    // PROMOTING entries whose lease ended go back to WAITING, then the queues of their flights are
+    // worked off again, the number of entries put back
+    Mono<Long> sweepExpiredPromotions() {
+        Instant now = Instant.now();
+
+        return waitlistRepository.findByStatusAndLeaseUntilLessThanEqual(Status.PROMOTING, now)
+            .concatMap(entry -> waitlistRepository.releaseExpiredPromotion(entry.getId(), now))
+            .doOnNext(entry -> log.warn("Promotion of waitlist entry {} for flight {} did not finish, back to waiting",
+                    entry.getId(), entry.getFlightId()))
+            .collectList()
+            .flatMap(released -> Flux.fromIterable(released)
+                .map(WaitlistEntry::getFlightId)
+                .distinct()
+                .concatMap(this::resumeQueue)
+                .then(Mono.just((long) released.size())));
+    }
+
+    // close already ran for a cancelled flight, its entries put back are closed here
+    private Mono<Long> resumeQueue(String flightId) {
+        return flightService.getFlightById(flightId)
+            .flatMap(flight -> Boolean.TRUE.equals(flight.getCancelled()) ? close(flightId) : promote(flightId))
+            .onErrorResume(e -> {
+                log.warn("Waitlist of flight {} not resumed after the sweep: {}", flightId, e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    // The wished seats that are still free stay with their passenger, the others get the
+    // first free seats in seat map order. Null when there are not enough free seats.
+    static List<String> pickSeats(List<Passenger> passengers, List<String> freeSeats) {
+        if(freeSeats.size() < passengers.size()) {
+            return null;
+        }
+        Set<String> free = new LinkedHashSet<>(freeSeats);
+        List<String> picked = new ArrayList<>(passengers.size());
+        for(Passenger passenger : passengers) {
+            int index = SeatMap.indexOf(passenger.getSeatNumber());
+            String wish = index < 0 ? null : SeatMap.seatNumber(index);
+            picked.add(wish != null && free.remove(wish) ? wish : null);
+        }
+        Iterator<String> rest = free.iterator();
+        for(int i = 0; i < picked.size(); i++) {
+            if(picked.get(i) == null) {
+                picked.set(i, rest.next());
+            }
+        }
+        return picked;
+    }
+
+    private static Booking toBooking(WaitlistEntry entry, List<String> seatNumbers) {
+        List<Passenger> passengers = new ArrayList<>(entry.getPassengers().size());
+        for(int i = 0; i < entry.getPassengers().size(); i++) {
+            Passenger wished = entry.getPassengers().get(i);
+            passengers.add(new Passenger(wished.getId(), wished.getName(), wished.getGender(), wished.getAge(),
+                    seatNumbers.get(i)));
+        }
+
+        Booking booking = new Booking();
+        booking.setUserName(entry.getUserName());
+        booking.setUserEmail(entry.getUserEmail());
+        booking.setMobileNumber(entry.getMobileNumber());
+        booking.setMealOpted(entry.getMealOpted());
+        booking.setPassengers(passengers);
+        return booking;
+    }
+
+    private void notifyBooked(WaitlistEntry entry) {
+        promoted.increment();
+        notifier.schedule(() -> {
+            log.info("Waitlist entry {} for flight {} booked, PNR {}, notifying {}", entry.getId(),
+                    entry.getFlightId(), entry.getPnr(), entry.getUserEmail());
+            emit(entry);
+        });
+    }
+
+    private void notifyClosed(WaitlistEntry entry) {
+        notifier.schedule(() -> {
+            log.info("Waitlist entry {} closed, flight {} was cancelled, notifying {}", entry.getId(),
+                    entry.getFlightId(), entry.getUserEmail());
+            emit(entry);
+        });
+    }
+
+    private void emit(WaitlistEntry entry) {
+        synchronized(promotions) {
+            promotions.tryEmitNext(entry);
+        }
+    }
+}
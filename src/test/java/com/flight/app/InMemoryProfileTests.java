@@ -0,0 +1,157 @@
+package com.flight.app;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.flight.app.dto.BookingRequest;
+import com.flight.app.dto.ManifestEntry;
+import com.flight.app.dto.PassengerDTO;
+import com.flight.app.entity.Flight;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+// The whole stack on the in-memory repositories, no MongoDB running
+// no grace period, a cancelled flight's job is done before its POST answers
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "app.flight-cancellation.grace-period=0s")
+@ActiveProfiles("inmemory")
+class InMemoryProfileTests {
+
+    private WebTestClient webTestClient;
+    @LocalServerPort
+    private int port;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + port + "/api/v1.0/flight")
+                .build();
+    }
+
+    private String addFlight() {
+        Flight flight = Flight.builder()
+                .airlineName("Air India")
+                .fromPlace("DEL")
+                .toPlace("BOM")
+                .scheduleDate(LocalDate.now().plusDays(10))
+                .departureTime(LocalTime.of(8, 0))
+                .arrivalTime(LocalTime.of(10, 0))
+                .price(5000.00)
+                .totalSeats(10)
+                .availableSeats(10)
+                .build();
+        String added = webTestClient.post().uri("/airline/inventory/add")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(flight)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        return added.substring(added.lastIndexOf(' ') + 1);
+    }
+
+    @Test
+    void addSearchBookAndCancel() {
+        String flightId = addFlight();
+
+        BookingRequest booking = new BookingRequest("User", "user@test.com", "9999999999", "Veg",
+                List.of(new PassengerDTO("AAA", "Female", 30, "1A"), new PassengerDTO("BBB", "Male", 31, "1B")));
+        String booked = webTestClient.post().uri("/booking/{flightId}", flightId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(booking)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        String pnr = booked.substring(booked.lastIndexOf(' ') + 1);
+
+        webTestClient.get().uri("/{flightId}/seats", flightId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.availableSeats").isEqualTo(8);
+        webTestClient.get().uri("/booking/history/{emailId}", "user@test.com")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].pnr").isEqualTo(pnr);
+
+        webTestClient.get().uri("/airline/{flightId}/manifest", flightId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ManifestEntry.class)
+                .contains(new ManifestEntry(pnr, "1A", "AAA", "Female", 30, "Veg"),
+                        new ManifestEntry(pnr, "1B", "BBB", "Male", 31, "Veg"));
+        webTestClient.get().uri("/airline/{flightId}/manifest", flightId)
+                .accept(MediaType.parseMediaType("text/csv"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo(ManifestEntry.CSV_HEADER + pnr + ",1A,AAA,Female,30,Veg\n" + pnr + ",1B,BBB,Male,31,Veg\n");
+        webTestClient.get().uri("/airline/{flightId}/manifest", "missing")
+                .accept(MediaType.parseMediaType("text/csv"))
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.delete().uri("/booking/cancel/{pnr}", pnr)
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get().uri("/{flightId}/seats", flightId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.availableSeats").isEqualTo(10);
+    }
+
+    @Test
+    void airlineCancelsTheFlight() {
+        String flightId = addFlight();
+        BookingRequest booking = new BookingRequest("User", "airline@test.com", "9999999999", "Veg",
+                List.of(new PassengerDTO("AAA", "Female", 30, "2A")));
+        String booked = webTestClient.post().uri("/booking/{flightId}", flightId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(booking)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        String pnr = booked.substring(booked.lastIndexOf(' ') + 1);
+
+        webTestClient.post().uri("/airline/{flightId}/cancel?reason=weather", flightId)
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody()
+                .jsonPath("$.bookingsTotal").isEqualTo(1);
+        // the in-memory repositories answer right away, the job is done by now
+        webTestClient.get().uri("/airline/{flightId}/cancellation", flightId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("COMPLETED")
+                .jsonPath("$.bookingsCancelled").isEqualTo(1)
+                .jsonPath("$.lastPnr").isEqualTo(pnr);
+
+        webTestClient.get().uri("/ticket/{pnr}", pnr)
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.post().uri("/booking/{flightId}", flightId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(booking)
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/airline/{flightId}/cancellation", "missing")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -113,4 +113,18 @@ class BookingControllerTest {
                 .expectBodyList(Booking.class)
                 .hasSize(1);
     }    
-}
\ No newline at end of file
+    
+    @Test
+    void getBookingHistoryPage_Summary_Returns200OkWithoutPassengers() {
+        bookingRepository.save(mockBooking).block();
+
+        webTestClient.get().uri("/booking/history/{emailId}/page?size=1&summary=true", testEmail)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(1)
+                .jsonPath("$.items[0].pnr").isEqualTo(testPNR)
+                .jsonPath("$.items[0].passengers").doesNotExist()
+                .jsonPath("$.nextCursor").doesNotExist();
+    }
+}
@@ -9,14 +9,21 @@ import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FareCalendarRequest;
 import com.flight.app.dto.FlightSearchRequest;
+import com.flight.app.dto.SeatAvailabilityUpdate;
 import com.flight.app.entity.Flight;
 import com.flight.app.repository.FlightRepository;
+import com.flight.app.service.FlightService;
 
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.List;
 import java.util.UUID;
 
 // testimg on actual db instead of using mockdb
@@ -28,6 +35,8 @@ class FlightControllerTest {
     private int port; 
     @Autowired
     private FlightRepository flightRepository;
+    @Autowired
+    private FlightService flightService;
 
     private Flight testFlight1;
     private FlightSearchRequest validSearchRequest;
@@ -119,4 +128,102 @@ class FlightControllerTest {
                 .expectBody()
                 .jsonPath("$.reason").doesNotExist();
     }
+    
+    @Test
+    void streamFlights_Success_ReturnsNdjsonFlights() {
+        webTestClient.post().uri("/search/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(validSearchRequest)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Flight.class)
+                .getResponseBody()
+                .as(flights -> StepVerifier.create(flights))
+                .expectNextMatches(flight -> flight.getId().equals(testFlight1.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void streamFlights_NoResults_Returns404NotFound() {
+        FlightSearchRequest nonExistentSearch = new FlightSearchRequest();
+        nonExistentSearch.setFromPlace("BOM");
+        nonExistentSearch.setToPlace("HYD");
+        nonExistentSearch.setJourneyDate(testDate);
+
+        webTestClient.post().uri("/search/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(nonExistentSearch)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+    
+    @Test
+    void getFareCalendar_Success_ReturnsLowestFarePerDay() {
+        Flight cheaper = testFlight1.toBuilder().id(UUID.randomUUID().toString()).price(4000.00).build();
+        Flight nextDay = testFlight1.toBuilder().id(UUID.randomUUID().toString())
+                .scheduleDate(testDate.plusDays(1)).price(6000.00).build();
+        flightRepository.saveAll(List.of(cheaper, nextDay)).blockLast();
+        
+        FareCalendarRequest request = new FareCalendarRequest();
+        request.setFromPlace("DEL");
+        request.setToPlace("BOM");
+        request.setJourneyDate(testDate);
+        request.setFlexDays(2);
+
+        webTestClient.post().uri("/search/fare-calendar")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(FareCalendarDay.class)
+                .getResponseBody()
+                .as(days -> StepVerifier.create(days))
+                .expectNextMatches(day -> day.scheduleDate().equals(testDate) && day.lowestPrice() == 4000.00 
+                        && day.flights() == 2)
+                .expectNextMatches(day -> day.scheduleDate().equals(testDate.plusDays(1)) && day.lowestPrice() == 6000.00)
+                .verifyComplete();
+    }
+    
+    @Test
+    void streamFlightAvailability_CurrentSeatsThenChanges() {
+        webTestClient.get().uri("/{flightId}/availability/stream", testFlight1.getId())
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(SeatAvailabilityUpdate.class)
+                .getResponseBody()
+                .as(updates -> StepVerifier.create(updates))
+                .expectNextMatches(update -> update.availableSeats() == 10)
+                .then(() -> flightService.updateFlightInventory(testFlight1.toBuilder().availableSeats(9).build()).block())
+                .expectNextMatches(update -> update.flightId().equals(testFlight1.getId()) && update.availableSeats() == 9)
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+    
+    @Test
+    void getSeatAvailability_Success_ReturnsFreeSeatsFromSeatMap() {
+        // one row of two, 1A is taken
+        Flight smallFlight = testFlight1.toBuilder().id(UUID.randomUUID().toString())
+                .totalSeats(2).availableSeats(1).seatsPerRow(2).seatMap(List.of(~0b11L | 0b01L)).build();
+        flightRepository.save(smallFlight).block();
+        
+        webTestClient.get().uri("/{flightId}/seats", smallFlight.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.availableSeats").isEqualTo(1)
+                .jsonPath("$.freeSeats.length()").isEqualTo(1)
+                .jsonPath("$.freeSeats[0]").isEqualTo("1B");
+    }
+    
+    @Test
+    void getSeatAvailability_UnknownFlight_Returns404NotFound() {
+        webTestClient.get().uri("/{flightId}/seats", "missing")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
 }
@@ -0,0 +1,87 @@
+package com.flight.app.repository.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flight.app.dto.BookedSeats;
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Passenger;
+
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InMemoryBookingRepositoryTest {
+
+    private InMemoryBookingRepository repository;
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryBookingRepository();
+    }
+
+    private Booking booking(String pnr, String userEmail, LocalDateTime bookingDate, String... seatNumbers) {
+        List<Passenger> passengers = Arrays.stream(seatNumbers)
+                .map(seat -> new Passenger(null, "AAA", "Female", 30, seat))
+                .toList();
+        return new Booking(pnr, "User", userEmail, "9999999999", bookingDate, passengers.size(), "Veg",
+                1000.00 * passengers.size(), "F1", LocalDate.now().plusDays(5), passengers);
+    }
+
+    @Test
+    void findHistoryPage_NewestFirstAfterKey() {
+        repository.insert(List.of(
+                booking("P1", "user@test.com", now.minusDays(2), "1A"),
+                booking("P2", "user@test.com", now.minusDays(1), "1B"),
+                booking("P3", "user@test.com", now.minusDays(1), "1C"),
+                booking("P4", "other@test.com", now, "2A"))).blockLast();
+
+        StepVerifier.create(repository.findByUserEmailOrderByBookingDateDesc("user@test.com").map(Booking::getPnr))
+                .expectNext("P3", "P2", "P1")
+                .verifyComplete();
+
+        // same bookingDate as the last key, only the smaller pnr follows
+        StepVerifier.create(repository.findHistoryPage("user@test.com", now.minusDays(1), "P3", 2, true))
+                .assertNext(booking -> {
+                    assertNull(booking.getPassengers());
+                    assertNull(booking.getUserName());
+                })
+                .expectNextMatches(booking -> booking.getPnr().equals("P1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void findManifest_PnrOrderWithTheManifestFields() {
+        repository.saveAll(List.of(booking("P2", "user@test.com", now, "2A"),
+                booking("P1", "other@test.com", now, "1A", "1B"))).blockLast();
+
+        StepVerifier.create(repository.findManifest("F1"))
+                .expectNextMatches(booking -> booking.getPnr().equals("P1") && booking.getPassengers().size() == 2
+                        && booking.getMealOpted().equals("Veg") && booking.getUserEmail() == null)
+                .expectNextMatches(booking -> booking.getPnr().equals("P2"))
+                .verifyComplete();
+        StepVerifier.create(repository.findManifest("F2")).verifyComplete();
+    }
+
+    @Test
+    void sumBookedSeatsByFlightId_FollowsDeletes() {
+        repository.saveAll(List.of(booking("P1", "user@test.com", now, "1A", "1B"),
+                booking("P2", "user@test.com", now, "2A"))).blockLast();
+
+        StepVerifier.create(repository.sumBookedSeatsByFlightId(List.of("F1", "F2")))
+                .expectNextMatches(seats -> seats.seats() == 3 && seats.seatNumbers().containsAll(List.of("1A", "1B", "2A")))
+                .verifyComplete();
+
+        repository.deleteById("P1").block();
+        StepVerifier.create(repository.sumBookedSeatsByFlightId(List.of("F1")))
+                .expectNext(new BookedSeats("F1", 1, List.of("2A")))
+                .verifyComplete();
+        StepVerifier.create(repository.findByPnr("P1")).verifyComplete();
+    }
+}
@@ -0,0 +1,125 @@
+package com.flight.app.repository.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.entity.Flight;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemoryFlightRepositoryTest {
+
+    private InMemoryFlightRepository repository;
+    private final LocalDate journeyDate = LocalDate.now().plusDays(5);
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryFlightRepository();
+    }
+
+    private Flight flight(String id, LocalDate date, double price, int availableSeats) {
+        return Flight.builder()
+                .id(id)
+                .airlineName("Air India")
+                .fromPlace("DEL")
+                .toPlace("BOM")
+                .scheduleDate(date)
+                .departureTime(LocalTime.of(8, 0))
+                .arrivalTime(LocalTime.of(10, 0))
+                .price(price)
+                .totalSeats(150)
+                .availableSeats(availableSeats)
+                .seatsPerRow(2)
+                .seatMap(List.of(0L))
+                .build();
+    }
+
+    @Test
+    void routeDaySearch_FollowsSeatChanges() {
+        repository.saveAll(List.of(flight("F1", journeyDate, 4000.00, 1), flight("F2", journeyDate, 5000.00, 0),
+                flight("F3", journeyDate.plusDays(1), 3000.00, 5))).blockLast();
+
+        StepVerifier.create(repository.findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan(
+                "DEL", "BOM", journeyDate, 0).map(Flight::getId))
+                .expectNext("F1")
+                .verifyComplete();
+
+        // the last seat goes, the flight drops out of the search
+        StepVerifier.create(repository.claimSeats("F1", 1, new long[] {0b1}))
+                .expectNextMatches(flight -> flight.getAvailableSeats() == 0 && flight.getSeatMap().get(0) == 0b1)
+                .verifyComplete();
+        StepVerifier.create(repository.findSearchResults("DEL", "BOM", journeyDate, 0))
+                .verifyComplete();
+
+        StepVerifier.create(repository.findFareCalendar("DEL", "BOM", journeyDate, journeyDate.plusDays(1), 1))
+                .expectNext(new FareCalendarDay(journeyDate.plusDays(1), 3000.00, 1, 5))
+                .verifyComplete();
+    }
+
+    @Test
+    void seatWrites_CancelledFlight_NoOps() {
+        repository.save(flight("F1", journeyDate, 4000.00, 2)).block();
+        repository.claimSeats("F1", 1, new long[] {0b01}).block();
+        repository.markCancelled("F1").block();
+
+        // the rollback of a booking that raced the cancellation gives nothing back
+        StepVerifier.create(repository.releaseSeats("F1", 1, new long[] {0b01})).verifyComplete();
+        StepVerifier.create(repository.incrementAvailableSeats("F1", 1)).verifyComplete();
+        StepVerifier.create(repository.claimSeats("F1", 1, new long[] {0b10})).verifyComplete();
+
+        StepVerifier.create(repository.findById("F1"))
+                .expectNextMatches(flight -> flight.getAvailableSeats() == 0 && flight.getSeatMap().get(0) == 0b01)
+                .verifyComplete();
+        StepVerifier.create(repository.findSearchResults("DEL", "BOM", journeyDate, 0)).verifyComplete();
+    }
+
+    @Test
+    void claimSeats_TakenSeatOrTooFewSeats_Empty() {
+        repository.save(flight("F1", journeyDate, 4000.00, 2)).block();
+
+        StepVerifier.create(repository.claimSeats("F1", 1, new long[] {0b01})).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.claimSeats("F1", 1, new long[] {0b01})).verifyComplete();
+        StepVerifier.create(repository.claimSeats("F1", 2, new long[] {0b10})).verifyComplete();
+
+        StepVerifier.create(repository.releaseSeats("F1", 1, new long[] {0b01}))
+                .expectNextMatches(flight -> flight.getAvailableSeats() == 2 && flight.getSeatMap().get(0) == 0)
+                .verifyComplete();
+    }
+
+    @Test
+    void claimSeats_Concurrent_NeverOversells() {
+        repository.save(flight("F1", journeyDate, 4000.00, 50)).block();
+
+        long claimed = Flux.range(0, 200)
+                .flatMap(i -> repository.claimSeats("F1", 1, new long[0]).subscribeOn(Schedulers.parallel()))
+                .count()
+                .block();
+
+        assertEquals(50, claimed);
+        assertEquals(0, repository.findById("F1").block().getAvailableSeats());
+    }
+
+    @Test
+    void insert_ExistingId_DuplicateKey() {
+        Flight stored = flight("F1", journeyDate, 4000.00, 2);
+        repository.insert(stored).block();
+
+        // changing the caller's instance does not touch the store
+        stored.setAvailableSeats(0);
+        assertEquals(2, repository.findById("F1").block().getAvailableSeats());
+
+        StepVerifier.create(repository.insert(flight("F1", journeyDate, 4000.00, 2)))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+    }
+}
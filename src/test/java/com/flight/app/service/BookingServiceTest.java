@@ -3,26 +3,47 @@ package com.flight.app.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.flight.app.dto.BookingPage;
+import com.flight.app.dto.ManifestEntry;
 import com.flight.app.entity.Booking;
 import com.flight.app.entity.Flight;
 import com.flight.app.entity.Passenger;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.exception.CancellationNotPossibleException;
 import com.flight.app.exception.FlightUnavailableException;
 import com.flight.app.exception.ResourceNotFoundException;
 import com.flight.app.repository.BookingRepository;
+import com.flight.app.service.impl.BookingGroupCommitter;
+import com.flight.app.service.impl.BookingIdempotency;
 import com.flight.app.service.impl.BookingServiceImpl;
+import com.flight.app.service.impl.FlightAdmissionControl;
+import com.flight.app.service.impl.FlightCancellationJob;
+import com.flight.app.service.impl.Outbox;
+import com.flight.app.service.impl.SoldOutRegistry;
+import com.flight.app.service.impl.Waitlist;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,6 +53,25 @@ class BookingServiceTest {
     private BookingRepository bookingRepository;
     @Mock
     private FlightService flightService; 
+    @Mock
+    private PnrGenerator pnrGenerator;
+    @Spy
+    private FlightAdmissionControl admissionControl = new FlightAdmissionControl(true, 32, 256, 
+            Duration.ofSeconds(2), Duration.ofSeconds(1), new SimpleMeterRegistry());
+    @Mock
+    private BookingGroupCommitter groupCommitter;
+    @Spy
+    private BookingIdempotency idempotency = new BookingIdempotency(null, false, Duration.ofHours(24), 1000, 
+            Duration.ofSeconds(1), new SimpleMeterRegistry());
+    @Spy
+    private SoldOutRegistry soldOutRegistry = new SoldOutRegistry(Duration.ofSeconds(2), new SimpleMeterRegistry());
+    @Mock
+    private Waitlist waitlist;
+    // off, the booking writes go straight through, see OutboxRelayTest
+    @Spy
+    private Outbox outbox = new Outbox(null, Optional.empty(), false);
+    @Mock
+    private FlightCancellationJob flightCancellations;
     @InjectMocks
     private BookingServiceImpl bookingService;
 
@@ -40,6 +80,8 @@ class BookingServiceTest {
     private List<Passenger> passengers;
     private final String testFlightId = "100";
     private final String testPNR = "CHUBBFLIGHT101ABC";
+    // seat map bits of 1A and 1B
+    private final BitSet testSeats = BitSet.valueOf(new long[] {0b11});
 
     @BeforeEach
     void setUp() {
@@ -53,8 +95,10 @@ class BookingServiceTest {
         
         Passenger p1 = new Passenger();
         p1.setName("AAA");
+        p1.setSeatNumber("1A");
         Passenger p2 = new Passenger();
         p2.setName("BBB");
+        p2.setSeatNumber("1B");
         passengers = List.of(p1, p2); 
 
         testBooking = new Booking();
@@ -66,15 +110,14 @@ class BookingServiceTest {
     @Test
     void bookTicket_Success_InventoryDecrementedAndBookingSaved() {
         int seatsToBook = passengers.size(); 
-        int initialAvailable = testFlight.getAvailableSeats(); 
-        int expectedAvailable = initialAvailable - seatsToBook;
+        testFlight.setAvailableSeats(testFlight.getAvailableSeats() - seatsToBook);
         
-        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
-        when(flightService.updateFlightInventory(any(Flight.class))).thenReturn(Mono.just("Updated"));
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.just(testFlight));
+        when(pnrGenerator.next()).thenReturn(testPNR);
         
         Booking bookedBooking = new Booking(); 
         bookedBooking.setPnr(testPNR);
-        when(bookingRepository.save(any(Booking.class))).thenReturn(Mono.just(bookedBooking));
+        when(bookingRepository.insert(any(Booking.class))).thenReturn(Mono.just(bookedBooking));
 
         Mono<String> result = bookingService.bookTicket(testFlightId, testBooking);
         StepVerifier.create(result)
@@ -82,15 +125,93 @@ class BookingServiceTest {
                 .expectNext(testPNR) 
                 .verifyComplete();
 
-        verify(flightService, times(1)).getFlightById(testFlightId);
-        verify(flightService, times(1)).updateFlightInventory(argThat(
-            f -> f.getAvailableSeats().equals(expectedAvailable)
+        // single atomic round trip, no separate read or full document write
+        verify(flightService, times(1)).reserveSeats(testFlightId, testSeats);
+        verify(flightService, never()).getFlightById(any());
+        verify(flightService, never()).updateFlightInventory(any());
+        verify(bookingRepository, times(1)).insert(ArgumentMatchers.<Booking>argThat(
+            b -> b.getNumberOfSeats() == seatsToBook && b.getTotalCost() == 200.00 && testPNR.equals(b.getPnr())
         ));
-        verify(bookingRepository, times(1)).save(any(Booking.class));
+    }
+
+    // what the controller builds again for every retry of the same request
+    private Booking retryOf(Booking booking) {
+        Booking retry = new Booking();
+        retry.setPassengers(booking.getPassengers());
+        retry.setNumberOfSeats(booking.getPassengers().size());
+        retry.setUserEmail(booking.getUserEmail());
+        return retry;
+    }
+
+    @Test
+    void bookTicket_SameIdempotencyKey_RetryGetsFirstPnr() {
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.just(testFlight));
+        when(pnrGenerator.next()).thenReturn(testPNR, "CHUBBFLIGHT202XYZ");
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(bookingService.bookTicket(testFlightId, retryOf(testBooking), "key-1"))
+                .expectNext(testPNR)
+                .verifyComplete();
+        StepVerifier.create(bookingService.bookTicket(testFlightId, retryOf(testBooking), "key-1"))
+                .expectNext(testPNR)
+                .verifyComplete();
+
+        // the retry never reached the inventory or the booking collection
+        verify(flightService, times(1)).reserveSeats(testFlightId, testSeats);
+        verify(bookingRepository, times(1)).insert(any(Booking.class));
+    }
+
+    @Test
+    void bookTicket_SameIdempotencyKey_ConcurrentDuplicateWaitsForFirst() {
+        when(flightService.reserveSeats(testFlightId, testSeats))
+            .thenReturn(Mono.just(testFlight).delayElement(Duration.ofMillis(100)));
+        when(pnrGenerator.next()).thenReturn(testPNR, "CHUBBFLIGHT202XYZ");
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(Mono.zip(bookingService.bookTicket(testFlightId, retryOf(testBooking), "key-1"),
+                    bookingService.bookTicket(testFlightId, retryOf(testBooking), "key-1")))
+                .expectNextMatches(pnrs -> pnrs.getT1().equals(testPNR) && pnrs.getT2().equals(testPNR))
+                .verifyComplete();
+
+        verify(flightService, times(1)).reserveSeats(testFlightId, testSeats);
+    }
+
+    @Test
+    void bookTicket_IdempotencyKeyReusedForOtherBooking_Rejected() {
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.just(testFlight));
+        when(pnrGenerator.next()).thenReturn(testPNR);
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(bookingService.bookTicket(testFlightId, retryOf(testBooking), "key-1"))
+                .expectNext(testPNR)
+                .verifyComplete();
+
+        Booking other = retryOf(testBooking);
+        other.setUserEmail("BBB@example.com");
+        StepVerifier.create(bookingService.bookTicket(testFlightId, other, "key-1"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void bookTicket_IdempotencyKeyReusedForOtherFlight_Rejected() {
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.just(testFlight));
+        when(pnrGenerator.next()).thenReturn(testPNR);
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(bookingService.bookTicket(testFlightId, retryOf(testBooking), "key-1"))
+                .expectNext(testPNR)
+                .verifyComplete();
+        // the same body for another flight
+        StepVerifier.create(bookingService.bookTicket("F2", retryOf(testBooking), "key-1"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verify(flightService, never()).reserveSeats(eq("F2"), any());
     }
 
     @Test
     void bookTicket_Failure_FlightNotFound() {
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.empty());
         when(flightService.getFlightById(testFlightId)).thenReturn(Mono.empty());
         Mono<String> result = bookingService.bookTicket(testFlightId, testBooking);
         
@@ -98,13 +219,13 @@ class BookingServiceTest {
                 .expectErrorMatches(e -> e instanceof RuntimeException && 
                                         e.getMessage().contains("not found")).verify();
         
-        verify(flightService, never()).updateFlightInventory(any());
-        verify(bookingRepository, never()).save(any());
+        verify(bookingRepository, never()).insert(any(Booking.class));
     }
 
     @Test
     void bookTicket_Failure_InsufficientSeats() {
         testFlight.setAvailableSeats(1); 
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.empty());
         when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
 
         Mono<String> result = bookingService.bookTicket(testFlightId, testBooking);
@@ -112,8 +233,73 @@ class BookingServiceTest {
                 .expectErrorMatches(e -> e instanceof FlightUnavailableException && 
                                 e.getMessage().contains("Insufficient")).verify();
         
-        verify(flightService, never()).updateFlightInventory(any());
-        verify(bookingRepository, never()).save(any());
+        verify(bookingRepository, never()).insert(any(Booking.class));
+    }
+    
+    @Test
+    void bookTicket_SoldOut_LaterAttemptsRejectedWithoutReads() {
+        testFlight.setAvailableSeats(0);
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.empty());
+        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
+
+        // the first attempt finds out, the next ones never reach the flight service
+        for(int i = 0; i < 3; i++) {
+            StepVerifier.create(bookingService.bookTicket(testFlightId, testBooking))
+                    .expectErrorMatches(e -> e instanceof FlightUnavailableException 
+                            && e.getMessage().equals("Insufficient seats. Only 0 seats Available"))
+                    .verify();
+        }
+        verify(flightService, times(1)).reserveSeats(any(), any());
+        verify(flightService, times(1)).getFlightById(any());
+        
+        // seats given back, bookings go through again
+        Flight released = testFlight.toBuilder().availableSeats(2).build();
+        soldOutRegistry.onInventoryChanged(new FlightInventoryChangedEvent(released));
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.just(released));
+        when(pnrGenerator.next()).thenReturn(testPNR);
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        StepVerifier.create(bookingService.bookTicket(testFlightId, testBooking))
+                .expectNext(testPNR)
+                .verifyComplete();
+    }
+    
+    @Test
+    void bookTicket_Failure_SeatAlreadyTaken() {
+        // 1A is taken, plenty of seats left
+        testFlight.setSeatMap(List.of(0b1L));
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.empty());
+        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
+
+        StepVerifier.create(bookingService.bookTicket(testFlightId, testBooking))
+                .expectErrorMatches(e -> e instanceof FlightUnavailableException && 
+                                e.getMessage().equals("Seats not available: 1A")).verify();
+        
+        verify(bookingRepository, never()).insert(any(Booking.class));
+    }
+    
+    @Test
+    void bookTicket_Failure_SameSeatTwice() {
+        passengers.get(1).setSeatNumber("1a");
+
+        StepVerifier.create(bookingService.bookTicket(testFlightId, testBooking))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException && 
+                                e.getMessage().contains("more than once")).verify();
+        
+        verify(flightService, never()).reserveSeats(any(), any());
+    }
+    
+    @Test
+    void bookTicket_Failure_BookingSaveFails_SeatsReleased() {
+        when(flightService.reserveSeats(testFlightId, testSeats)).thenReturn(Mono.just(testFlight));
+        when(flightService.releaseSeats(testFlightId, passengers.size(), testSeats)).thenReturn(Mono.just(testFlight));
+        when(bookingRepository.insert(any(Booking.class))).thenReturn(Mono.error(new RuntimeException("write failed")));
+
+        Mono<String> result = bookingService.bookTicket(testFlightId, testBooking);
+        StepVerifier.create(result)
+                .expectErrorMessage("write failed")
+                .verify();
+        
+        verify(flightService, times(1)).releaseSeats(testFlightId, passengers.size(), testSeats);
     }
     
 
@@ -154,6 +340,80 @@ class BookingServiceTest {
                 .verifyComplete();
     }
     
+    @Test
+    void getBookingHistoryPage_MoreRows_ReturnsCursorToNextPage() {
+        Booking older = new Booking();
+        older.setPnr("CHUBBFLIGHT000OLD");
+        older.setBookingDate(LocalDateTime.of(2025, 1, 1, 10, 0));
+        testBooking.setPnr(testPNR);
+        testBooking.setBookingDate(LocalDateTime.of(2025, 1, 2, 10, 0));
+        when(bookingRepository.findHistoryPage("AAA@example.com", null, null, 2, false))
+                .thenReturn(Flux.just(testBooking, older));
+        when(bookingRepository.findHistoryPage("AAA@example.com", testBooking.getBookingDate(), testPNR, 2, false))
+                .thenReturn(Flux.just(older));
+
+        BookingPage<Booking> firstPage = bookingService.getBookingHistoryPage("AAA@example.com", null, 1).block();
+        assertEquals(List.of(testBooking), firstPage.items());
+        assertNotNull(firstPage.nextCursor());
+        
+        StepVerifier.create(bookingService.getBookingHistoryPage("AAA@example.com", firstPage.nextCursor(), 1))
+                .expectNextMatches(page -> page.items().equals(List.of(older)) && page.nextCursor() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    void getBookingHistorySummaryPage_ProjectsWithoutPassengers() {
+        testBooking.setPnr(testPNR);
+        testBooking.setBookingDate(LocalDateTime.now());
+        testBooking.setTotalCost(200.00);
+        when(bookingRepository.findHistoryPage("AAA@example.com", null, null, 21, true))
+                .thenReturn(Flux.just(testBooking));
+
+        StepVerifier.create(bookingService.getBookingHistorySummaryPage("AAA@example.com", null, 20))
+                .expectNextMatches(page -> page.items().get(0).pnr().equals(testPNR) 
+                        && page.items().get(0).totalCost() == 200.00
+                        && page.nextCursor() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    void getBookingHistoryPage_Failure_InvalidCursorOrSize() {
+        StepVerifier.create(bookingService.getBookingHistoryPage("AAA@example.com", "not-a-cursor", 20))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException && e.getMessage().contains("cursor"))
+                .verify();
+        StepVerifier.create(bookingService.getBookingHistoryPage("AAA@example.com", null, 1000))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        
+        verify(bookingRepository, never()).findHistoryPage(any(), any(), any(), anyInt(), anyBoolean());
+    }
+    
+    @Test
+    void getPassengerManifest_OneEntryPerPassenger() {
+        testBooking.setPnr(testPNR);
+        testBooking.setMealOpted("Veg");
+        passengers.get(0).setName("Doe, Jane");
+        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
+        when(bookingRepository.findManifest(testFlightId)).thenReturn(Flux.just(testBooking));
+
+        StepVerifier.create(bookingService.getPassengerManifest(testFlightId))
+                .expectNextMatches(entry -> entry.seatNumber().equals("1A")
+                        && entry.toCsvLine().equals(testPNR + ",1A,\"Doe, Jane\",,,Veg\n"))
+                .expectNext(new ManifestEntry(testPNR, "1B", "BBB", null, null, "Veg"))
+                .verifyComplete();
+    }
+    
+    @Test
+    void getPassengerManifest_UnknownFlight_NotFound() {
+        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.empty());
+
+        StepVerifier.create(bookingService.getPassengerManifest(testFlightId))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+        
+        verify(bookingRepository, never()).findManifest(any());
+    }
+    
     @Test
     void cancelTicket_Failure_BookingNotFound() {
         when(bookingRepository.findByPnr(anyString())).thenReturn(Mono.empty());
@@ -164,4 +424,57 @@ class BookingServiceTest {
         
         verify(flightService, never()).getFlightById(any());
     }
+    
+    @Test
+    void cancelTicket_Success_BookingDeletedAndSeatsReleased() {
+        testBooking.setPnr(testPNR);
+        testBooking.setFlightId(testFlightId);
+        testBooking.setJourneyDate(testFlight.getScheduleDate());
+        when(bookingRepository.findByPnr(testPNR)).thenReturn(Mono.just(testBooking));
+        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
+        when(bookingRepository.delete(testBooking)).thenReturn(Mono.empty());
+        when(flightService.releaseSeats(testFlightId, passengers.size(), testSeats)).thenReturn(Mono.just(testFlight));
+        when(waitlist.promote(testFlightId)).thenReturn(Mono.just(0L));
+
+        StepVerifier.create(bookingService.cancelTicket(testPNR))
+                .verifyComplete();
+        
+        verify(flightService, times(1)).releaseSeats(testFlightId, passengers.size(), testSeats);
+        verify(flightService, never()).updateFlightInventory(any());
+        verify(waitlist, times(1)).promote(testFlightId);
+    }
+    
+    @Test
+    void cancelTicket_WaitlistPromotionFails_StillCancelled() {
+        testBooking.setPnr(testPNR);
+        testBooking.setFlightId(testFlightId);
+        testBooking.setJourneyDate(testFlight.getScheduleDate());
+        when(bookingRepository.findByPnr(testPNR)).thenReturn(Mono.just(testBooking));
+        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
+        when(bookingRepository.delete(testBooking)).thenReturn(Mono.empty());
+        when(flightService.releaseSeats(testFlightId, passengers.size(), testSeats)).thenReturn(Mono.just(testFlight));
+        when(waitlist.promote(testFlightId)).thenReturn(Mono.error(new RuntimeException("waitlist down")));
+
+        StepVerifier.create(bookingService.cancelTicket(testPNR))
+                .verifyComplete();
+        
+        verify(flightService, times(1)).releaseSeats(testFlightId, passengers.size(), testSeats);
+    }
+    
+    @Test
+    void cancelTicket_FlightCancelledByAirline_SeatsStayTaken() {
+        testBooking.setPnr(testPNR);
+        testBooking.setFlightId(testFlightId);
+        testBooking.setJourneyDate(testFlight.getScheduleDate());
+        testFlight.setCancelled(true);
+        when(bookingRepository.findByPnr(testPNR)).thenReturn(Mono.just(testBooking));
+        when(flightService.getFlightById(testFlightId)).thenReturn(Mono.just(testFlight));
+
+        StepVerifier.create(bookingService.cancelTicket(testPNR))
+                .expectError(CancellationNotPossibleException.class)
+                .verify();
+        
+        verify(bookingRepository, never()).delete(any(Booking.class));
+        verify(flightService, never()).releaseSeats(anyString(), anyInt(), any());
+    }
 }
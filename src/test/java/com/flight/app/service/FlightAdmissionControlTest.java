@@ -0,0 +1,70 @@
+package com.flight.app.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.flight.app.exception.BookingRejectedException;
+import com.flight.app.service.impl.FlightAdmissionControl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlightAdmissionControlTest {
+
+    private FlightAdmissionControl admissionControl;
+    private Sinks.One<String> runningBooking;
+
+    @BeforeEach
+    void setUp() {
+        // one booking running and one waiting per flight
+        admissionControl = new FlightAdmissionControl(true, 1, 1, Duration.ofMillis(200), Duration.ofSeconds(3), 
+                new SimpleMeterRegistry());
+        runningBooking = Sinks.one();
+        admissionControl.admit("100", runningBooking.asMono()).subscribe();
+    }
+
+    @Test
+    void admit_QueueFull_RejectedWith429() {
+        AtomicInteger started = new AtomicInteger();
+        Mono<String> queued = admissionControl.admit("100", Mono.fromSupplier(() -> {
+            started.incrementAndGet();
+            return "PNR2";
+        }));
+        Mono<String> overflow = admissionControl.admit("100", Mono.just("PNR3"));
+        
+        StepVerifier.create(queued)
+                .then(() -> StepVerifier.create(overflow)
+                        .expectErrorMatches(e -> e instanceof BookingRejectedException rejected 
+                                && rejected.getStatus() == HttpStatus.TOO_MANY_REQUESTS
+                                && rejected.getRetryAfter().equals(Duration.ofSeconds(3)))
+                        .verify())
+                .then(() -> assertEquals(0, started.get()))
+                // the running booking finishes and hands its slot to the queued one
+                .then(() -> runningBooking.tryEmitValue("PNR1"))
+                .expectNext("PNR2")
+                .verifyComplete();
+    }
+
+    @Test
+    void admit_WaitedTooLong_RejectedWith503() {
+        StepVerifier.create(admissionControl.admit("100", Mono.just("PNR2")))
+                .expectErrorMatches(e -> e instanceof BookingRejectedException rejected 
+                        && rejected.getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void admit_OtherFlight_NotAffectedByHotFlight() {
+        StepVerifier.create(admissionControl.admit("200", Mono.just("PNR2")))
+                .expectNext("PNR2")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,98 @@
+package com.flight.app.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.service.impl.FlightLookupCoalescer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlightLookupCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private Flight testFlight;
+    private final String testFlightId = "101";
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        testFlight = new Flight();
+        testFlight.setId(testFlightId);
+        testFlight.setAvailableSeats(10);
+    }
+
+    @Test
+    void get_ConcurrentLookups_ShareOneQuery() {
+        FlightLookupCoalescer coalescer = new FlightLookupCoalescer(Duration.ZERO, meterRegistry);
+        AtomicInteger queries = new AtomicInteger();
+        Sinks.One<Flight> pendingQuery = Sinks.one();
+        
+        Flux<Flight> lookups = Flux.range(0, 4).flatMap(i -> coalescer.get(testFlightId, id -> {
+            queries.incrementAndGet();
+            return pendingQuery.asMono();
+        }));
+        
+        StepVerifier.create(lookups)
+                .then(() -> pendingQuery.tryEmitValue(testFlight))
+                .expectNext(testFlight, testFlight, testFlight, testFlight)
+                .verifyComplete();
+        
+        assertEquals(1, queries.get());
+        assertEquals(0.75, meterRegistry.get("flight.lookups.collapse.ratio").gauge().value());
+        
+        // the query is done, the next lookup goes to Mongo again
+        coalescer.get(testFlightId, id -> Mono.just(testFlight).doOnSubscribe(s -> queries.incrementAndGet())).block();
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void get_NearCache_ServesUntilInventoryChanges() {
+        FlightLookupCoalescer coalescer = new FlightLookupCoalescer(Duration.ofSeconds(30), meterRegistry);
+        AtomicInteger queries = new AtomicInteger();
+        
+        coalescer.get(testFlightId, id -> Mono.just(testFlight).doOnSubscribe(s -> queries.incrementAndGet())).block();
+        coalescer.get(testFlightId, id -> Mono.just(testFlight).doOnSubscribe(s -> queries.incrementAndGet())).block();
+        assertEquals(1, queries.get());
+        assertEquals(1, meterRegistry.get("flight.lookups").tag("result", "near-cache").counter().count());
+        
+        coalescer.onInventoryChanged(new FlightInventoryChangedEvent(testFlight));
+        coalescer.get(testFlightId, id -> Mono.just(testFlight).doOnSubscribe(s -> queries.incrementAndGet())).block();
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void get_EveryCallerGetsItsOwnCopy() {
+        FlightLookupCoalescer coalescer = new FlightLookupCoalescer(Duration.ofSeconds(30), meterRegistry);
+        Sinks.One<Flight> pendingQuery = Sinks.one();
+        
+        Flux<Flight> lookups = Flux.range(0, 2).flatMap(i -> coalescer.get(testFlightId, id -> pendingQuery.asMono()));
+        StepVerifier.create(lookups.collectList())
+                .then(() -> pendingQuery.tryEmitValue(testFlight))
+                .expectNextMatches(flights -> flights.get(0) != flights.get(1) 
+                        && flights.get(0) != testFlight && flights.get(0).equals(testFlight))
+                .verifyComplete();
+        
+        // a caller changing its flight leaves the near cached one alone
+        coalescer.get(testFlightId, id -> Mono.empty()).block().setAvailableSeats(0);
+        assertEquals(10, coalescer.get(testFlightId, id -> Mono.empty()).block().getAvailableSeats());
+    }
+
+    @Test
+    void get_MissingFlight_EmptyForEveryCaller() {
+        FlightLookupCoalescer coalescer = new FlightLookupCoalescer(Duration.ofSeconds(30), meterRegistry);
+        
+        StepVerifier.create(coalescer.get(testFlightId, id -> Mono.empty()))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,125 @@
+package com.flight.app.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.service.impl.FlightSearchCache;
+import com.flight.app.service.impl.FlightSearchCache.RouteDayKey;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlightSearchCacheTest {
+
+    private FlightSearchCache searchCache;
+    private Flight testFlight;
+    private FlightSearchResult testResult;
+    private RouteDayKey key;
+
+    @BeforeEach
+    void setUp() {
+        searchCache = new FlightSearchCache(100, Duration.ofSeconds(30), new SimpleMeterRegistry());
+        
+        testFlight = new Flight();
+        testFlight.setId("101");
+        testFlight.setFromPlace("DEL");
+        testFlight.setToPlace("BOM");
+        testFlight.setScheduleDate(LocalDate.of(2025, 12, 25));
+        testFlight.setAvailableSeats(10);
+        testResult = FlightSearchResult.of(testFlight);
+        key = RouteDayKey.of(testFlight);
+    }
+
+    @Test
+    void get_ConcurrentMisses_CoalescedIntoOneLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.Many<FlightSearchResult> pendingQuery = Sinks.many().replay().all();
+        
+        Flux<FlightSearchResult> first = searchCache.get(key, k -> {
+            loads.incrementAndGet();
+            return pendingQuery.asFlux();
+        });
+        Flux<FlightSearchResult> second = searchCache.get(key, k -> {
+            loads.incrementAndGet();
+            return Flux.empty();
+        });
+        
+        StepVerifier.create(Flux.merge(first, second))
+                .then(() -> {
+                    pendingQuery.tryEmitNext(testResult);
+                    pendingQuery.tryEmitComplete();
+                })
+                .expectNext(testResult, testResult)
+                .verifyComplete();
+        
+        assertEquals(1, loads.get());
+        assertEquals(1, searchCache.stats().missCount());
+        assertEquals(1, searchCache.stats().hitCount());
+    }
+
+    @Test
+    void onInventoryChanged_PatchesTheFlightInTheCachedRouteDay() {
+        AtomicInteger loads = new AtomicInteger();
+        Flight other = new Flight();
+        other.setId("102");
+        other.setFromPlace("DEL");
+        other.setToPlace("BOM");
+        other.setScheduleDate(testFlight.getScheduleDate());
+        other.setAvailableSeats(5);
+        
+        searchCache.get(key, k -> Flux.just(testResult).doOnSubscribe(s -> loads.incrementAndGet())).blockLast();
+        testFlight.setAvailableSeats(8);
+        searchCache.onInventoryChanged(new FlightInventoryChangedEvent(testFlight));
+        searchCache.onInventoryChanged(new FlightInventoryChangedEvent(other));
+        
+        StepVerifier.create(searchCache.get(key, k -> Flux.<FlightSearchResult>empty()
+                    .doOnSubscribe(s -> loads.incrementAndGet())))
+                .expectNextMatches(result -> "101".equals(result.id()) && result.availableSeats() == 8)
+                .expectNextMatches(result -> "102".equals(result.id()))
+                .verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void onInventoryChanged_SoldOutFlight_LeavesTheCachedRouteDay() {
+        searchCache.get(key, k -> Flux.just(testResult)).blockLast();
+        testFlight.setAvailableSeats(0);
+        searchCache.onInventoryChanged(new FlightInventoryChangedEvent(testFlight));
+        
+        StepVerifier.create(searchCache.get(key, k -> Flux.just(testResult))).verifyComplete();
+    }
+
+    @Test
+    void onInventoryChanged_RouteDayStillLoading_Dropped() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.Many<FlightSearchResult> pendingQuery = Sinks.many().replay().all();
+        
+        Flux<FlightSearchResult> loading = searchCache.get(key, k -> {
+            loads.incrementAndGet();
+            return pendingQuery.asFlux();
+        });
+        StepVerifier.create(loading)
+                .then(() -> {
+                    // the query may have read the flight before this change
+                    searchCache.onInventoryChanged(new FlightInventoryChangedEvent(testFlight));
+                    pendingQuery.tryEmitNext(testResult);
+                    pendingQuery.tryEmitComplete();
+                })
+                .expectNext(testResult)
+                .verifyComplete();
+        searchCache.get(key, k -> Flux.just(testResult).doOnSubscribe(s -> loads.incrementAndGet())).blockLast();
+        
+        assertEquals(2, loads.get());
+    }
+}
@@ -3,21 +3,44 @@ package com.flight.app.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.flight.app.dto.FareCalendarDay;
+import com.flight.app.dto.FlightIngestResult;
+import com.flight.app.dto.FlightSearchResult;
+import com.flight.app.dto.SeatAvailabilityUpdate;
 import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.exception.ResourceNotFoundException;
 import com.flight.app.repository.FlightRepository;
+import com.flight.app.service.impl.FlightLookupCoalescer;
+import com.flight.app.service.impl.FlightSearchCache;
 import com.flight.app.service.impl.FlightServiceImpl;
+import com.flight.app.service.impl.LowestFareIndex;
+import com.flight.app.service.impl.RouteGraph;
+import com.flight.app.service.impl.SeatAvailabilityBroadcaster;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,13 +48,30 @@ class FlightServiceTest {
 
     @Mock
     private FlightRepository flightRepository;
-    @InjectMocks
+    @Mock
+    private SeatInventory seatInventory;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    @Spy
+    private FlightSearchCache searchCache = new FlightSearchCache(100, Duration.ofSeconds(30), new SimpleMeterRegistry());
+    @Spy
+    private FlightLookupCoalescer lookupCoalescer = new FlightLookupCoalescer(Duration.ZERO, new SimpleMeterRegistry());
+    @Mock
+    private RouteGraph routeGraph;
+    @Mock
+    private LowestFareIndex lowestFareIndex;
+    @Mock
+    private SeatAvailabilityBroadcaster availabilityBroadcaster;
     private FlightServiceImpl flightService;
     private Flight testFlight;
     private final String testFlightPNR = "CHUBBFLIGHT101ABC";
+    private final BitSet testSeats = BitSet.valueOf(new long[] {0b11});
 
     @BeforeEach
     void setUp() {
+        flightService = flightService(500);
         testFlight = new Flight();
         testFlight.setId(testFlightPNR); 
         testFlight.setAirlineName("Air India");
@@ -54,7 +94,9 @@ class FlightServiceTest {
                 .expectNext(testFlightPNR) 
                 .verifyComplete();
 
-        verify(flightRepository, times(1)).save(testFlight);
+        verify(flightRepository, times(1)).save(argThat(f -> f.getAvailableSeats() == 150 
+                && f.getSeatsPerRow() == 6 && f.getSeatMap().size() == 4));
+        verify(seatInventory, times(1)).track(testFlight);
     }
     
     @Test
@@ -79,6 +121,117 @@ class FlightServiceTest {
         verify(flightRepository, never()).save(any(Flight.class));
     }
     
+    @Test
+    void addFlight_ValidationFailure_NoTotalSeats() {
+        testFlight.setTotalSeats(null);
+        Mono<String> result = flightService.addFlight(testFlight);
+        StepVerifier.create(result)
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException 
+                        && "Total seats must be at least 1.".equals(e.getMessage()))
+                .verify();
+
+        verify(flightRepository, never()).save(any(Flight.class));
+    }
+    
+    @Test
+    void addFlight_MoreSeatsThanRowsCanNumber_Rejected() {
+        testFlight.setTotalSeats(6000);
+        StepVerifier.create(flightService.addFlight(testFlight))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException 
+                        && "Total seats cannot be more than 5994 for 6 seats per row.".equals(e.getMessage()))
+                .verify();
+
+        verify(flightRepository, never()).save(any(Flight.class));
+    }
+    
+    @Test
+    void addFlight_CancelledFromClient_Ignored() {
+        testFlight.setCancelled(true);
+        when(flightRepository.save(any(Flight.class))).thenReturn(Mono.just(testFlight));
+        StepVerifier.create(flightService.addFlight(testFlight))
+                .expectNext(testFlightPNR)
+                .verifyComplete();
+
+        verify(flightRepository, times(1)).save(argThat(f -> f.getCancelled() == null && f.getAvailableSeats() == 150));
+    }
+    
+    @Test
+    void addFlights_HugeTotalSeats_RejectedBeforeSeatMap() {
+        Flight huge = testFlight.toBuilder().id(null).totalSeats(Integer.MAX_VALUE).build();
+        
+        StepVerifier.create(flightService.addFlights(Flux.just(huge)))
+                .expectNext(FlightIngestResult.rejected(0, "totalSeats: Total seats cannot be more than 9990."))
+                .verifyComplete();
+        
+        verify(flightRepository, never()).insert(anyList());
+    }
+    
+    @Test
+    void addFlights_NoTotalSeats_OnlyThatItemRejected() {
+        Flight noSeats = testFlight.toBuilder().id(null).totalSeats(null).build();
+        testFlight.setId(null);
+        when(flightRepository.insert(anyList())).thenAnswer(inv -> Flux.fromIterable(inv.<List<Flight>>getArgument(0)));
+        
+        StepVerifier.create(flightService.addFlights(Flux.just(noSeats, testFlight)))
+                .expectNext(FlightIngestResult.rejected(0, "totalSeats: Total seats is required."))
+                .expectNextMatches(r -> r.index() == 1 && r.accepted())
+                .verifyComplete();
+        
+        verify(flightRepository, times(1)).insert(argThat((List<Flight> flights) -> flights.size() == 1));
+    }
+    
+    @Test
+    void addFlights_MixedUpload_PerItemResultsAndSingleBatchInsert() {
+        Flight invalidFlight = testFlight.toBuilder().id(null).toPlace("DEL").build();
+        Flight secondFlight = testFlight.toBuilder().id(null).totalSeats(80).build();
+        testFlight.setId(null);
+        when(flightRepository.insert(anyList())).thenAnswer(inv -> Flux.fromIterable(inv.<List<Flight>>getArgument(0)));
+        
+        StepVerifier.create(flightService.addFlights(Flux.just(testFlight, invalidFlight, secondFlight)))
+                .expectNextMatches(r -> r.index() == 0 && r.accepted() && r.flightId() != null)
+                .expectNext(FlightIngestResult.rejected(1, "Departure and arrival places cannot be the same."))
+                .expectNextMatches(r -> r.index() == 2 && r.accepted())
+                .verifyComplete();
+        
+        verify(flightRepository, times(1)).insert(argThat((List<Flight> flights) -> flights.size() == 2 
+                && flights.get(1).getAvailableSeats() == 80));
+        verify(flightRepository, never()).save(any(Flight.class));
+    }
+    
+    @Test
+    void addFlights_LargeUpload_RequestsOneBatchAtATime() {
+        FlightServiceImpl service = flightService(2);
+        List<Long> requests = new ArrayList<>();
+        Flux<Flight> upload = Flux.range(0, 6)
+                .map(i -> testFlight.toBuilder().id(null).build())
+                .doOnRequest(requests::add);
+        when(flightRepository.insert(anyList())).thenAnswer(inv -> Flux.fromIterable(inv.<List<Flight>>getArgument(0)));
+        
+        StepVerifier.create(service.addFlights(upload))
+                .expectNextCount(6)
+                .verifyComplete();
+        
+        // upstream is asked for one batch at a time, a prefetch of 32 would ask for 64 flights up front
+        assertEquals(List.of(2L, 2L, 2L, 2L), requests);
+        verify(flightRepository, times(3)).insert(anyList());
+    }
+    
+    @Test
+    void constructor_BatchSizeBelowOne_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> flightService(0));
+    }
+    
+    @Test
+    void addFlights_ExistingId_RejectedWithoutInsert() {
+        when(flightRepository.findAllById(anyIterable())).thenReturn(Flux.just(testFlight));
+        
+        StepVerifier.create(flightService.addFlights(Flux.just(testFlight)))
+                .expectNextMatches(r -> !r.accepted() && r.error().contains("already exists"))
+                .verifyComplete();
+        
+        verify(flightRepository, never()).insert(anyList());
+    }
+    
     @Test
     void searchFlights_Success_ReturnsMatchingFlights() {
         String from = "DEL";
@@ -97,6 +250,82 @@ class FlightServiceTest {
                 from, to, date, 0);
     }
 
+    @Test
+    void searchFlightResults_RepeatedSearch_ServedFromCache() {
+        String from = "DEL";
+        String to = "BOM";
+        LocalDate date = LocalDate.of(2025, 12, 25);
+        FlightSearchResult result = FlightSearchResult.of(testFlight);
+        
+        when(flightRepository.findSearchResults(from, to, date, 0)).thenReturn(Flux.just(result));
+        StepVerifier.create(flightService.searchFlightResults(from, to, date))
+                .expectNext(result)
+                .verifyComplete();
+        StepVerifier.create(flightService.searchFlightResults(from, to, date))
+                .expectNext(result)
+                .verifyComplete();
+        
+        verify(flightRepository, times(1)).findSearchResults(from, to, date, 0);
+        verify(flightRepository, never()).findByFromPlaceAndToPlaceAndScheduleDateAndAvailableSeatsGreaterThan(
+                any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void streamFlightResults_NotCached() {
+        String from = "DEL";
+        String to = "BOM";
+        LocalDate date = LocalDate.of(2025, 12, 25);
+        FlightSearchResult result = FlightSearchResult.of(testFlight);
+        
+        when(flightRepository.findSearchResults(from, to, date, 0)).thenReturn(Flux.just(result));
+        StepVerifier.create(flightService.streamFlightResults(from, to, date))
+                .expectNext(result)
+                .verifyComplete();
+        StepVerifier.create(flightService.streamFlightResults(from, to, date))
+                .expectNext(result)
+                .verifyComplete();
+        
+        verify(flightRepository, times(2)).findSearchResults(from, to, date, 0);
+    }
+
+    @Test
+    void getFareCalendar_RangeStartsToday_OneAggregation() {
+        LocalDate today = LocalDate.now();
+        FareCalendarDay day = new FareCalendarDay(today.plusDays(1), 4500.00, 2, 20);
+        
+        when(flightRepository.findFareCalendar("DEL", "BOM", today, today.plusDays(4), 2)).thenReturn(Flux.just(day));
+        // journey tomorrow +-3 days, the two days before today are left out
+        StepVerifier.create(flightService.getFareCalendar("DEL", "BOM", today.plusDays(1), 3, 2))
+                .expectNext(day)
+                .verifyComplete();
+        
+        verify(flightRepository, times(1)).findFareCalendar(any(), any(), any(), any(), anyInt());
+        verify(flightRepository, never()).findSearchResults(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void watchFlightAvailability_CurrentSeatsThenChanges() {
+        SeatAvailabilityUpdate change = new SeatAvailabilityUpdate(testFlightPNR, "DEL", "BOM", 
+                testFlight.getScheduleDate(), 148);
+        when(flightRepository.findById(testFlightPNR)).thenReturn(Mono.just(testFlight));
+        when(availabilityBroadcaster.watchFlight(testFlightPNR)).thenReturn(Flux.just(change));
+        
+        StepVerifier.create(flightService.watchFlightAvailability(testFlightPNR))
+                .expectNext(SeatAvailabilityUpdate.of(testFlight))
+                .expectNext(change)
+                .verifyComplete();
+    }
+
+    @Test
+    void watchFlightAvailability_UnknownFlight_NotFound() {
+        when(flightRepository.findById("NOPE")).thenReturn(Mono.empty());
+        when(availabilityBroadcaster.watchFlight("NOPE")).thenReturn(Flux.never());
+        
+        StepVerifier.create(flightService.watchFlightAvailability("NOPE"))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+    }
+
     @Test
     void searchFlights_EmptyResult_NoMatchingFlights() {
         String from = "DEL";
@@ -143,4 +372,51 @@ class FlightServiceTest {
         
         verify(flightRepository, times(1)).save(testFlight);
     }
+    
+    @Test
+    void reserveSeats_DelegatesToSeatInventory() {
+        testFlight.setAvailableSeats(148);
+        when(seatInventory.reserve(testFlightPNR, testSeats)).thenReturn(Mono.just(testFlight));
+        StepVerifier.create(flightService.reserveSeats(testFlightPNR, testSeats))
+                .expectNextMatches(f -> f.getAvailableSeats() == 148)
+                .verifyComplete();
+        
+        verify(flightRepository, never()).save(any(Flight.class));
+        verify(eventPublisher, times(1)).publishEvent(new FlightInventoryChangedEvent(testFlight));
+    }
+    
+    @Test
+    void reserveSeats_SoldOut_ReturnsEmptyMono() {
+        when(seatInventory.reserve(testFlightPNR, testSeats)).thenReturn(Mono.empty());
+        StepVerifier.create(flightService.reserveSeats(testFlightPNR, testSeats))
+                .verifyComplete();
+        
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+    
+    @Test
+    void releaseSeats_DelegatesToSeatInventory() {
+        when(seatInventory.release(testFlightPNR, 2, testSeats)).thenReturn(Mono.just(testFlight));
+        StepVerifier.create(flightService.releaseSeats(testFlightPNR, 2, testSeats))
+                .expectNext(testFlight)
+                .verifyComplete();
+    }
+    
+    @Test
+    void getSeatAvailability_AnsweredFromSeatMap() {
+        // 2 rows of 4, row 2 only has 2 seats, 1B is taken
+        Flight seatMap = Flight.builder().id(testFlightPNR).totalSeats(6).availableSeats(5).seatsPerRow(4)
+                .seatMap(List.of(~(0b1111L | 0b11L << 10) | 0b10L)).build();
+        when(seatInventory.seatMap(testFlightPNR)).thenReturn(Mono.just(seatMap));
+        
+        StepVerifier.create(flightService.getSeatAvailability(testFlightPNR))
+                .expectNextMatches(a -> a.availableSeats() == 5 
+                        && a.freeSeats().equals(List.of("1A", "1C", "1D", "2A", "2B")))
+                .verifyComplete();
+    }
+    
+    private FlightServiceImpl flightService(int bulkBatchSize) {
+        return new FlightServiceImpl(flightRepository, seatInventory, searchCache, lookupCoalescer, routeGraph,
+                lowestFareIndex, availabilityBroadcaster, eventPublisher, validator, bulkBatchSize);
+    }
 }
@@ -0,0 +1,119 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.Passenger;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.PnrGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookingGroupCommitterTest {
+
+    @Mock
+    private FlightService flightService;
+    @Mock
+    private BookingRepository bookingRepository;
+    @Mock
+    private PnrGenerator pnrGenerator;
+
+    private BookingGroupCommitter groupCommitter;
+    private Flight testFlight;
+    private final String testFlightId = "100";
+
+    @BeforeEach
+    void setUp() {
+        // wide window so all bookings of a test land in one batch
+        groupCommitter = new BookingGroupCommitter(flightService, bookingRepository, pnrGenerator,
+                new Outbox(null, Optional.empty(), false), true, Duration.ofMillis(200), 3, new SimpleMeterRegistry());
+
+        testFlight = new Flight();
+        testFlight.setId(testFlightId);
+        testFlight.setPrice(100.00);
+        testFlight.setScheduleDate(LocalDate.now().plusDays(5));
+    }
+
+    private static Booking booking(String... seatNumbers) {
+        Booking booking = new Booking();
+        booking.setPassengers(List.of(seatNumbers).stream().map(seatNumber -> {
+            Passenger passenger = new Passenger();
+            passenger.setSeatNumber(seatNumber);
+            return passenger;
+        }).toList());
+        return booking;
+    }
+
+    private Mono<String> submit(Booking booking, Mono<String> single) {
+        BitSet seats = SeatMap.parse(booking.getPassengers().stream().map(Passenger::getSeatNumber).toList());
+        return groupCommitter.submit(testFlightId, booking, seats, () -> single);
+    }
+
+    @Test
+    void concurrentBookings_OneClaimAndOneInsert() {
+        when(flightService.reserveSeats(eq(testFlightId), any(BitSet.class))).thenReturn(Mono.just(testFlight));
+        when(pnrGenerator.next()).thenReturn("PNR1", "PNR2", "PNR3");
+        when(bookingRepository.insert(anyList())).thenAnswer(invocation ->
+                Flux.fromIterable(invocation.<List<Booking>>getArgument(0)));
+
+        Mono<String> single = Mono.error(new AssertionError("booked alone"));
+        StepVerifier.create(Mono.zip(submit(booking("1A"), single), submit(booking("1B", "1C"), single),
+                    submit(booking("2A"), single)))
+            .expectNextMatches(pnrs -> pnrs.getT1().equals("PNR1") && pnrs.getT2().equals("PNR2")
+                    && pnrs.getT3().equals("PNR3"))
+            .verifyComplete();
+
+        // 1A, 1B, 1C and 2A in one claim
+        verify(flightService, times(1)).reserveSeats(testFlightId, BitSet.valueOf(new long[] {0b111 | 1L << 10}));
+        verify(bookingRepository, times(1)).insert(anyList());
+        verify(bookingRepository, never()).insert(any(Booking.class));
+    }
+
+    @Test
+    void combinedClaimFails_EachBookingOnItsOwn() {
+        when(flightService.reserveSeats(eq(testFlightId), any(BitSet.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(Mono.zip(submit(booking("1A"), Mono.just("PNR1")),
+                    submit(booking("1B"), Mono.error(new IllegalStateException("Seats not available: 1B")))
+                        .onErrorReturn("rejected")))
+            .expectNextMatches(pnrs -> pnrs.getT1().equals("PNR1") && pnrs.getT2().equals("rejected"))
+            .verifyComplete();
+
+        verify(bookingRepository, never()).insert(anyList());
+    }
+
+    @Test
+    void sameSeatTwiceInBatch_LaterBookingOnItsOwn() {
+        when(flightService.reserveSeats(eq(testFlightId), any(BitSet.class))).thenReturn(Mono.just(testFlight));
+        when(pnrGenerator.next()).thenReturn("PNR1", "PNR2");
+        when(bookingRepository.insert(anyList())).thenAnswer(invocation ->
+                Flux.fromIterable(invocation.<List<Booking>>getArgument(0)));
+
+        Mono<String> single = Mono.error(new AssertionError("booked alone"));
+        StepVerifier.create(Mono.zip(submit(booking("1A"), single), submit(booking("1B"), single),
+                    submit(booking("1A"), Mono.just("PNR3"))))
+            .expectNextMatches(pnrs -> pnrs.getT1().equals("PNR1") && pnrs.getT2().equals("PNR2")
+                    && pnrs.getT3().equals("PNR3"))
+            .verifyComplete();
+
+        verify(flightService, times(1)).reserveSeats(testFlightId, BitSet.valueOf(new long[] {0b11}));
+    }
+}
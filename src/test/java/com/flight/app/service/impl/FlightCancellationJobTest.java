@@ -0,0 +1,188 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.FlightCancellation;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.entity.Passenger;
+import com.flight.app.entity.WaitlistEntry;
+import com.flight.app.repository.inmemory.InMemoryBookingRepository;
+import com.flight.app.repository.inmemory.InMemoryFlightCancellationRepository;
+import com.flight.app.repository.inmemory.InMemoryOutboxEventRepository;
+import com.flight.app.repository.inmemory.InMemoryWaitlistEntryRepository;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.PnrGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlightCancellationJobTest {
+
+    @Mock
+    private FlightService flightService;
+    @Mock
+    private PnrGenerator pnrGenerator;
+
+    private InMemoryFlightCancellationRepository cancellationRepository;
+    private InMemoryBookingRepository bookingRepository;
+    private InMemoryOutboxEventRepository outboxRepository;
+    private InMemoryWaitlistEntryRepository waitlistRepository;
+    private Outbox outbox;
+    private Waitlist waitlist;
+    private FlightCancellationJob job;
+    private Flight flight;
+
+    @BeforeEach
+    void setUp() {
+        cancellationRepository = new InMemoryFlightCancellationRepository();
+        bookingRepository = new InMemoryBookingRepository();
+        outboxRepository = new InMemoryOutboxEventRepository();
+        waitlistRepository = new InMemoryWaitlistEntryRepository();
+        outbox = new Outbox(outboxRepository, Optional.empty(), true);
+        waitlist = new Waitlist(waitlistRepository, flightService, bookingRepository, pnrGenerator, outbox,
+                Duration.ofSeconds(60), Duration.ofSeconds(30), new SimpleMeterRegistry());
+        // pages of 2, so the bookings below take several
+        job = job(Duration.ZERO);
+
+        flight = new Flight();
+        flight.setId("F1");
+        flight.setScheduleDate(LocalDate.now().plusDays(5));
+    }
+
+    private FlightCancellationJob job(Duration gracePeriod) {
+        return new FlightCancellationJob(cancellationRepository, flightService, bookingRepository, outbox, waitlist,
+                2, 2, Duration.ofSeconds(60), gracePeriod, Duration.ofSeconds(30), new SimpleMeterRegistry());
+    }
+
+    private void book(String flightId, String pnr, String... seatNumbers) {
+        List<Passenger> passengers = Arrays.stream(seatNumbers)
+                .map(seat -> new Passenger(null, "AAA", "Female", 30, seat))
+                .toList();
+        bookingRepository.insert(new Booking(pnr, "User", "user@test.com", "9999999999", LocalDateTime.now(),
+                passengers.size(), "Veg", 1000.00 * passengers.size(), flightId, flight.getScheduleDate(),
+                passengers)).block();
+    }
+
+    @Test
+    void cancel_EveryBookingOfTheFlightCancelledWithAnEventEach() {
+        book("F1", "P1", "1A", "1B");
+        book("F1", "P2", "2A");
+        book("F1", "P3", "3A");
+        book("F1", "P4", "4A");
+        book("F1", "P5", "5A");
+        book("F2", "P6", "1A");
+        waitlistRepository.insert(new WaitlistEntry("W1", "F1", "User", "user@test.com", "9999999999", "Veg",
+                List.of(new Passenger(null, "AAA", "Female", 30, "1A")), Instant.now(),
+                WaitlistEntry.Status.WAITING, null, null)).block();
+        when(flightService.getFlightById("F1")).thenReturn(Mono.just(flight));
+        when(flightService.cancelFlight("F1")).thenReturn(Mono.just(flight));
+
+        StepVerifier.create(job.cancel("F1", "weather"))
+                .expectNextMatches(cancellation -> cancellation.getBookingsTotal() == 5
+                        && "weather".equals(cancellation.getReason()))
+                .verifyComplete();
+
+        StepVerifier.create(job.getProgress("F1"))
+                .expectNextMatches(cancellation -> cancellation.getStatus() == FlightCancellation.Status.COMPLETED
+                        && cancellation.getBookingsCancelled() == 5 && cancellation.getPassengersAffected() == 6
+                        && cancellation.getLeaseUntil() == null)
+                .verifyComplete();
+        StepVerifier.create(bookingRepository.findAll().map(Booking::getPnr))
+                .expectNext("P6")
+                .verifyComplete();
+        List<OutboxEvent> events = outboxRepository.findAll().collectList().block();
+        assertEquals(5, events.size());
+        assertEquals(List.of("P1", "P2", "P3", "P4", "P5"), events.stream()
+                .filter(event -> event.getType() == OutboxEvent.Type.FLIGHT_CANCELLED)
+                .map(OutboxEvent::getPnr)
+                .sorted()
+                .toList());
+        assertEquals(WaitlistEntry.Status.CLOSED, waitlistRepository.findById("W1").block().getStatus());
+    }
+
+    @Test
+    void run_BookingStoredAfterTheMark_CaughtByTheLastPass() {
+        FlightCancellation requested = new FlightCancellation("F1", "weather", FlightCancellation.Status.RUNNING,
+                0, 0, 0, null, Instant.now(), Instant.now(), Instant.now());
+        cancellationRepository.insert(requested).block();
+        when(flightService.cancelFlight("F1")).thenReturn(Mono.just(flight));
+        FlightCancellationJob withGrace = job(Duration.ofSeconds(10));
+
+        StepVerifier.withVirtualTime(() -> withGrace.run("F1"))
+                .expectSubscription()
+                // claimed its seats before the mark, stored once the first pass is done
+                .then(() -> book("F1", "P1", "1A"))
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNextMatches(cancellation -> cancellation.getStatus() == FlightCancellation.Status.COMPLETED
+                        && cancellation.getBookingsCancelled() == 1)
+                .verifyComplete();
+        StepVerifier.create(bookingRepository.findAll()).verifyComplete();
+    }
+
+    @Test
+    void resumeAll_JobOfAStoppedInstance_GoesOnAfterTheCheckpoint() {
+        // P1 and P2 were done before the stop
+        book("F1", "P3", "3A");
+        book("F1", "P4", "4A");
+        book("F1", "P5", "5A");
+        Instant now = Instant.now();
+        cancellationRepository.insert(new FlightCancellation("F1", "weather", FlightCancellation.Status.RUNNING,
+                5, 2, 2, "P2", now.minusSeconds(120), now.minusSeconds(90), now.minusSeconds(30))).block();
+        when(flightService.cancelFlight("F1")).thenReturn(Mono.just(flight));
+
+        StepVerifier.create(job.resumeAll()).verifyComplete();
+
+        FlightCancellation completed = cancellationRepository.findById("F1").block();
+        assertEquals(FlightCancellation.Status.COMPLETED, completed.getStatus());
+        assertEquals(5, completed.getBookingsCancelled());
+        StepVerifier.create(bookingRepository.findAll()).verifyComplete();
+        StepVerifier.create(outboxRepository.findAll()).expectNextCount(3).verifyComplete();
+    }
+
+    @Test
+    void run_LeaseHeldByAnotherInstance_LeftAlone() {
+        book("F1", "P1", "1A");
+        Instant now = Instant.now();
+        cancellationRepository.insert(new FlightCancellation("F1", "weather", FlightCancellation.Status.RUNNING,
+                1, 0, 0, null, now, now, now.plusSeconds(60))).block();
+
+        StepVerifier.create(job.run("F1")).verifyComplete();
+
+        StepVerifier.create(bookingRepository.findAll()).expectNextCount(1).verifyComplete();
+        verify(flightService, never()).cancelFlight(any());
+    }
+
+    @Test
+    void cancel_Twice_AnswersWithTheFirstJob() {
+        when(flightService.getFlightById("F1")).thenReturn(Mono.just(flight));
+        when(flightService.cancelFlight("F1")).thenReturn(Mono.just(flight));
+        job.cancel("F1", "weather").block();
+
+        StepVerifier.create(job.cancel("F1", "strike"))
+                .expectNextMatches(cancellation -> "weather".equals(cancellation.getReason())
+                        && cancellation.getStatus() == FlightCancellation.Status.COMPLETED)
+                .verifyComplete();
+        // once by cancel and once by the run
+        verify(flightService, times(2)).cancelFlight("F1");
+    }
+}
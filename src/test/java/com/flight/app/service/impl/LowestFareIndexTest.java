@@ -0,0 +1,124 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.LowestFare;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.repository.FlightRepository;
+import com.flight.app.repository.LowestFareRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LowestFareIndexTest {
+
+    @Mock
+    private LowestFareRepository lowestFareRepository;
+    @Mock
+    private FlightRepository flightRepository;
+
+    private LowestFareIndex index;
+    private final LocalDate journeyDate = LocalDate.now().plusMonths(1);
+    private final YearMonth month = YearMonth.from(journeyDate);
+
+    @BeforeEach
+    void setUp() {
+        index = new LowestFareIndex(lowestFareRepository, flightRepository, Duration.ofSeconds(1));
+    }
+
+    private Flight flight(String id, double price, int availableSeats) {
+        Flight flight = new Flight();
+        flight.setId(id);
+        flight.setFromPlace("DEL");
+        flight.setToPlace("BOM");
+        flight.setScheduleDate(journeyDate);
+        flight.setDepartureTime(LocalTime.of(8, 0));
+        flight.setArrivalTime(LocalTime.of(10, 0));
+        flight.setPrice(price);
+        flight.setTotalSeats(150);
+        flight.setAvailableSeats(availableSeats);
+        return flight;
+    }
+
+    private void changed(Flight flight) {
+        index.onInventoryChanged(new FlightInventoryChangedEvent(flight));
+    }
+
+    @Test
+    void lowest_SoldOutFlight_NextCheapestTakesOver() {
+        changed(flight("F1", 4000.00, 10));
+        changed(flight("F2", 5000.00, 10));
+        changed(flight("F3", 4500.00, 10));
+        assertEquals("F1", index.lowest("DEL", "BOM", month).getFlightId());
+
+        changed(flight("F1", 4000.00, 0));
+        LowestFare lowest = index.lowest("DEL", "BOM", month);
+        assertEquals("F3", lowest.getFlightId());
+        assertEquals(4500.00, lowest.getPrice());
+
+        // seats given back, cheapest again
+        changed(flight("F1", 4000.00, 2));
+        assertEquals("F1", index.lowest("DEL", "BOM", month).getFlightId());
+    }
+
+    @Test
+    void lowest_FlightMovedToOtherMonth_LeavesOldMonth() {
+        changed(flight("F1", 4000.00, 10));
+        Flight moved = flight("F1", 4000.00, 10);
+        moved.setScheduleDate(journeyDate.plusMonths(1));
+        changed(moved);
+
+        assertNull(index.lowest("DEL", "BOM", month));
+        assertEquals("F1", index.lowest("DEL", "BOM", month.plusMonths(1)).getFlightId());
+    }
+
+    @Test
+    void flush_WritesChangedMonthsAndDeletesEmptyOnes() {
+        when(lowestFareRepository.saveAll(anyIterable())).thenReturn(Flux.empty());
+        when(lowestFareRepository.deleteAllById(anyIterable())).thenReturn(Mono.empty());
+
+        changed(flight("F1", 4000.00, 10));
+        StepVerifier.create(index.flush()).verifyComplete();
+        verify(lowestFareRepository).saveAll(argThat((Iterable<LowestFare> fares) ->
+                fares.iterator().next().getFlightId().equals("F1")));
+
+        // nothing changed since, nothing to write
+        StepVerifier.create(index.flush()).verifyComplete();
+        verify(lowestFareRepository, times(1)).saveAll(anyIterable());
+
+        changed(flight("F1", 4000.00, 0));
+        StepVerifier.create(index.flush()).verifyComplete();
+        verify(lowestFareRepository).deleteAllById(List.of("DEL|BOM|" + month));
+    }
+
+    @Test
+    void rebuild_StoredValuesAnswerUntilRebuilt() {
+        LowestFare stored = new LowestFare("DEL|BOM|" + month, "DEL", "BOM", month.toString(), 3000.00, "OLD",
+                journeyDate);
+        when(lowestFareRepository.findAll()).thenReturn(Flux.just(stored));
+        when(flightRepository.findByScheduleDateGreaterThanEqual(any())).thenReturn(Flux.just(flight("F1", 4000.00, 10)));
+
+        StepVerifier.create(index.restore()).verifyComplete();
+        assertEquals("OLD", index.lowest("DEL", "BOM", month).getFlightId());
+
+        StepVerifier.create(index.rebuild()).expectNext(1L).verifyComplete();
+        assertEquals("F1", index.lowest("DEL", "BOM", month).getFlightId());
+    }
+}
@@ -0,0 +1,190 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.repository.inmemory.InMemoryOutboxEventRepository;
+import com.flight.app.service.OutboxSink;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboxRelayTest {
+
+    private InMemoryOutboxEventRepository outboxRepository;
+    private Outbox outbox;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository = new InMemoryOutboxEventRepository();
+        outbox = new Outbox(outboxRepository, Optional.empty(), true);
+    }
+
+    // batches of 2, no backoff so a failed event is due again on the next drain
+    private OutboxRelay relay(int maxAttempts, OutboxSink... sinks) {
+        return new OutboxRelay(outboxRepository, outbox, List.of(sinks), true, Duration.ofSeconds(1), 2, 4,
+                maxAttempts, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(30), new SimpleMeterRegistry());
+    }
+
+    private OutboxSink recording(String name) {
+        return event -> Mono.fromRunnable(() -> received.add(name + ":" + event.getType() + ":" + event.getPnr()));
+    }
+
+    private static Booking booking(String pnr) {
+        Booking booking = new Booking();
+        booking.setPnr(pnr);
+        booking.setFlightId("F1");
+        return booking;
+    }
+
+    private void written(OutboxEvent.Type type, String pnr) {
+        outbox.write(Mono.just(pnr), () -> List.of(Outbox.event(type, booking(pnr))), Mono::empty).block();
+    }
+
+    // written at createdAt, due right away
+    private OutboxEvent stored(OutboxEvent.Type type, String pnr, Instant createdAt) {
+        return outboxRepository.insert(new OutboxEvent(null, type, pnr, "F1", booking(pnr), createdAt,
+                OutboxEvent.Status.PENDING, 0, createdAt, null)).block();
+    }
+
+    @Test
+    void write_ChangeFails_NoEvents() {
+        StepVerifier.create(outbox.write(Mono.error(new RuntimeException("insert failed")),
+                    () -> List.of(Outbox.event(OutboxEvent.Type.BOOKING_CONFIRMED, booking("P1"))), Mono::empty))
+                .expectErrorMessage("insert failed")
+                .verify();
+
+        // a delete completes empty and still gets its event
+        StepVerifier.create(outbox.write(Mono.empty(),
+                    () -> List.of(Outbox.event(OutboxEvent.Type.BOOKING_CANCELLED, booking("P2"))), Mono::empty))
+                .verifyComplete();
+        StepVerifier.create(outboxRepository.findAll().map(OutboxEvent::getPnr))
+                .expectNext("P2")
+                .verifyComplete();
+    }
+
+    @Test
+    void write_EventsNotStored_ChangeUndoneAndFailed() {
+        InMemoryOutboxEventRepository failingRepository = new InMemoryOutboxEventRepository() {
+            @Override
+            public <S extends OutboxEvent> Flux<S> insert(Iterable<S> events) {
+                return Flux.error(new RuntimeException("outbox down"));
+            }
+        };
+        Outbox failingOutbox = new Outbox(failingRepository, Optional.empty(), true);
+        List<String> undone = new CopyOnWriteArrayList<>();
+
+        StepVerifier.create(failingOutbox.write(Mono.just("P1"),
+                    () -> List.of(Outbox.event(OutboxEvent.Type.BOOKING_CONFIRMED, booking("P1"))),
+                    () -> Mono.fromRunnable(() -> undone.add("P1"))))
+                .expectErrorMessage("outbox down")
+                .verify();
+        assertEquals(List.of("P1"), undone);
+    }
+
+    @Test
+    void drain_EverySinkInOrderPerBooking_DeliveredEventsDeleted() {
+        written(OutboxEvent.Type.BOOKING_CONFIRMED, "P1");
+        written(OutboxEvent.Type.BOOKING_CONFIRMED, "P2");
+        written(OutboxEvent.Type.BOOKING_CANCELLED, "P1");
+
+        // 3 events in batches of 2
+        StepVerifier.create(relay(3, recording("mail"), recording("loyalty")).drain())
+                .expectNext(3L)
+                .verifyComplete();
+
+        assertEquals(6, received.size());
+        assertTrue(received.indexOf("mail:BOOKING_CONFIRMED:P1") < received.indexOf("mail:BOOKING_CANCELLED:P1"));
+        assertTrue(received.contains("loyalty:BOOKING_CONFIRMED:P2"));
+        StepVerifier.create(outboxRepository.count()).expectNext(0L).verifyComplete();
+    }
+
+    @Test
+    void drain_SinkFails_RetriedThenKeptAsFailed() {
+        written(OutboxEvent.Type.BOOKING_CONFIRMED, "P1");
+        OutboxRelay relay = relay(2, event -> Mono.error(new RuntimeException("DCS down")));
+
+        StepVerifier.create(relay.drain()).expectNext(0L).verifyComplete();
+        StepVerifier.create(outboxRepository.findAll())
+                .expectNextMatches(event -> event.getStatus() == OutboxEvent.Status.PENDING
+                        && event.getAttempts() == 1 && "DCS down".equals(event.getLastError()))
+                .verifyComplete();
+
+        StepVerifier.create(relay.drain()).expectNext(0L).verifyComplete();
+        StepVerifier.create(outboxRepository.findAll())
+                .expectNextMatches(event -> event.getStatus() == OutboxEvent.Status.FAILED && event.getAttempts() == 2)
+                .verifyComplete();
+        // not due anymore
+        StepVerifier.create(outboxRepository.findDue(Instant.now(), 10)).verifyComplete();
+    }
+
+    @Test
+    void drain_EventLeasedByAnotherRelay_Skipped() {
+        written(OutboxEvent.Type.BOOKING_CONFIRMED, "P1");
+        String id = outboxRepository.findAll().blockFirst().getId();
+        outboxRepository.claim(id, Instant.now(), Instant.now().plusSeconds(30)).block();
+
+        StepVerifier.create(relay(3, recording("mail")).drain()).expectNext(0L).verifyComplete();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void drain_OlderEventOfTheBookingLeasedElsewhere_LaterOneWaitsForIt() {
+        Instant now = Instant.now();
+        OutboxEvent confirmed = stored(OutboxEvent.Type.BOOKING_CONFIRMED, "P1", now.minusSeconds(2));
+        OutboxEvent cancelled = stored(OutboxEvent.Type.BOOKING_CANCELLED, "P1", now.minusSeconds(1));
+        OutboxEvent leased = outboxRepository.claim(confirmed.getId(), now, now.plusSeconds(30)).block();
+
+        StepVerifier.create(relay(3, recording("mail")).drain()).expectNext(0L).verifyComplete();
+
+        assertTrue(received.isEmpty());
+        StepVerifier.create(outboxRepository.findById(cancelled.getId()))
+                .expectNextMatches(event -> event.getNextAttemptAt().equals(leased.getNextAttemptAt())
+                        && event.getAttempts() == 0)
+                .verifyComplete();
+    }
+
+    @Test
+    void drain_FailedEventOfTheBooking_LaterOneOnlyAfterItWasGivenUp() {
+        Instant now = Instant.now();
+        stored(OutboxEvent.Type.BOOKING_CONFIRMED, "P1", now.minusSeconds(2));
+        stored(OutboxEvent.Type.BOOKING_CANCELLED, "P1", now.minusSeconds(1));
+        OutboxSink confirmationsDown = event -> event.getType() == OutboxEvent.Type.BOOKING_CONFIRMED
+                ? Mono.error(new RuntimeException("DCS down"))
+                : recording("mail").publish(event);
+
+        // the first batch postpones the cancellation, the second gives the confirmation up
+        StepVerifier.create(relay(2, confirmationsDown).drain()).expectNext(1L).verifyComplete();
+
+        assertEquals(List.of("mail:BOOKING_CANCELLED:P1"), received);
+        StepVerifier.create(outboxRepository.findAll())
+                .expectNextMatches(event -> event.getType() == OutboxEvent.Type.BOOKING_CONFIRMED
+                        && event.getStatus() == OutboxEvent.Status.FAILED)
+                .verifyComplete();
+    }
+
+    @Test
+    void backoff_DoublesUpToMax() {
+        OutboxRelay relay = new OutboxRelay(outboxRepository, outbox, List.of(), true, Duration.ofSeconds(1), 2, 4,
+                10, Duration.ofSeconds(1), Duration.ofMinutes(5), Duration.ofSeconds(30), new SimpleMeterRegistry());
+
+        assertEquals(Duration.ofSeconds(1), relay.backoff(1));
+        assertEquals(Duration.ofSeconds(4), relay.backoff(3));
+        assertEquals(Duration.ofMinutes(5), relay.backoff(20));
+    }
+}
@@ -0,0 +1,116 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.flight.app.dto.Itinerary;
+import com.flight.app.dto.ItineraryLeg;
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.repository.FlightRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RouteGraphTest {
+
+    @Mock
+    private FlightRepository flightRepository;
+
+    private RouteGraph routeGraph;
+    private final LocalDate journeyDate = LocalDate.now().plusDays(5);
+    private final RouteGraph.Constraints constraints = new RouteGraph.Constraints(2, 2,
+            Duration.ofMinutes(45), Duration.ofHours(6));
+
+    @BeforeEach
+    void setUp() {
+        routeGraph = new RouteGraph(flightRepository, new SimpleMeterRegistry());
+    }
+
+    private Flight flight(String id, String from, String to, LocalDate date, int departureHour, int arrivalHour,
+            int availableSeats) {
+        Flight flight = new Flight();
+        flight.setId(id);
+        flight.setAirlineName("Air India");
+        flight.setFromPlace(from);
+        flight.setToPlace(to);
+        flight.setScheduleDate(date);
+        flight.setDepartureTime(LocalTime.of(departureHour, 0));
+        flight.setArrivalTime(LocalTime.of(arrivalHour, 0));
+        flight.setPrice(1000.00);
+        flight.setTotalSeats(150);
+        flight.setAvailableSeats(availableSeats);
+        return flight;
+    }
+
+    private static List<String> flightIds(Itinerary itinerary) {
+        return itinerary.legs().stream().map(ItineraryLeg::flightId).toList();
+    }
+
+    @Test
+    void connections_OneAndTwoStops_WithinLayoverLimits() {
+        when(flightRepository.findByScheduleDateGreaterThanEqual(any())).thenReturn(Flux.just(
+                flight("F1", "DEL", "BOM", journeyDate, 6, 8, 10),
+                flight("F2", "BOM", "BLR", journeyDate, 10, 12, 10),
+                // layover too short
+                flight("F3", "BOM", "BLR", journeyDate, 8, 10, 10),
+                flight("F4", "BOM", "GOI", journeyDate, 9, 10, 10),
+                flight("F5", "GOI", "BLR", journeyDate, 11, 12, 10),
+                // direct, left to the normal search
+                flight("F6", "DEL", "BLR", journeyDate, 7, 10, 10)));
+        StepVerifier.create(routeGraph.load()).expectNext(6L).verifyComplete();
+
+        List<Itinerary> itineraries = routeGraph.connections("DEL", "BLR", journeyDate, constraints);
+
+        assertEquals(2, itineraries.size());
+        assertTrue(itineraries.stream().anyMatch(i -> flightIds(i).equals(List.of("F1", "F2")) && i.stops() == 1));
+        assertTrue(itineraries.stream().anyMatch(i -> flightIds(i).equals(List.of("F1", "F4", "F5")) && i.stops() == 2));
+        assertEquals(360, itineraries.get(0).durationMinutes());
+        assertEquals(2000.00, itineraries.get(0).totalPrice());
+    }
+
+    @Test
+    void connections_LayoverIntoNextDay() {
+        when(flightRepository.findByScheduleDateGreaterThanEqual(any())).thenReturn(Flux.just(
+                flight("F1", "DEL", "BOM", journeyDate, 19, 22, 10),
+                flight("F2", "BOM", "BLR", journeyDate.plusDays(1), 1, 3, 10)));
+        routeGraph.load().block();
+
+        List<Itinerary> itineraries = routeGraph.connections("DEL", "BLR", journeyDate, constraints);
+
+        assertEquals(1, itineraries.size());
+        assertEquals(List.of("F1", "F2"), flightIds(itineraries.get(0)));
+    }
+
+    @Test
+    void connections_FollowInventoryChanges() {
+        when(flightRepository.findByScheduleDateGreaterThanEqual(any())).thenReturn(Flux.just(
+                flight("F1", "DEL", "BOM", journeyDate, 6, 8, 10),
+                flight("F2", "BOM", "BLR", journeyDate, 10, 12, 10)));
+        routeGraph.load().block();
+
+        // second leg down to one seat, the itinerary needs two
+        routeGraph.onInventoryChanged(new FlightInventoryChangedEvent(flight("F2", "BOM", "BLR", journeyDate, 10, 12, 1)));
+        assertTrue(routeGraph.connections("DEL", "BLR", journeyDate, constraints).isEmpty());
+
+        // a new flight shows up without reloading
+        routeGraph.onInventoryChanged(new FlightInventoryChangedEvent(flight("F3", "BOM", "BLR", journeyDate, 11, 13, 10)));
+        List<Itinerary> itineraries = routeGraph.connections("DEL", "BLR", journeyDate, constraints);
+        assertEquals(1, itineraries.size());
+        assertEquals(List.of("F1", "F3"), flightIds(itineraries.get(0)));
+    }
+}
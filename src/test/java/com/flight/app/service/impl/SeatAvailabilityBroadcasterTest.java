@@ -0,0 +1,101 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.flight.app.dto.SeatAvailabilityUpdate;
+import com.flight.app.entity.Flight;
+import com.flight.app.event.FlightInventoryChangedEvent;
+import com.flight.app.repository.FlightRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+class SeatAvailabilityBroadcasterTest {
+
+    @Mock
+    private FlightRepository flightRepository;
+
+    private SeatAvailabilityBroadcaster broadcaster;
+    private SimpleMeterRegistry meterRegistry;
+    private final LocalDate journeyDate = LocalDate.now().plusDays(5);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        broadcaster = new SeatAvailabilityBroadcaster(flightRepository, false, meterRegistry);
+    }
+
+    private void changed(String id, String toPlace, int availableSeats) {
+        Flight flight = new Flight();
+        flight.setId(id);
+        flight.setFromPlace("DEL");
+        flight.setToPlace(toPlace);
+        flight.setScheduleDate(journeyDate);
+        flight.setAvailableSeats(availableSeats);
+        broadcaster.onInventoryChanged(new FlightInventoryChangedEvent(flight));
+    }
+
+    private double watchers() {
+        return meterRegistry.get("availability.watchers").gauge().value();
+    }
+
+    @Test
+    void watchRouteDay_OnlyFlightsOfTheRouteDay() {
+        StepVerifier.create(broadcaster.watchRouteDay("DEL", "BOM", journeyDate))
+            .then(() -> {
+                changed("F1", "BOM", 10);
+                changed("F2", "BLR", 10);
+                changed("F3", "BOM", 5);
+            })
+            .assertNext(update -> assertEquals("F1", update.flightId()))
+            .assertNext(update -> assertEquals("F3", update.flightId()))
+            .thenCancel()
+            .verify();
+    }
+
+    @Test
+    void watchRouteDay_SlowWatcher_GetsLatestSeatsPerFlight() {
+        StepVerifier.create(broadcaster.watchRouteDay("DEL", "BOM", journeyDate), 0)
+            .then(() -> {
+                changed("F1", "BOM", 10);
+                changed("F2", "BOM", 20);
+                changed("F1", "BOM", 9);
+                changed("F1", "BOM", 8);
+            })
+            .thenRequest(10)
+            .assertNext(update -> assertEquals(new SeatAvailabilityUpdate("F1", "DEL", "BOM", journeyDate, 8), update))
+            .assertNext(update -> assertEquals(20, update.availableSeats()))
+            .expectNoEvent(Duration.ofMillis(50))
+            .thenCancel()
+            .verify();
+    }
+
+    @Test
+    void watch_LastWatcherGone_TopicDropped() {
+        StepVerifier.create(broadcaster.watchFlight("F1"))
+            .then(() -> assertEquals(1, watchers()))
+            .then(() -> changed("F1", "BOM", 10))
+            .expectNextCount(1)
+            .thenCancel()
+            .verify();
+
+        assertEquals(0, watchers());
+        // nobody listening, nothing to deliver to
+        changed("F1", "BOM", 9);
+        StepVerifier.create(broadcaster.watchFlight("F1"))
+            .then(() -> changed("F1", "BOM", 8))
+            .assertNext(update -> assertEquals(8, update.availableSeats()))
+            .thenCancel()
+            .verify();
+    }
+}
@@ -0,0 +1,138 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.flight.app.dto.BookedSeats;
+import com.flight.app.entity.Flight;
+import com.flight.app.exception.FlightUnavailableException;
+import com.flight.app.repository.BookingRepository;
+import com.flight.app.repository.FlightRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SeatInventoryLedgerTest {
+
+    @Mock
+    private FlightRepository flightRepository;
+    @Mock
+    private BookingRepository bookingRepository;
+
+    private SeatInventoryLedger ledger;
+    private Flight testFlight;
+    private final String testFlightId = "100";
+
+    @BeforeEach
+    void setUp() {
+        ledger = new SeatInventoryLedger(flightRepository, bookingRepository, Duration.ofSeconds(1), 500);
+        
+        testFlight = new Flight();
+        testFlight.setId(testFlightId);
+        testFlight.setTotalSeats(150);
+        // stale value, the last flush before a crash never reached Mongo
+        testFlight.setAvailableSeats(150);
+        testFlight.setPrice(100.00);
+        testFlight.setScheduleDate(LocalDate.now().plusDays(5));
+        
+        when(flightRepository.findByScheduleDateGreaterThanEqual(any())).thenReturn(Flux.just(testFlight));
+        // rows 1-23 and 24A, 24B are booked, 24C-25F (10 seats) are left
+        when(bookingRepository.sumBookedSeatsByFlightId(any()))
+            .thenReturn(Flux.just(new BookedSeats(testFlightId, 140, seatNumbers(0, 140))));
+        when(flightRepository.setSeatInventory(anyCollection())).thenReturn(Mono.empty());
+    }
+    
+    // seat numbers of the 6-abreast seats from..to-1 in cabin order
+    private static List<String> seatNumbers(int from, int to) {
+        return IntStream.range(from, to)
+            .mapToObj(i -> (i / 6 + 1) + String.valueOf((char) ('A' + i % 6)))
+            .toList();
+    }
+    
+    private static BitSet seats(String... seatNumbers) {
+        return SeatMap.parse(List.of(seatNumbers));
+    }
+
+    @Test
+    void rebuild_RecomputesSeatsFromBookingsAndPersistsCorrection() {
+        StepVerifier.create(ledger.reserve(testFlightId, seats("24C", "24D")))
+                .expectNextMatches(f -> f.getAvailableSeats() == 8 && f.getPrice() == 100.00)
+                .verifyComplete();
+        
+        // booked seats came back from the bookings as well
+        StepVerifier.create(ledger.reserve(testFlightId, seats("1A")))
+                .verifyComplete();
+        verify(flightRepository, times(1)).setSeatInventory(argThat(flights -> 
+                flights.size() == 1 && flights.iterator().next().getAvailableSeats() == 10));
+    }
+
+    @Test
+    void reserve_ConcurrentClaims_NeverOversellOrShareSeats() {
+        List<String> freeSeats = seatNumbers(140, 150);
+        List<Flight> granted = Flux.range(0, 100)
+            .parallel(8)
+            .runOn(Schedulers.parallel())
+            .flatMap(i -> ledger.reserve(testFlightId, seats(freeSeats.get(i % 10))))
+            .sequential()
+            .collectList()
+            .block();
+        
+        assertEquals(10, granted.size());
+        StepVerifier.create(ledger.seatMap(testFlightId))
+                .expectNextMatches(f -> f.getAvailableSeats() == 0 && SeatMap.freeSeats(f).isEmpty())
+                .verifyComplete();
+    }
+
+    @Test
+    void reserve_OneSeatTaken_ClaimsNothing() {
+        ledger.reserve(testFlightId, seats("25F")).block();
+        
+        StepVerifier.create(ledger.reserve(testFlightId, seats("24C", "25F")))
+                .verifyComplete();
+        StepVerifier.create(ledger.seatMap(testFlightId))
+                .expectNextMatches(f -> f.getAvailableSeats() == 9 && SeatMap.freeSeats(f).contains("24C"))
+                .verifyComplete();
+    }
+
+    @Test
+    void flush_WritesBackOnlyChangedFlights() {
+        ledger.reserve(testFlightId, seats("24C", "24D", "24E")).block();
+        ledger.release(testFlightId, 1, seats("24E")).block();
+        ledger.flush().block();
+        ledger.flush().block();
+        
+        verify(flightRepository, times(1)).setSeatInventory(argThat(flights -> 
+                flights.size() == 1 && flights.iterator().next().getAvailableSeats() == 8));
+    }
+
+    @Test
+    void rebuild_CancelledFlight_StaysWithoutSeats() {
+        testFlight.setCancelled(true);
+        // FlightCancellationJob deleted the bookings already
+        when(bookingRepository.sumBookedSeatsByFlightId(any())).thenReturn(Flux.empty());
+        
+        StepVerifier.create(ledger.reserve(testFlightId, seats("1A")))
+                .expectError(FlightUnavailableException.class)
+                .verify();
+        StepVerifier.create(ledger.release(testFlightId, 1, seats("1A")))
+                .expectNextMatches(f -> f.getAvailableSeats() == 0)
+                .verifyComplete();
+        verify(flightRepository, times(1)).setSeatInventory(argThat(flights -> 
+                flights.size() == 1 && flights.iterator().next().getAvailableSeats() == 0));
+    }
+}
@@ -0,0 +1,63 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakePnrGeneratorTest {
+
+    @Test
+    void next_ConcurrentCallers_NoDuplicates() throws Exception {
+        SnowflakePnrGenerator generator = new SnowflakePnrGenerator(7);
+        Set<String> pnrs = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 20_000;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = IntStream.range(0, threads)
+                .<Future<?>>mapToObj(t -> executor.submit(() -> {
+                    for(int i = 0; i < perThread; i++) {
+                        pnrs.add(generator.next());
+                    }
+                }))
+                .toList();
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } 
+        finally {
+            executor.shutdown();
+        }
+        
+        assertEquals(threads * perThread, pnrs.size());
+    }
+
+    @Test
+    void next_FixedWidthBase36_AndSortedByIssueOrder() {
+        SnowflakePnrGenerator generator = new SnowflakePnrGenerator(0);
+        String first = generator.next();
+        String second = generator.next();
+        
+        assertTrue(first.matches("CHUBBFLIGHT[0-9A-Z]{13}"), first);
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    void next_DifferentNodes_DifferentPnrs() {
+        // same thread, same stripe and tick: only the node bits tell them apart
+        assertNotEquals(new SnowflakePnrGenerator(1).next(), new SnowflakePnrGenerator(2).next());
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakePnrGenerator(256));
+    }
+}
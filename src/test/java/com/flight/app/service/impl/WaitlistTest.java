@@ -0,0 +1,207 @@
+package com.flight.app.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.flight.app.dto.SeatAvailability;
+import com.flight.app.entity.Booking;
+import com.flight.app.entity.Flight;
+import com.flight.app.entity.OutboxEvent;
+import com.flight.app.entity.Passenger;
+import com.flight.app.entity.WaitlistEntry;
+import com.flight.app.entity.WaitlistEntry.Status;
+import com.flight.app.repository.inmemory.InMemoryBookingRepository;
+import com.flight.app.repository.inmemory.InMemoryOutboxEventRepository;
+import com.flight.app.repository.inmemory.InMemoryWaitlistEntryRepository;
+import com.flight.app.service.FlightService;
+import com.flight.app.service.PnrGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WaitlistTest {
+
+    @Mock
+    private FlightService flightService;
+    @Mock
+    private PnrGenerator pnrGenerator;
+
+    private InMemoryWaitlistEntryRepository waitlistRepository;
+    private InMemoryBookingRepository bookingRepository;
+    private InMemoryOutboxEventRepository outboxRepository;
+    private Waitlist waitlist;
+    private Flight flight;
+    private final Instant now = Instant.now();
+
+    @BeforeEach
+    void setUp() {
+        waitlistRepository = new InMemoryWaitlistEntryRepository();
+        bookingRepository = new InMemoryBookingRepository();
+        outboxRepository = new InMemoryOutboxEventRepository();
+        waitlist = new Waitlist(waitlistRepository, flightService, bookingRepository, pnrGenerator,
+                new Outbox(outboxRepository, Optional.empty(), true), Duration.ofSeconds(60), Duration.ofSeconds(30),
+                new SimpleMeterRegistry());
+
+        flight = new Flight();
+        flight.setId("F1");
+        flight.setPrice(100.00);
+        flight.setAvailableSeats(0);
+        flight.setScheduleDate(LocalDate.now().plusDays(5));
+    }
+
+    private WaitlistEntry waiting(String id, Instant createdAt, String... seatNumbers) {
+        List<Passenger> passengers = Arrays.stream(seatNumbers)
+                .map(seat -> new Passenger(null, "AAA", "Female", 30, seat))
+                .toList();
+        WaitlistEntry entry = new WaitlistEntry(id, "F1", "User", "user@test.com", "9999999999", "Veg",
+                passengers, createdAt, Status.WAITING, null, null);
+        return waitlistRepository.insert(entry).block();
+    }
+
+    private void freeSeats(String... seatNumbers) {
+        when(flightService.getSeatAvailability("F1")).thenReturn(Mono.just(
+                new SeatAvailability("F1", 6, seatNumbers.length, List.of(seatNumbers))));
+    }
+
+    @Test
+    void promote_BooksInQueueOrder_StopsAtFirstEntryThatDoesNotFit() {
+        waiting("W1", now, "3C");
+        waiting("W2", now.plusMillis(1), "5A", "5B");
+        // would fit, but must not jump ahead of W2
+        waiting("W3", now.plusMillis(2), "6A");
+
+        when(flightService.getSeatAvailability("F1")).thenReturn(
+                Mono.just(new SeatAvailability("F1", 6, 2, List.of("1A", "3C"))),
+                Mono.just(new SeatAvailability("F1", 6, 1, List.of("1A"))));
+        when(flightService.reserveSeats(eq("F1"), any(BitSet.class))).thenReturn(Mono.just(flight));
+        when(pnrGenerator.next()).thenReturn("PNR1");
+
+        StepVerifier.create(waitlist.promote("F1"))
+                .expectNext(1L)
+                .verifyComplete();
+
+        WaitlistEntry booked = waitlistRepository.findById("W1").block();
+        assertEquals(Status.BOOKED, booked.getStatus());
+        assertEquals("PNR1", booked.getPnr());
+        Booking booking = bookingRepository.findByPnr("PNR1").block();
+        assertEquals("3C", booking.getPassengers().get(0).getSeatNumber());
+        assertEquals(100.00, booking.getTotalCost());
+        StepVerifier.create(outboxRepository.findAll())
+                .expectNextMatches(event -> event.getType() == OutboxEvent.Type.BOOKING_CONFIRMED
+                        && "PNR1".equals(event.getPnr()))
+                .verifyComplete();
+        assertEquals(Status.WAITING, waitlistRepository.findById("W2").block().getStatus());
+        assertEquals(Status.WAITING, waitlistRepository.findById("W3").block().getStatus());
+        verify(flightService, times(1)).reserveSeats(eq("F1"), any(BitSet.class));
+    }
+
+    @Test
+    void promote_SeatsTakenByABooking_EntryWaitsAgain() {
+        waiting("W1", now, "1A");
+        freeSeats("1A");
+        when(flightService.reserveSeats(eq("F1"), any(BitSet.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(waitlist.promote("F1"))
+                .expectNext(0L)
+                .verifyComplete();
+
+        assertEquals(Status.WAITING, waitlistRepository.findById("W1").block().getStatus());
+        StepVerifier.create(bookingRepository.findAll()).verifyComplete();
+    }
+
+    // claimed by a promotion whose instance died, or one still running
+    private void promoting(String id, Instant leaseUntil) {
+        waiting(id, now, "1A");
+        waitlistRepository.claimPromotion(id, leaseUntil).block();
+    }
+
+    @Test
+    void sweepExpiredPromotions_DeadPromotionBackInTheQueueAndBooked() {
+        promoting("W1", now.minusSeconds(1));
+        promoting("W2", now.plusSeconds(60));
+        when(flightService.getFlightById("F1")).thenReturn(Mono.just(flight));
+        freeSeats("1A");
+        when(flightService.reserveSeats(eq("F1"), any(BitSet.class))).thenReturn(Mono.just(flight));
+        when(pnrGenerator.next()).thenReturn("PNR1");
+
+        StepVerifier.create(waitlist.sweepExpiredPromotions())
+                .expectNext(1L)
+                .verifyComplete();
+
+        WaitlistEntry booked = waitlistRepository.findById("W1").block();
+        assertEquals(Status.BOOKED, booked.getStatus());
+        assertNull(booked.getLeaseUntil());
+        // its promotion is still running
+        assertEquals(Status.PROMOTING, waitlistRepository.findById("W2").block().getStatus());
+    }
+
+    @Test
+    void sweepExpiredPromotions_FlightCancelledMeanwhile_EntryClosed() {
+        promoting("W1", now.minusSeconds(1));
+        flight.setCancelled(true);
+        when(flightService.getFlightById("F1")).thenReturn(Mono.just(flight));
+
+        StepVerifier.create(waitlist.sweepExpiredPromotions())
+                .expectNext(1L)
+                .verifyComplete();
+
+        assertEquals(Status.CLOSED, waitlistRepository.findById("W1").block().getStatus());
+        verify(flightService, never()).reserveSeats(any(), any());
+    }
+
+    @Test
+    void watch_CurrentEntryThenBooked() {
+        waiting("W1", now, "1A");
+        freeSeats("1A");
+        when(flightService.reserveSeats(eq("F1"), any(BitSet.class))).thenReturn(Mono.just(flight));
+        when(pnrGenerator.next()).thenReturn("PNR1");
+
+        StepVerifier.create(waitlist.watch("W1"))
+                .expectNextMatches(entry -> entry.getStatus() == Status.WAITING)
+                .then(() -> waitlist.promote("F1").block())
+                .expectNextMatches(entry -> entry.getStatus() == Status.BOOKED && "PNR1".equals(entry.getPnr()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void join_FlightHasTheSeats_Rejected() {
+        flight.setAvailableSeats(5);
+        when(flightService.getFlightById("F1")).thenReturn(Mono.just(flight));
+
+        Booking request = new Booking();
+        request.setPassengers(List.of(new Passenger(null, "AAA", "Female", 30, "1A")));
+
+        StepVerifier.create(waitlist.join("F1", request))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(waitlistRepository.findAll()).verifyComplete();
+    }
+
+    @Test
+    void pickSeats_KeepsFreeWishesAndFillsTheRest() {
+        List<Passenger> passengers = List.of(new Passenger(null, "AAA", "Female", 30, "1a"),
+                new Passenger(null, "BBB", "Male", 30, "2C"));
+
+        assertEquals(List.of("4D", "2C"), Waitlist.pickSeats(passengers, List.of("2C", "4D")));
+        assertNull(Waitlist.pickSeats(passengers, List.of("2C")));
+    }
+}